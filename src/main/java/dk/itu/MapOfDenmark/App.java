@@ -3,6 +3,7 @@
  */
 package dk.itu.MapOfDenmark;
 
+import dk.itu.MapOfDenmark.Server.MapServer;
 import dk.itu.MapOfDenmark.View.TitleUI;
 import javafx.application.Application;
 import javafx.stage.Stage;
@@ -10,6 +11,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import javax.xml.parsers.DocumentBuilder;
@@ -27,7 +29,11 @@ public class App extends Application {
         new Controller(new TitleUI(primaryStage));
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            MapServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         launch(args);
     }
 }
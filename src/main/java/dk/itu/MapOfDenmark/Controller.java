@@ -1,13 +1,12 @@
 package dk.itu.MapOfDenmark;
 
-import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
 import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
 import javafx.geometry.Point2D;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.TransferMode;
 import dk.itu.MapOfDenmark.Model.ColorManager;
 import dk.itu.MapOfDenmark.Model.Graph.Graph;
-import dk.itu.MapOfDenmark.Model.Graph.Vertex;
+import dk.itu.MapOfDenmark.Model.Graph.SnappedPoint;
 import dk.itu.MapOfDenmark.Model.Model;
 import dk.itu.MapOfDenmark.Model.objects.*;
 import dk.itu.MapOfDenmark.View.*;
@@ -87,16 +86,19 @@ public class Controller {
     double lastY;
     private final ArrayList<float[]> clickedPoints = new ArrayList<>();
 
-    public CompressedTrie trie;
+    /** True once a route through the clicked points is drawn, so the next point starts a new route. */
+    private boolean routed;
+
+    public Model model;
 
     /**
      * Constructs a Controller object for the MapUI screen.
      *
-     * @param view The MapUI object representing the map view.
-     * @param trie The CompressedTrie object representing the trie data structure.
+     * @param view  The MapUI object representing the map view.
+     * @param model The model holding the map data.
      */
-    public Controller(MapUI view, CompressedTrie trie) {
-        this.trie = trie;
+    public Controller(MapUI view, Model model) {
+        this.model = model;
 
         view.primaryStage.widthProperty().addListener(e -> { // resizing width
             view.canvas.setWidth(view.primaryStage.getWidth());
@@ -161,10 +163,31 @@ public class Controller {
         view.userInput.searchRoute.setOnMousePressed(e->{ // event handler for
             Model.quadTreeMap.get(PointOfInterest.class).clear();
             Model.quadTreeMap.get(Path.class).clear();
+            Model.quadTreeMap.get(Isochrone.class).clear();
+            view.redraw();
+
+            try{
+                // More than two points are visited in the fastest order found instead of the order they were placed in
+                view.userInput.messageToUser.setText(clickedPoints.size() > 2
+                        ? Graph.executeTourAction(clickedPoints)
+                        : Graph.executeDijkstraAction(clickedPoints));
+                routed = true;
+                view.redraw();
+            } catch (NullPointerException error){
+                view.userInput.messageToUser.setText(error.getMessage());
+            }
+            e.consume();
+        });
+
+
+
+        view.userInput.searchIsochrone.setOnMousePressed(e->{ // show the area reachable from the latest point
+            Model.quadTreeMap.get(Isochrone.class).clear();
             view.redraw();
 
             try{
-                view.userInput.messageToUser.setText(Graph.executeDijkstraAction(clickedPoints));
+                float[] start = clickedPoints.isEmpty() ? null : clickedPoints.get(clickedPoints.size() - 1);
+                view.userInput.messageToUser.setText(Graph.executeIsochroneAction(start, view.userInput.isochroneMinutes.getValue()));
                 view.redraw();
             } catch (NullPointerException error){
                 view.userInput.messageToUser.setText(error.getMessage());
@@ -179,10 +202,12 @@ public class Controller {
             lastY = e.getY();
 
             if (e.isPrimaryButtonDown()) {
-                if(clickedPoints.size() > 1){
+                if(routed){
+                    routed = false;
                     clickedPoints.clear();
                     Model.quadTreeMap.get(PointOfInterest.class).clear();
                     Model.quadTreeMap.get(Path.class).clear();
+                    Model.quadTreeMap.get(Isochrone.class).clear();
                     view.redraw();
                 }
 
@@ -197,7 +222,8 @@ public class Controller {
                     lat = (point.getX() / 0.56);
                     lon = -point.getY();
                     queryPoint = new double[]{lon, lat};
-                    nearest = Model.quadTreeMap.get(Vertex.class).nearestPoint(queryPoint);
+                    SnappedPoint snapped = Model.getGraph().snap(queryPoint);
+                    nearest = snapped != null ? snapped.getCoords() : new float[]{(float) queryPoint[0], (float) queryPoint[1]};
                     clickedPoints.add(nearest);
                 } catch (NonInvertibleTransformException ex) {
                     throw new RuntimeException(ex);
@@ -214,7 +240,7 @@ public class Controller {
 
         view.userInput.userInput.setOnKeyTyped(e->{
             view.userInput.updateSearchBar(
-                    new ArrayList<>(trie.searchPrefix(view.userInput.userInput.getText())));
+                    new ArrayList<>(model.getTrie().searchPrefix(view.userInput.userInput.getText())));
             if(view.userInput.userInput.getText().isEmpty())
                 view.userInput.updateSearchBar(new ArrayList<>());
 
@@ -222,10 +248,12 @@ public class Controller {
 
         view.userInput.userInput.setOnKeyPressed(e->{
             if(e.getCode() == KeyCode.ENTER){
-                if(clickedPoints.size() > 1){
+                if(routed){
+                    routed = false;
                     clickedPoints.clear();
                     Model.quadTreeMap.get(PointOfInterest.class).clear();
                     Model.quadTreeMap.get(Path.class).clear();
+                    Model.quadTreeMap.get(Isochrone.class).clear();
                     view.redraw();
                 }
 
@@ -5,15 +5,17 @@ import dk.itu.MapOfDenmark.Model.Trees.QuadTree.QuadTree;
 import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
 import dk.itu.MapOfDenmark.Model.objects.abstracts.Element;
 
-import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents binary file data containing information about the map.
+ * The QuadTrees needed to draw the map are loaded right away, while the graph and the trie
+ * may still be loading in the background.
  */
-public class BinaryFileData implements ParsingElement, Serializable {
-    private final Graph graph;
-    private final CompressedTrie trie;
+public class BinaryFileData implements ParsingElement {
+    private final CompletableFuture<Graph> graph;
+    private final CompletableFuture<CompressedTrie> trie;
     private final Map<Class<? extends Element>, QuadTree> quadTreeMap;
     private final Model model;
     private final SerializableRectangle bounds;
@@ -27,7 +29,9 @@ public class BinaryFileData implements ParsingElement, Serializable {
      * @param model       The model containing additional map data.
      * @param bounds      The bounds of the map.
      */
-    public BinaryFileData(Graph graph, Map<Class<? extends Element>, QuadTree> quadTreeMap, CompressedTrie trie, Model model, SerializableRectangle bounds) {
+    public BinaryFileData(CompletableFuture<Graph> graph, Map<Class<? extends Element>, QuadTree> quadTreeMap,
+                          CompletableFuture<CompressedTrie> trie,
+                          Model model, SerializableRectangle bounds) {
         this.graph = graph;
         this.trie = trie;
         this.quadTreeMap = quadTreeMap;
@@ -38,9 +42,9 @@ public class BinaryFileData implements ParsingElement, Serializable {
     /**
      * Gets the graph representing the map.
      *
-     * @return The graph.
+     * @return The graph, once it has been loaded.
      */
-    public Graph getGraph() {
+    public CompletableFuture<Graph> getGraph() {
         return graph;
     }
 
@@ -56,9 +60,9 @@ public class BinaryFileData implements ParsingElement, Serializable {
     /**
      * Gets the trie containing textual data.
      *
-     * @return The trie.
+     * @return The trie, once it has been loaded.
      */
-    public CompressedTrie getTrie() {
+    public CompletableFuture<CompressedTrie> getTrie() {
         return trie;
     }
 
@@ -67,6 +67,7 @@ public class ColorManager {
         normalColorMap.put(WaterWay.class, blue);
         normalColorMap.put(Vertex.class, yellow);
         normalColorMap.put(PointOfInterest.class, blue);
+        normalColorMap.put(Isochrone.class, blue);
 
         // colorBlind view
         colorBlindMap.put(Building.class, cb_grey);
@@ -80,6 +81,7 @@ public class ColorManager {
         colorBlindMap.put(WaterWay.class, cb_blue);
         colorBlindMap.put(Vertex.class, cb_yellow);
         colorBlindMap.put(PointOfInterest.class, blue);
+        colorBlindMap.put(Isochrone.class, cb_blue);
     }
 
     /**
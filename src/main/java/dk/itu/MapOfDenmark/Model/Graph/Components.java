@@ -0,0 +1,224 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import dk.itu.MapOfDenmark.Model.MapFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The connected components of the routing graph for one travel mode.
+ * <p>
+ * Two vertices are in the same strongly connected component if each can be reached from the other. The components
+ * are found with Tarjan's algorithm, which finishes a component only after every component it can reach, so a route
+ * can only lead to a component with a smaller or equal id. Together with the weakly connected components, which
+ * separate islands that no road connects at all, this rejects most impossible routes without searching.
+ * Vertices without arcs in the travel mode are components of their own.
+ */
+public class Components {
+    /** The strongly connected component of each vertex, numbered in the order Tarjan's algorithm finishes them. */
+    int[] components;
+
+    /** The weakly connected component of each vertex, which is the smallest vertex position in it. */
+    int[] islands;
+
+    /** The strongly connected component with the most vertices. */
+    int largest;
+
+    private Components() {
+    }
+
+    /**
+     * Finds the components of a frozen graph for a profile.
+     *
+     * @param graph   The graph.
+     * @param profile The profile, whose arcs are the only ones used.
+     * @return The components.
+     */
+    public static Components build(Graph graph, Profile profile) {
+        int vertexCount = graph.getVertexCount();
+        byte mode = profile.mode;
+        Components result = new Components();
+        result.components = new int[vertexCount];
+        result.islands = new int[vertexCount];
+
+        // Tarjan's algorithm with an explicit call stack, as the depth can be the size of the graph.
+        // A vertex is on the component stack while it has been visited but its component is not yet known.
+        int[] components = result.components;
+        int[] index = new int[vertexCount];
+        int[] low = new int[vertexCount];
+        int[] nextArc = new int[vertexCount];
+        int[] stack = new int[vertexCount];
+        int[] calls = new int[vertexCount];
+        Arrays.fill(index, -1);
+        Arrays.fill(components, -1);
+        int visited = 0;
+        int count = 0;
+        int top = 0;
+        for (int root = 0; root < vertexCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            index[root] = low[root] = visited++;
+            nextArc[root] = graph.offsets[root];
+            stack[top++] = root;
+            calls[depth++] = root;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (nextArc[v] < graph.offsets[v + 1]) {
+                    int arc = nextArc[v]++;
+                    if ((graph.flags[arc] & mode) == 0) {
+                        continue;
+                    }
+                    int w = graph.targets[arc];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = visited++;
+                        nextArc[w] = graph.offsets[w];
+                        stack[top++] = w;
+                        calls[depth++] = w;
+                    } else if (components[w] < 0) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--top];
+                        components[w] = count;
+                    } while (w != v);
+                    count++;
+                }
+                if (depth > 0) {
+                    int parent = calls[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+
+        int[] sizes = new int[count];
+        for (int v = 0; v < vertexCount; v++) {
+            sizes[components[v]]++;
+        }
+        for (int c = 1; c < count; c++) {
+            if (sizes[c] > sizes[result.largest]) {
+                result.largest = c;
+            }
+        }
+
+        // The weakly connected components, by union-find over the arcs
+        int[] islands = result.islands;
+        for (int v = 0; v < vertexCount; v++) {
+            islands[v] = v;
+        }
+        for (int u = 0; u < vertexCount; u++) {
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                if ((graph.flags[arc] & mode) == 0) {
+                    continue;
+                }
+                int a = find(islands, u);
+                int b = find(islands, graph.targets[arc]);
+                if (a != b) {
+                    islands[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        // Every root is the smallest vertex of its tree, so the parent of a vertex is resolved before the vertex
+        for (int v = 0; v < vertexCount; v++) {
+            islands[v] = islands[islands[v]];
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of strongly connected components.
+     *
+     * @return The number of components.
+     */
+    public int getCount() {
+        int count = 0;
+        for (int component : components) {
+            count = Math.max(count, component + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the strongly connected component of a vertex.
+     *
+     * @param vertex The vertex position.
+     * @return The component id.
+     */
+    public int getComponent(int vertex) {
+        return components[vertex];
+    }
+
+    /**
+     * Checks whether a vertex is in the largest strongly connected component, from which every other vertex
+     * of that component can be reached and back.
+     *
+     * @param vertex The vertex position.
+     * @return True if the vertex is in the largest component.
+     */
+    public boolean isInLargest(int vertex) {
+        return components[vertex] == largest;
+    }
+
+    /**
+     * Checks in constant time whether a route between two vertices may exist. A false answer is always right,
+     * and a true answer is always right when the vertices are in the same strongly connected component.
+     *
+     * @param start The starting vertex position.
+     * @param end   The ending vertex position.
+     * @return False if the end can not be reached from the start.
+     */
+    public boolean mayReach(int start, int end) {
+        return islands[start] == islands[end] && components[start] >= components[end];
+    }
+
+    /**
+     * Writes the components as part of a {@link MapFile} section: the number of vertices, the largest component
+     * and then the strongly and weakly connected component of each vertex.
+     *
+     * @param out The writer of the map file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MapFile.Writer out) throws IOException {
+        out.putInt(components.length);
+        out.putInt(largest);
+        out.putInts(components, 0, components.length);
+        out.putInts(islands, 0, islands.length);
+    }
+
+    /**
+     * Reads components written by {@link #write(MapFile.Writer)}.
+     *
+     * @param in The section of a map file.
+     * @return The components.
+     */
+    public static Components read(ByteBuffer in) {
+        Components result = new Components();
+        int vertexCount = in.getInt();
+        result.largest = in.getInt();
+        result.components = new int[vertexCount];
+        result.islands = new int[vertexCount];
+        in.asIntBuffer().get(result.components);
+        in.position(in.position() + vertexCount * 4);
+        in.asIntBuffer().get(result.islands);
+        in.position(in.position() + vertexCount * 4);
+        return result;
+    }
+
+    /**
+     * Finds the representative of a vertex in a union-find forest, halving the path on the way.
+     */
+    private static int find(int[] parents, int v) {
+        while (parents[v] != v) {
+            parents[v] = parents[parents[v]];
+            v = parents[v];
+        }
+        return v;
+    }
+}
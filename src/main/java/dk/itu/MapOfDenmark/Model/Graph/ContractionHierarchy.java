@@ -0,0 +1,575 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import dk.itu.MapOfDenmark.Model.MapFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A contraction hierarchy of the routing graph for one travel mode.
+ * <p>
+ * The vertices are contracted one at a time, least important first. Contracting a vertex removes it and adds
+ * a shortcut between two of its neighbours wherever the path through it is the only shortest one.
+ * A route is then found by two small searches that only move to vertices contracted later,
+ * one forward from the start and one backward from the end, which meet at the most important vertex of the route.
+ * <p>
+ * Every edge of the hierarchy is either an arc of the graph or a shortcut made of two other edges,
+ * so the route is unpacked into the arcs of the graph for drawing.
+ * The same kind of hierarchy is made by customizing a {@link CustomizableHierarchy} with a set of weights.
+ */
+public class ContractionHierarchy {
+    /** The most vertices a witness search may settle before the shortcut it checks is added anyway. */
+    private static final int WITNESS_LIMIT = 500;
+
+    /** The most vertices a witness search may settle while only estimating the importance of a vertex. */
+    private static final int ESTIMATE_LIMIT = 50;
+
+    /**
+     * The upward edges of each vertex in compressed sparse row form: the edges from {@code upOffsets[u]} to
+     * {@code upOffsets[u + 1]} lead from u to the vertex in {@code upTargets}, with the weight in {@code upWeights}
+     * and the index of the edge in {@code upEdges}.
+     */
+    int[] upOffsets;
+    int[] upTargets;
+    float[] upWeights;
+    int[] upEdges;
+
+    /**
+     * The downward edges of each vertex, stored at their lower end: the edges from {@code downOffsets[v]} to
+     * {@code downOffsets[v + 1]} lead to v from the vertex in {@code downSources}.
+     */
+    int[] downOffsets;
+    int[] downSources;
+    float[] downWeights;
+    int[] downEdges;
+
+    /**
+     * What each edge is made of. An edge whose {@code second} is -1 is the arc {@code first} of the graph,
+     * any other edge is a shortcut of the edge {@code first} followed by the edge {@code second}.
+     */
+    int[] first;
+    int[] second;
+
+    /** The length of each edge in meters, computed on first use by {@link #lengths(Graph)}. */
+    private volatile double[] lengths;
+
+    ContractionHierarchy() {
+    }
+
+    /**
+     * Contracts a frozen graph for a profile.
+     *
+     * @param graph   The graph.
+     * @param profile The profile, whose arcs are weighed by its weight array and are the only ones used.
+     * @return The contraction hierarchy.
+     */
+    public static ContractionHierarchy build(Graph graph, Profile profile) {
+        return new Builder(graph, profile).build();
+    }
+
+    /**
+     * Gets the number of edges in the hierarchy, including the arcs of the graph.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return first.length;
+    }
+
+    /**
+     * Finds the shortest path from any of a set of starting vertices to any of a set of ending vertices, where
+     * each vertex costs a time to start or end at. A single vertex at each end costs 0.
+     *
+     * @param starts     The starting vertex indices.
+     * @param startTimes The time to start at each starting vertex.
+     * @param ends       The ending vertex indices.
+     * @param endTimes   The time to end at each ending vertex.
+     * @param limit      The time of a route already known, which the path must be faster than.
+     * @param forward    The search state for the forward search.
+     * @param backward   The search state for the backward search.
+     * @return The arcs of the graph along the shortest path, or null if there is none faster than the limit.
+     *         The path is empty if it starts and ends at the same vertex. The number of vertices settled by both
+     *         searches is left in the forward state.
+     */
+    int[] route(int[] starts, double[] startTimes, int[] ends, double[] endTimes, double limit,
+                SearchState forward, SearchState backward) {
+        forward.start();
+        backward.start();
+        for (int i = 0; i < starts.length; i++) {
+            if (!forward.reached(starts[i]) || startTimes[i] < forward.times[starts[i]]) {
+                forward.reach(starts[i], starts[i], -1, startTimes[i], 0, startTimes[i]);
+            }
+        }
+        for (int i = 0; i < ends.length; i++) {
+            if (!backward.reached(ends[i]) || endTimes[i] < backward.times[ends[i]]) {
+                backward.reach(ends[i], ends[i], -1, endTimes[i], 0, endTimes[i]);
+            }
+        }
+        double best = limit;
+        int meeting = -1;
+        int settled = 0;
+
+        while (true) {
+            boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+            boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            boolean forwards = forwardOpen && (!backwardOpen || forward.heap.peekKey() <= backward.heap.peekKey());
+            SearchState state = forwards ? forward : backward;
+            SearchState other = forwards ? backward : forward;
+            int current = state.heap.poll();
+            double currentTime = state.times[current];
+            settled++;
+
+            if (other.reached(current) && currentTime + other.times[current] < best) {
+                best = currentTime + other.times[current];
+                meeting = current;
+            }
+
+            int[] offsets = forwards ? upOffsets : downOffsets;
+            int[] neighbors = forwards ? upTargets : downSources;
+            float[] weights = forwards ? upWeights : downWeights;
+            int[] edges = forwards ? upEdges : downEdges;
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int neighbor = neighbors[i];
+                double time = currentTime + weights[i];
+                if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                    state.reach(neighbor, current, edges[i], time, 0, time);
+                }
+            }
+        }
+
+        forward.settled = settled;
+        if (meeting < 0) {
+            return null;
+        }
+
+        // Collect the edges of the route, then unpack the shortcuts
+        int[] route = new int[16];
+        int length = 0;
+        for (int current = meeting; forward.arcs[current] >= 0; current = forward.parents[current]) {
+            route = push(route, length++, forward.arcs[current]);
+        }
+        reverse(route, length);
+        for (int current = meeting; backward.arcs[current] >= 0; current = backward.parents[current]) {
+            route = push(route, length++, backward.arcs[current]);
+        }
+
+        int[] arcs = new int[length * 2];
+        int arcCount = 0;
+        int[] stack = new int[16];
+        for (int i = 0; i < length; i++) {
+            int size = 0;
+            stack = push(stack, size++, route[i]);
+            while (size > 0) {
+                int edge = stack[--size];
+                if (second[edge] < 0) {
+                    arcs = push(arcs, arcCount++, first[edge]);
+                } else {
+                    stack = push(stack, size++, second[edge]);
+                    stack = push(stack, size++, first[edge]);
+                }
+            }
+        }
+        return Arrays.copyOf(arcs, arcCount);
+    }
+
+    /**
+     * Gets the length of every edge of the hierarchy, which for a shortcut is the length of the arcs it is made of.
+     * A shortcut may be made of edges added after it, because a shortcut is replaced in place when a faster one
+     * is found, so the lengths are filled in by unpacking each edge until the lengths of its parts are known.
+     *
+     * @param graph The graph the hierarchy was built from.
+     * @return The length of each edge, in meters.
+     */
+    double[] lengths(Graph graph) {
+        double[] result = lengths;
+        if (result != null) {
+            return result;
+        }
+        result = new double[first.length];
+        Arrays.fill(result, -1);
+        int[] stack = new int[16];
+        for (int e = 0; e < first.length; e++) {
+            int size = 0;
+            stack = push(stack, size++, e);
+            while (size > 0) {
+                int edge = stack[size - 1];
+                if (second[edge] < 0) {
+                    // An edge of a customized hierarchy that can not be travelled is made of nothing
+                    result[edge] = first[edge] < 0 ? 0 : graph.distances[first[edge]];
+                    size--;
+                } else if (result[first[edge]] >= 0 && result[second[edge]] >= 0) {
+                    result[edge] = result[first[edge]] + result[second[edge]];
+                    size--;
+                } else {
+                    if (result[first[edge]] < 0) {
+                        stack = push(stack, size++, first[edge]);
+                    }
+                    if (result[second[edge]] < 0) {
+                        stack = push(stack, size++, second[edge]);
+                    }
+                }
+            }
+        }
+        lengths = result;
+        return result;
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length << 1);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private static void reverse(int[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    /**
+     * Writes the hierarchy as a section of a {@link MapFile}: the vertex count, the upward and downward edges
+     * as the arrays of this class, and then the edge count and what each edge is made of.
+     *
+     * @param out The writer of the map file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MapFile.Writer out) throws IOException {
+        out.putInt(upOffsets.length - 1);
+        out.putInts(upOffsets, 0, upOffsets.length);
+        out.putInts(upTargets, 0, upTargets.length);
+        out.putFloats(upWeights, 0, upWeights.length);
+        out.putInts(upEdges, 0, upEdges.length);
+        out.putInts(downOffsets, 0, downOffsets.length);
+        out.putInts(downSources, 0, downSources.length);
+        out.putFloats(downWeights, 0, downWeights.length);
+        out.putInts(downEdges, 0, downEdges.length);
+        out.putInt(first.length);
+        out.putInts(first, 0, first.length);
+        out.putInts(second, 0, second.length);
+    }
+
+    /**
+     * Reads a hierarchy written by {@link #write(MapFile.Writer)}.
+     *
+     * @param in The section of a map file.
+     * @return The contraction hierarchy.
+     */
+    public static ContractionHierarchy read(ByteBuffer in) {
+        ContractionHierarchy hierarchy = new ContractionHierarchy();
+        int vertices = in.getInt();
+        hierarchy.upOffsets = readInts(in, vertices + 1);
+        int up = hierarchy.upOffsets[vertices];
+        hierarchy.upTargets = readInts(in, up);
+        hierarchy.upWeights = readFloats(in, up);
+        hierarchy.upEdges = readInts(in, up);
+        hierarchy.downOffsets = readInts(in, vertices + 1);
+        int down = hierarchy.downOffsets[vertices];
+        hierarchy.downSources = readInts(in, down);
+        hierarchy.downWeights = readFloats(in, down);
+        hierarchy.downEdges = readInts(in, down);
+        int edges = in.getInt();
+        hierarchy.first = readInts(in, edges);
+        hierarchy.second = readInts(in, edges);
+        return hierarchy;
+    }
+
+    private static int[] readInts(ByteBuffer in, int length) {
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + length * 4);
+        return values;
+    }
+
+    private static float[] readFloats(ByteBuffer in, int length) {
+        float[] values = new float[length];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + length * 4);
+        return values;
+    }
+
+    /**
+     * Contracts the vertices of a graph in order of importance and collects the edges of the hierarchy.
+     * The edges between vertices that are not yet contracted are kept in a list per vertex, at most one in
+     * each direction between two vertices, and the edges of a vertex are removed from its neighbours' lists
+     * when it is contracted.
+     */
+    private static class Builder {
+        private final int vertexCount;
+        private final int[][] outEdges;
+        private final int[][] inEdges;
+        private final int[] outSize;
+        private final int[] inSize;
+        private final int[] contractedNeighbors;
+        private final int[] rank;
+
+        /** One more than the highest level of a contracted neighbour, for each vertex. */
+        private final int[] level;
+
+        private int edgeCount;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private double[] weight = new double[1024];
+        private int[] first = new int[1024];
+        private int[] second = new int[1024];
+
+        /** The state of the witness searches, which look for paths that make a shortcut unnecessary. */
+        private final SearchState witness;
+
+        /** Marks the vertices a witness search is looking for with the current target version. */
+        private final int[] targetStamps;
+        private int targetVersion;
+
+        Builder(Graph graph, Profile profile) {
+            graph.freeze();
+            vertexCount = graph.currentPos;
+            outEdges = new int[vertexCount][];
+            inEdges = new int[vertexCount][];
+            outSize = new int[vertexCount];
+            inSize = new int[vertexCount];
+            contractedNeighbors = new int[vertexCount];
+            rank = new int[vertexCount];
+            level = new int[vertexCount];
+            Arrays.fill(rank, -1);
+            witness = new SearchState(vertexCount);
+            targetStamps = new int[vertexCount];
+
+            byte mode = profile.mode;
+            float[] weights = graph.weights(profile);
+            for (int u = 0; u < vertexCount; u++) {
+                for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                    int v = graph.targets[arc];
+                    if ((graph.flags[arc] & mode) != 0 && v != u) {
+                        addEdge(u, v, weights[arc], arc, -1);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy build() {
+            IndexedHeap queue = new IndexedHeap(vertexCount);
+            for (int v = 0; v < vertexCount; v++) {
+                queue.update(v, priority(v));
+            }
+
+            int contracted = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // Priorities are only updated when a vertex reaches the front of the queue,
+                // because updating every neighbour after each contraction is too slow in the dense top of the hierarchy
+                double priority = priority(v);
+                if (!queue.isEmpty() && priority > queue.peekKey()) {
+                    queue.update(v, priority);
+                    continue;
+                }
+
+                contract(v, false);
+                rank[v] = contracted++;
+                for (int i = 0; i < inSize[v]; i++) {
+                    int u = from[inEdges[v][i]];
+                    remove(outEdges, outSize, u, inEdges[v][i]);
+                    contractedNeighbors[u]++;
+                    level[u] = Math.max(level[u], level[v] + 1);
+                }
+                for (int i = 0; i < outSize[v]; i++) {
+                    int w = to[outEdges[v][i]];
+                    remove(inEdges, inSize, w, outEdges[v][i]);
+                    contractedNeighbors[w]++;
+                    level[w] = Math.max(level[w], level[v] + 1);
+                }
+                outEdges[v] = null;
+                inEdges[v] = null;
+            }
+            return collect();
+        }
+
+        /**
+         * Estimates how important a vertex is from twice the number of edges contracting it would add,
+         * the number of its neighbours that have already been contracted, which spreads the contraction evenly,
+         * and its level, which keeps the hierarchy shallow.
+         */
+        private double priority(int v) {
+            int shortcuts = contract(v, true);
+            return 2 * (shortcuts - inSize[v] - outSize[v]) + contractedNeighbors[v] + level[v];
+        }
+
+        /**
+         * Adds the shortcuts needed to remove a vertex, or only counts them.
+         *
+         * @param v        The vertex to contract.
+         * @param simulate True to count the shortcuts without adding them.
+         * @return The number of shortcuts.
+         */
+        private int contract(int v, boolean simulate) {
+            int shortcuts = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int in = inEdges[v][i];
+                int u = from[in];
+                double limit = -1;
+                int targets = 0;
+                targetVersion++;
+                for (int j = 0; j < outSize[v]; j++) {
+                    int out = outEdges[v][j];
+                    int w = to[out];
+                    if (w != u) {
+                        limit = Math.max(limit, weight[in] + weight[out]);
+                        if (targetStamps[w] != targetVersion) {
+                            targetStamps[w] = targetVersion;
+                            targets++;
+                        }
+                    }
+                }
+                if (limit < 0) {
+                    continue;
+                }
+
+                searchWitnesses(u, v, limit, targets, simulate ? ESTIMATE_LIMIT : WITNESS_LIMIT);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int out = outEdges[v][j];
+                    int w = to[out];
+                    double via = weight[in] + weight[out];
+                    if (w == u || (witness.reached(w) && witness.times[w] <= via)) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (!simulate) {
+                        addEdge(u, w, via, in, out);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Searches from a vertex without passing the vertex being contracted,
+         * until every target has been settled or a limit is reached.
+         */
+        private void searchWitnesses(int start, int skipped, double limit, int targets, int maxSettled) {
+            witness.start();
+            witness.reach(start, start, -1, 0, 0, 0);
+            int settled = 0;
+            while (!witness.heap.isEmpty() && witness.heap.peekKey() <= limit && settled++ < maxSettled) {
+                int current = witness.heap.poll();
+                double currentTime = witness.times[current];
+                if (targetStamps[current] == targetVersion && --targets == 0) {
+                    return;
+                }
+                for (int i = 0; i < outSize[current]; i++) {
+                    int edge = outEdges[current][i];
+                    int neighbor = to[edge];
+                    double time = currentTime + weight[edge];
+                    if (neighbor != skipped && time <= limit && (!witness.reached(neighbor) || time < witness.times[neighbor])) {
+                        witness.reach(neighbor, current, edge, time, 0, time);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds an edge between two vertices that are not contracted, or lowers the weight of the existing one.
+         */
+        private void addEdge(int u, int v, double cost, int a, int b) {
+            for (int i = 0; i < outSize[u]; i++) {
+                int edge = outEdges[u][i];
+                if (to[edge] == v) {
+                    if (cost < weight[edge]) {
+                        weight[edge] = cost;
+                        first[edge] = a;
+                        second[edge] = b;
+                    }
+                    return;
+                }
+            }
+
+            if (edgeCount == from.length) {
+                int capacity = edgeCount + (edgeCount >> 1);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                first = Arrays.copyOf(first, capacity);
+                second = Arrays.copyOf(second, capacity);
+            }
+            int edge = edgeCount++;
+            from[edge] = u;
+            to[edge] = v;
+            weight[edge] = cost;
+            first[edge] = a;
+            second[edge] = b;
+            add(outEdges, outSize, u, edge);
+            add(inEdges, inSize, v, edge);
+        }
+
+        private static void add(int[][] lists, int[] sizes, int vertex, int edge) {
+            if (lists[vertex] == null) {
+                lists[vertex] = new int[4];
+            } else if (sizes[vertex] == lists[vertex].length) {
+                lists[vertex] = Arrays.copyOf(lists[vertex], sizes[vertex] << 1);
+            }
+            lists[vertex][sizes[vertex]++] = edge;
+        }
+
+        private static void remove(int[][] lists, int[] sizes, int vertex, int edge) {
+            int[] list = lists[vertex];
+            for (int i = 0; i < sizes[vertex]; i++) {
+                if (list[i] == edge) {
+                    list[i] = list[--sizes[vertex]];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Sorts every edge into the upward edges of its lower end or the downward edges of its higher end.
+         */
+        private ContractionHierarchy collect() {
+            ContractionHierarchy hierarchy = new ContractionHierarchy();
+            hierarchy.upOffsets = new int[vertexCount + 1];
+            hierarchy.downOffsets = new int[vertexCount + 1];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (rank[from[edge]] < rank[to[edge]]) {
+                    hierarchy.upOffsets[from[edge] + 1]++;
+                } else {
+                    hierarchy.downOffsets[to[edge] + 1]++;
+                }
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                hierarchy.upOffsets[v + 1] += hierarchy.upOffsets[v];
+                hierarchy.downOffsets[v + 1] += hierarchy.downOffsets[v];
+            }
+
+            int up = hierarchy.upOffsets[vertexCount];
+            int down = hierarchy.downOffsets[vertexCount];
+            hierarchy.upTargets = new int[up];
+            hierarchy.upWeights = new float[up];
+            hierarchy.upEdges = new int[up];
+            hierarchy.downSources = new int[down];
+            hierarchy.downWeights = new float[down];
+            hierarchy.downEdges = new int[down];
+            int[] nextUp = Arrays.copyOf(hierarchy.upOffsets, vertexCount);
+            int[] nextDown = Arrays.copyOf(hierarchy.downOffsets, vertexCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (rank[from[edge]] < rank[to[edge]]) {
+                    int i = nextUp[from[edge]]++;
+                    hierarchy.upTargets[i] = to[edge];
+                    hierarchy.upWeights[i] = (float) weight[edge];
+                    hierarchy.upEdges[i] = edge;
+                } else {
+                    int i = nextDown[to[edge]]++;
+                    hierarchy.downSources[i] = from[edge];
+                    hierarchy.downWeights[i] = (float) weight[edge];
+                    hierarchy.downEdges[i] = edge;
+                }
+            }
+            hierarchy.first = Arrays.copyOf(first, edgeCount);
+            hierarchy.second = Arrays.copyOf(second, edgeCount);
+            return hierarchy;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+/**
+ * The CoordinateMap class maps coordinates to vertex positions with open addressing and linear probing.
+ * A coordinate is packed into a single long from the bits of its two floats, so coordinates are equal exactly
+ * when {@link Vertex#equals(Object)} would consider them equal, and no Vertex objects or boxed Integers are kept.
+ * This class is package-private, used internally by the Graph class.
+ */
+class CoordinateMap {
+    private long[] keys;
+
+    /** The position stored under each key plus one, so an empty slot holds zero. */
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty map with room for the given number of coordinates before it grows.
+     *
+     * @param capacity The expected number of coordinates.
+     */
+    CoordinateMap(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity + (capacity >> 1)) - 1) << 1;
+        keys = new long[slots];
+        values = new int[slots];
+    }
+
+    /**
+     * Gets the position stored for a coordinate.
+     *
+     * @param lat The latitude.
+     * @param lon The longitude.
+     * @return The position, or -1 if the coordinate is not in the map.
+     */
+    int get(float lat, float lon) {
+        long key = pack(lat, lon);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores a position for a coordinate, unless the coordinate already has one.
+     *
+     * @param lat      The latitude.
+     * @param lon      The longitude.
+     * @param position The position to store.
+     * @return The position already stored for the coordinate, or -1 if the new position was stored.
+     */
+    int putIfAbsent(float lat, float lon, int position) {
+        if (size >= keys.length - (keys.length >> 2)) {
+            grow();
+        }
+        long key = pack(lat, lon);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = position + 1;
+        size++;
+        return -1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldValues.length << 1];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long pack(float lat, float lon) {
+        return ((long) Float.floatToIntBits(lat) << 32) | (Float.floatToIntBits(lon) & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,469 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A customizable contraction hierarchy: an order of the vertices and the shortcuts contracting them in that order
+ * needs, which depend only on which roads exist and not on how long they take, so that a {@link ContractionHierarchy}
+ * for any weights can be made from them in seconds.
+ * <p>
+ * The order is found once for the graph by nested dissection. The vertices of a cell are split in two halves at
+ * the median latitude or longitude, whichever puts fewer vertices along the border, and the vertices of one half
+ * that have a neighbour in the other separate them. Both halves are ordered the same way and the separator is
+ * contracted after them, so the shortcuts of a half stay inside it and the hierarchy is shallow. Contracting in this
+ * order without witness searches adds every shortcut any weights may need, between every two neighbours of a vertex
+ * contracted later.
+ * <p>
+ * Customizing fills in the weights of the shortcuts from the weights of the arcs. The edge from u to w is no slower
+ * than going through any vertex v contracted before both that is a neighbour of both, which only needs the edges of
+ * v. Vertices are customized level by level, where a vertex is one level above its highest neighbour contracted
+ * before it, so the vertices of a level only read edges of the levels below and are customized in parallel.
+ */
+public class CustomizableHierarchy {
+    /** The most vertices of a cell that are ordered as they are instead of dissecting the cell further. */
+    private static final int CELL_SIZE = 8;
+
+    /** The fewest vertices of a level that are customized in parallel. */
+    private static final int PARALLEL_LEVEL = 512;
+
+    private final Graph graph;
+
+    /** The vertex at each rank of the order, and the rank of each vertex. */
+    private final int[] order;
+    private final int[] rank;
+
+    /**
+     * The edges of the hierarchy between ranks, each stored once at its lower end: the edges from {@code upOffsets[r]}
+     * to {@code upOffsets[r + 1]} lead from rank r to the ranks in {@code upTargets}, in increasing order.
+     * Edge c stands for two edges of a customized hierarchy, {@code 2 * c} upwards and {@code 2 * c + 1} downwards.
+     */
+    private final int[] upOffsets;
+    private final int[] upTargets;
+
+    /** The edges of each rank from the ranks below it, as the lower rank in {@code downSources} and the edge index. */
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downEdges;
+
+    /** The ranks of each level, from {@code levelOffsets[l]} to {@code levelOffsets[l + 1]} of {@code levelRanks}. */
+    private final int[] levelOffsets;
+    private final int[] levelRanks;
+
+    /** The edge of a customized hierarchy each arc of the graph is part of, or -1 for an arc that is a loop. */
+    private final int[] arcEdges;
+
+    /** The arc from u to v of each edge of the graph at index {@code 2 * e}, and from v to u at {@code 2 * e + 1}, or -1. */
+    private final int[] edgeArcs;
+
+    private CustomizableHierarchy(Graph graph, int[] order) {
+        this.graph = graph;
+        this.order = order;
+        int vertexCount = order.length;
+        rank = new int[vertexCount];
+        for (int r = 0; r < vertexCount; r++) {
+            rank[order[r]] = r;
+        }
+
+        // Contract in order: the neighbours of a vertex above it are joined to its lowest neighbour above it,
+        // which is the same as joining all of them to each other once every vertex is contracted
+        int[][] upper = new int[vertexCount][];
+        int[] sizes = new int[vertexCount];
+        for (int u = 0; u < vertexCount; u++) {
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                int w = graph.targets[arc];
+                if (w != u) {
+                    add(upper, sizes, Math.min(rank[u], rank[w]), Math.max(rank[u], rank[w]));
+                }
+            }
+        }
+        upOffsets = new int[vertexCount + 1];
+        for (int r = 0; r < vertexCount; r++) {
+            if (sizes[r] > 0) {
+                Arrays.sort(upper[r], 0, sizes[r]);
+                int unique = 1;
+                for (int i = 1; i < sizes[r]; i++) {
+                    if (upper[r][i] != upper[r][unique - 1]) {
+                        upper[r][unique++] = upper[r][i];
+                    }
+                }
+                sizes[r] = unique;
+                for (int i = 1; i < unique; i++) {
+                    add(upper, sizes, upper[r][0], upper[r][i]);
+                }
+            }
+            upOffsets[r + 1] = upOffsets[r] + sizes[r];
+        }
+        upTargets = new int[upOffsets[vertexCount]];
+        for (int r = 0; r < vertexCount; r++) {
+            if (sizes[r] > 0) {
+                System.arraycopy(upper[r], 0, upTargets, upOffsets[r], sizes[r]);
+                upper[r] = null;
+            }
+        }
+
+        downOffsets = new int[vertexCount + 1];
+        for (int target : upTargets) {
+            downOffsets[target + 1]++;
+        }
+        for (int r = 0; r < vertexCount; r++) {
+            downOffsets[r + 1] += downOffsets[r];
+        }
+        downSources = new int[upTargets.length];
+        downEdges = new int[upTargets.length];
+        int[] next = Arrays.copyOf(downOffsets, vertexCount);
+        int[] level = new int[vertexCount];
+        int levelCount = 0;
+        for (int r = 0; r < vertexCount; r++) {
+            levelCount = Math.max(levelCount, level[r] + 1);
+            for (int c = upOffsets[r]; c < upOffsets[r + 1]; c++) {
+                int i = next[upTargets[c]]++;
+                downSources[i] = r;
+                downEdges[i] = c;
+                level[upTargets[c]] = Math.max(level[upTargets[c]], level[r] + 1);
+            }
+        }
+        levelOffsets = new int[levelCount + 1];
+        for (int r = 0; r < vertexCount; r++) {
+            levelOffsets[level[r] + 1]++;
+        }
+        for (int l = 0; l < levelCount; l++) {
+            levelOffsets[l + 1] += levelOffsets[l];
+        }
+        levelRanks = new int[vertexCount];
+        next = Arrays.copyOf(levelOffsets, levelCount);
+        for (int r = 0; r < vertexCount; r++) {
+            levelRanks[next[level[r]]++] = r;
+        }
+
+        arcEdges = new int[graph.targets.length];
+        edgeArcs = new int[graph.edgeCount << 1];
+        Arrays.fill(edgeArcs, -1);
+        for (int u = 0; u < vertexCount; u++) {
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                int w = graph.targets[arc];
+                int lower = Math.min(rank[u], rank[w]);
+                int c = Arrays.binarySearch(upTargets, upOffsets[lower], upOffsets[lower + 1], Math.max(rank[u], rank[w]));
+                arcEdges[arc] = w == u ? -1 : rank[u] < rank[w] ? c << 1 : c << 1 | 1;
+                int edge = graph.arcEdges[arc];
+                edgeArcs[edge < 0 ? ~edge << 1 | 1 : edge << 1] = arc;
+            }
+        }
+    }
+
+    /**
+     * Orders the vertices of a frozen graph by nested dissection and finds the shortcuts of that order.
+     * The arcs of every profile are used, so the one order serves them all.
+     *
+     * @param graph The graph.
+     * @return The customizable hierarchy, which has no weights until it is customized.
+     */
+    public static CustomizableHierarchy build(Graph graph) {
+        graph.freeze();
+        Dissection dissection = new Dissection(graph);
+        dissection.dissect(0, graph.currentPos);
+        return new CustomizableHierarchy(graph, dissection.order);
+    }
+
+    /**
+     * Gets the number of edges between vertices of the hierarchy, each of which may be travelled both ways.
+     *
+     * @return The number of edges, including those that are arcs of the graph.
+     */
+    public int getEdgeCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * Gets the number of levels, which is the number of steps customizing takes one after another.
+     *
+     * @return The number of levels.
+     */
+    public int getLevelCount() {
+        return levelOffsets.length - 1;
+    }
+
+    /**
+     * Gets the arcs of an edge of the graph.
+     *
+     * @param edge The edge index.
+     * @return The arc from u to v of the edge at index 0, and from v to u at index 1, or -1 where there is none.
+     */
+    int[] arcs(int edge) {
+        return new int[]{edgeArcs[edge << 1], edgeArcs[(edge << 1) + 1]};
+    }
+
+    /**
+     * Makes a contraction hierarchy of a profile for a set of weights.
+     *
+     * @param profile The profile, whose arcs are the only ones used.
+     * @param weights The time of every arc in seconds, such as the weight array of the profile.
+     *                An arc that takes infinite time is never used.
+     * @return The contraction hierarchy.
+     */
+    public ContractionHierarchy customize(Profile profile, float[] weights) {
+        int edges = upTargets.length << 1;
+        float[] costs = new float[edges];
+        int[] first = new int[edges];
+        int[] second = new int[edges];
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        Arrays.fill(first, -1);
+        Arrays.fill(second, -1);
+        byte mode = profile.mode;
+        for (int arc = 0; arc < arcEdges.length; arc++) {
+            int edge = arcEdges[arc];
+            if (edge >= 0 && (graph.flags[arc] & mode) != 0 && weights[arc] < costs[edge]) {
+                costs[edge] = weights[arc];
+                first[edge] = arc;
+            }
+        }
+
+        for (int l = 0; l + 1 < levelOffsets.length; l++) {
+            IntStream ranks = IntStream.range(levelOffsets[l], levelOffsets[l + 1]);
+            if (levelOffsets[l + 1] - levelOffsets[l] >= PARALLEL_LEVEL) {
+                ranks = ranks.parallel();
+            }
+            ranks.forEach(i -> customize(levelRanks[i], costs, first, second));
+        }
+        return collect(costs, first, second);
+    }
+
+    /**
+     * Lowers the weights of the edges from a rank to the ranks above it by going through each triangle below them.
+     * The edges of every lower neighbour v have been customized, and since the hierarchy is chordal every
+     * neighbour of v above u is also a neighbour of u.
+     */
+    private void customize(int u, float[] costs, int[] first, int[] second) {
+        for (int k = downOffsets[u]; k < downOffsets[u + 1]; k++) {
+            int v = downSources[k];
+            int vu = downEdges[k];
+            float down = costs[(vu << 1) + 1];
+            float up = costs[vu << 1];
+            if (down == Float.POSITIVE_INFINITY && up == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            int ux = upOffsets[u];
+            for (int vx = vu + 1; vx < upOffsets[v + 1]; vx++) {
+                while (upTargets[ux] != upTargets[vx]) {
+                    ux++;
+                }
+                // From u down to v and up to x, and from x down to v and up to u
+                float via = down + costs[vx << 1];
+                if (via < costs[ux << 1]) {
+                    costs[ux << 1] = via;
+                    first[ux << 1] = (vu << 1) + 1;
+                    second[ux << 1] = vx << 1;
+                }
+                via = costs[(vx << 1) + 1] + up;
+                if (via < costs[(ux << 1) + 1]) {
+                    costs[(ux << 1) + 1] = via;
+                    first[(ux << 1) + 1] = (vx << 1) + 1;
+                    second[(ux << 1) + 1] = vu << 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the edges that can be travelled into the upward and downward edges of the vertices of the graph.
+     */
+    private ContractionHierarchy collect(float[] costs, int[] first, int[] second) {
+        int vertexCount = order.length;
+        ContractionHierarchy hierarchy = new ContractionHierarchy();
+        hierarchy.upOffsets = new int[vertexCount + 1];
+        hierarchy.downOffsets = new int[vertexCount + 1];
+        for (int r = 0; r < vertexCount; r++) {
+            for (int c = upOffsets[r]; c < upOffsets[r + 1]; c++) {
+                if (costs[c << 1] < Float.POSITIVE_INFINITY) {
+                    hierarchy.upOffsets[order[r] + 1]++;
+                }
+                if (costs[(c << 1) + 1] < Float.POSITIVE_INFINITY) {
+                    hierarchy.downOffsets[order[r] + 1]++;
+                }
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            hierarchy.upOffsets[v + 1] += hierarchy.upOffsets[v];
+            hierarchy.downOffsets[v + 1] += hierarchy.downOffsets[v];
+        }
+
+        int up = hierarchy.upOffsets[vertexCount];
+        int down = hierarchy.downOffsets[vertexCount];
+        hierarchy.upTargets = new int[up];
+        hierarchy.upWeights = new float[up];
+        hierarchy.upEdges = new int[up];
+        hierarchy.downSources = new int[down];
+        hierarchy.downWeights = new float[down];
+        hierarchy.downEdges = new int[down];
+        for (int r = 0; r < vertexCount; r++) {
+            int v = order[r];
+            int nextUp = hierarchy.upOffsets[v];
+            int nextDown = hierarchy.downOffsets[v];
+            for (int c = upOffsets[r]; c < upOffsets[r + 1]; c++) {
+                int w = order[upTargets[c]];
+                if (costs[c << 1] < Float.POSITIVE_INFINITY) {
+                    hierarchy.upTargets[nextUp] = w;
+                    hierarchy.upWeights[nextUp] = costs[c << 1];
+                    hierarchy.upEdges[nextUp++] = c << 1;
+                }
+                if (costs[(c << 1) + 1] < Float.POSITIVE_INFINITY) {
+                    hierarchy.downSources[nextDown] = w;
+                    hierarchy.downWeights[nextDown] = costs[(c << 1) + 1];
+                    hierarchy.downEdges[nextDown++] = (c << 1) + 1;
+                }
+            }
+        }
+        hierarchy.first = first;
+        hierarchy.second = second;
+        return hierarchy;
+    }
+
+    private static void add(int[][] lists, int[] sizes, int index, int value) {
+        if (lists[index] == null) {
+            lists[index] = new int[4];
+        } else if (sizes[index] == lists[index].length) {
+            lists[index] = Arrays.copyOf(lists[index], sizes[index] << 1);
+        }
+        lists[index][sizes[index]++] = value;
+    }
+
+    /**
+     * Orders the vertices of a graph by recursive coordinate bisection. The vertices of the cell being dissected
+     * are kept together in {@code vertices}, and the halves and the separator of the cell are told apart by
+     * marking them in {@code sides} with three numbers no other cell uses.
+     */
+    private static class Dissection {
+        private final Graph graph;
+        private final int[] vertices;
+        private final int[] sides;
+        private final long[] keys;
+        private final int[] buffer;
+        private final int[] order;
+        private int ordered;
+        private int mark = 1;
+
+        /** The mark of the half of the last bisected cell whose vertices along the border separate it. */
+        private int separated;
+
+        Dissection(Graph graph) {
+            this.graph = graph;
+            int vertexCount = graph.currentPos;
+            vertices = new int[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                vertices[v] = v;
+            }
+            sides = new int[vertexCount];
+            keys = new long[vertexCount];
+            buffer = new int[vertexCount];
+            order = new int[vertexCount];
+        }
+
+        /**
+         * Orders the vertices from index {@code from} to {@code to} of {@link #vertices}: the first half, then the
+         * second half and then the separator between them.
+         */
+        void dissect(int from, int to) {
+            if (to - from <= CELL_SIZE) {
+                System.arraycopy(vertices, from, order, ordered, to - from);
+                ordered += to - from;
+                return;
+            }
+
+            // Split the cell across whichever axis leaves fewer vertices along the border
+            int latitudeBorder = bisect(from, to, 0);
+            int longitudeBorder = bisect(from, to, 1);
+            if (latitudeBorder < longitudeBorder) {
+                bisect(from, to, 0);
+            }
+            int first = sides[vertices[from]];
+            int second = first + 1;
+            int separator = first + 2;
+            int other = separated == first ? second : first;
+            for (int i = from; i < to; i++) {
+                int v = vertices[i];
+                if (sides[v] == separated && touches(v, other)) {
+                    sides[v] = separator;
+                }
+            }
+
+            int firstCount = 0;
+            int secondCount = 0;
+            for (int i = from; i < to; i++) {
+                int side = sides[vertices[i]];
+                if (side == first) {
+                    firstCount++;
+                } else if (side == second) {
+                    secondCount++;
+                }
+            }
+            int[] next = {from, from + firstCount, from + firstCount + secondCount};
+            for (int i = from; i < to; i++) {
+                int v = vertices[i];
+                int side = sides[v] - first;
+                buffer[next[side]++] = v;
+            }
+            System.arraycopy(buffer, from, vertices, from, to - from);
+
+            int separatorStart = from + firstCount + secondCount;
+            dissect(from, from + firstCount);
+            dissect(from + firstCount, separatorStart);
+            System.arraycopy(vertices, separatorStart, order, ordered, to - separatorStart);
+            ordered += to - separatorStart;
+        }
+
+        /**
+         * Sorts the vertices of a cell by latitude or longitude, and marks the two halves with new numbers.
+         * The half with fewer vertices along the border is left in {@link #separated}.
+         *
+         * @return The number of vertices along the border of the half that has fewer of them.
+         */
+        private int bisect(int from, int to, int axis) {
+            float[] coords = graph.coords;
+            for (int i = from; i < to; i++) {
+                int v = vertices[i];
+                int bits = Float.floatToIntBits(coords[(v << 1) + axis]);
+                // Flip the bits of negative numbers so the integers sort like the floats
+                keys[i] = (long) (bits ^ (bits >> 31 & Integer.MAX_VALUE)) << 32 | v;
+            }
+            Arrays.sort(keys, from, to);
+            int middle = (from + to) >>> 1;
+            int first = mark;
+            int second = mark + 1;
+            mark += 3;
+            for (int i = from; i < to; i++) {
+                vertices[i] = (int) keys[i];
+                sides[vertices[i]] = i < middle ? first : second;
+            }
+            int firstBorder = 0;
+            int secondBorder = 0;
+            for (int i = from; i < to; i++) {
+                if (touches(vertices[i], i < middle ? second : first)) {
+                    if (i < middle) {
+                        firstBorder++;
+                    } else {
+                        secondBorder++;
+                    }
+                }
+            }
+            separated = firstBorder <= secondBorder ? first : second;
+            return Math.min(firstBorder, secondBorder);
+        }
+
+        /**
+         * Checks whether a vertex has an arc to or from a vertex marked with a side.
+         */
+        private boolean touches(int v, int side) {
+            for (int arc = graph.offsets[v]; arc < graph.offsets[v + 1]; arc++) {
+                if (sides[graph.targets[arc]] == side) {
+                    return true;
+                }
+            }
+            for (int i = graph.reverseOffsets[v]; i < graph.reverseOffsets[v + 1]; i++) {
+                if (sides[graph.sources[i]] == side) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
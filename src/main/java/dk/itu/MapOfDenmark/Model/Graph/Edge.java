@@ -35,6 +35,9 @@ public class Edge implements Serializable {
     /** Indicates whether the edge is one-way. */
     public boolean oneway;
 
+    /** Who may travel the edge in each direction, and how fast. */
+    RoadTags tags;
+
     /**
      * Constructs an edge between two vertices with given properties.
      *
@@ -57,6 +60,34 @@ public class Edge implements Serializable {
         this.time = 3.6f * (distance / speed);
         this.driveable = driveable;
         this.walkable = walkable;
+        this.tags = RoadTags.of(speed, oneway, driveable, walkable);
+    }
+
+    /**
+     * Constructs an edge between two vertices of a road whose tags give the access, direction and speed of each
+     * {@link Profile}.
+     *
+     * @param u        The identifier of the starting vertex.
+     * @param v        The identifier of the ending vertex.
+     * @param distance The distance between the vertices.
+     * @param road     The road associated with the edge.
+     * @param tags     What the tags of the road mean for routing.
+     */
+    public Edge(int u, int v, float distance, Road road, RoadTags tags) {
+        this(u, v, distance, tags.speed(Profile.CAR), road, tags.backward == 0,
+                tags.allows(Profile.CAR, true) || tags.allows(Profile.CAR, false),
+                tags.allows(Profile.WALK, true) || tags.allows(Profile.WALK, false));
+        this.tags = tags;
+    }
+
+    /**
+     * Gets the time it takes a profile to traverse the edge.
+     *
+     * @param profile The profile.
+     * @return The time in seconds.
+     */
+    float time(Profile profile) {
+        return 3.6f * (distance / tags.speed(profile));
     }
 
     /**
@@ -1,35 +1,132 @@
 package dk.itu.MapOfDenmark.Model.Graph;
 
+import dk.itu.MapOfDenmark.Model.MapFile;
 import dk.itu.MapOfDenmark.Model.Model;
+import dk.itu.MapOfDenmark.Model.objects.Isochrone;
 import dk.itu.MapOfDenmark.Model.objects.Path;
 import dk.itu.MapOfDenmark.Model.objects.abstracts.Road;
+import dk.itu.MapOfDenmark.utils.HelperMethods;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * Represents a graph structure to model a map of Denmark.
  */
 public class Graph implements Serializable {
+    /** The number of directions around the start of an isochrone that its outline has a point in. */
+    private static final int ISOCHRONE_SECTORS = 180;
+
+    /** Marks an arc that cars may use. */
+    static final byte DRIVEABLE = 1;
+
+    /** Marks an arc that pedestrians may use. */
+    static final byte WALKABLE = 2;
+
+    /** Marks an arc that bikes may use. */
+    static final byte BIKEABLE = 4;
+
+    /**
+     * The flags of the travel modes that may use an arc are also kept this many bits up for the opposite direction,
+     * so whether a snapped point can be left backwards along its edge is read from the arc it is on.
+     */
+    static final int OPPOSITE = 4;
+
+    /* The edges added while the graph is being built, one column per property and one time column per profile */
+    private int[] edgeU = new int[1024];
+    private int[] edgeV = new int[1024];
+    private float[] edgeDistance = new float[1024];
+    private float[][] edgeTimes = new float[Profile.COUNT][1024];
+    private byte[] edgeFlags = new byte[1024];
+
+    /**
+     * The adjacency of the frozen graph in compressed sparse row form.
+     * The arcs leaving vertex {@code u} are the indices from {@code offsets[u]} to {@code offsets[u + 1]}
+     * of the arc arrays, which hold the target vertex, length in meters and flags of each arc.
+     * Null until {@link #freeze()} is called.
+     */
+    int[] offsets;
+    int[] targets;
+    float[] distances;
+    byte[] flags;
+
+    /**
+     * The time in seconds it takes each {@link Profile} to travel each arc, indexed by profile ordinal and then by arc,
+     * and the contraction hierarchy of each profile for those times, or nulls if the graph has not been contracted.
+     * The times are worked out from the tags of the roads once, when the edges are added, so a search reads its
+     * costs from one of these arrays. Whether a profile may use an arc at all is in its flags.
+     * <p>
+     * A weighting is never changed once it is published. {@link #overrideWeights(Profile, Map)} and
+     * {@link #setHierarchy(Profile, ContractionHierarchy)} publish a new one, and each {@link Query} keeps the one
+     * it started with, so a search never uses the hierarchy of one set of weights with the times of another.
+     */
+    private record Weighting(float[][] weights, ContractionHierarchy[] hierarchies) {
+    }
+
+    private volatile Weighting weighting = new Weighting(null, new ContractionHierarchy[Profile.COUNT]);
+
+    /** The weighting compiled from the tags, kept once the weights are overridden so the next overrides start from it. */
+    private Weighting tagWeighting;
+
+    /**
+     * The edge each arc was made from, or the complement {@code ~edge} for the arc from v to u of an edge.
+     */
+    int[] arcEdges;
+
+    /**
+     * The points along each edge between its two vertices, from u to v, which are left when chains of vertices
+     * are merged into one edge by {@link #simplify()}. The points of edge e are the latitudes and longitudes
+     * from {@code shapes[2 * shapeOffsets[e]]} to {@code shapes[2 * shapeOffsets[e + 1]]}.
+     */
+    int[] shapeOffsets;
+    float[] shapes = new float[0];
+
+    /**
+     * The reverse adjacency of the frozen graph, used to search backwards from the end of a route.
+     * The arcs entering vertex {@code v} are the indices from {@code reverseOffsets[v]} to {@code reverseOffsets[v + 1]}
+     * of {@code reverseArcs}, which holds the index of each arc in the forward arrays, and {@code sources},
+     * which holds the vertex each arc leaves.
+     */
+    int[] reverseOffsets;
+    int[] reverseArcs;
+    int[] sources;
+
+    /** The order and shortcuts every hierarchy is customized from, or null until it is first needed. */
+    private CustomizableHierarchy customizableHierarchy;
+
+    /**
+     * The landmarks of each profile that guide A*, or nulls if none have been chosen.
+     */
+    Landmarks[] landmarks = new Landmarks[Profile.COUNT];
+
     /**
-     * The number of vertices in the graph.
+     * The connected components of each profile, found when the graph is frozen.
      */
-    int vertices;
+    Components[] components = new Components[Profile.COUNT];
 
     /**
-     * The adjacency list representing the graph.
+     * The routes found most recently in this graph, so searching for the same route again does not search it.
+     * The keys are vertex positions and points on edges, which only mean something in the graph they came from.
+     * Holds 64 routes by default, set with {@code -Dmapofdenmark.routeCache=<routes>}.
      */
-    List<List<Edge>> adjList;
+    private final RouteCache routeCache = new RouteCache(Integer.getInteger("mapofdenmark.routeCache", 64));
 
     /**
-     * Mapping from vertices to their positions in the graph.
+     * The latitude and longitude of each vertex, indexed by position.
      */
-    Map<Vertex, Integer> node2Pos = new HashMap<>();
+    float[] coords = new float[2048];
 
     /**
-     * Set to track seen vertices during operations on the graph.
+     * Mapping from coordinates to vertex positions.
      */
-    Set<Vertex> seen = new HashSet<>();
+    CoordinateMap positions = new CoordinateMap(1024);
 
     /**
      * Current position in the graph.
@@ -42,20 +139,25 @@ public class Graph implements Serializable {
     int edgeCount;
 
     /**
-     * The time of the latest search performed on the graph.
+     * Whether the graph has been frozen, after which it is only read and can be shared by any number of searches.
+     */
+    private volatile boolean frozen;
+
+    /**
+     * The search states no search is using. Each search takes the states it needs and gives them back when done,
+     * so their arrays are reused by every thread, from the common pool to short-lived virtual threads.
      */
-    static double timeOfLatestSearch;
+    private final transient ConcurrentLinkedQueue<SearchState> idleStates = new ConcurrentLinkedQueue<>();
 
     /**
-     * The distance of the latest search performed on the graph.
+     * The spatial index of the road segments that points are snapped to, or null until it is first needed.
      */
-    static double distanceOfLatestSearch;
+    private transient volatile SegmentIndex segmentIndex;
 
     /**
      * Constructs an empty graph.
      */
     public Graph() {
-        adjList = new ArrayList<>();
         currentPos = 0;
         edgeCount = 0;
     }
@@ -67,283 +169,2051 @@ public class Graph implements Serializable {
      */
     public void addEdge(Road road) {
         for (Edge e : road.getEdges()) {
-            int u = e.getU();
-            int v = e.next(u);
-
-            adjList.get(v).add(e);
-            if (!e.oneway) {
-                adjList.get(u).add(e);
-            }
-            edgeCount++;
+            addEdge(e);
         }
     }
 
     /**
-     * Adds a vertex to the graph.
+     * Adds a single edge to the graph.
      *
-     * @param node The coordinates of the vertex to be added.
+     * @param e The edge to add.
+     * @throws IllegalStateException If the graph has been frozen.
      */
-    public void addVertex(float[] node) {
-        Vertex vertex = new Vertex(node);
-        if (!seen.contains(vertex)) {
-            adjList.add(new LinkedList<>());
-            node2Pos.put(vertex, currentPos);
-            currentPos++;
-            seen.add(vertex);
+    public void addEdge(Edge e) {
+        if (offsets != null) {
+            throw new IllegalStateException("Edges cannot be added to a frozen graph");
         }
+        if (edgeCount == edgeU.length) {
+            int capacity = edgeCount + (edgeCount >> 1);
+            edgeU = Arrays.copyOf(edgeU, capacity);
+            edgeV = Arrays.copyOf(edgeV, capacity);
+            edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+            for (Profile profile : Profile.values()) {
+                edgeTimes[profile.ordinal()] = Arrays.copyOf(edgeTimes[profile.ordinal()], capacity);
+            }
+            edgeFlags = Arrays.copyOf(edgeFlags, capacity);
+        }
+        // An edge only some may travel against its nodes is turned around, so there is always an arc from u to v
+        boolean turned = e.tags.forward == 0 && e.tags.backward != 0;
+        edgeU[edgeCount] = turned ? e.v : e.u;
+        edgeV[edgeCount] = turned ? e.u : e.v;
+        edgeDistance[edgeCount] = e.distance;
+        for (Profile profile : Profile.values()) {
+            edgeTimes[profile.ordinal()][edgeCount] = e.time(profile);
+        }
+        edgeFlags[edgeCount] = turned ? flags(e.tags.backward, e.tags.forward) : flags(e.tags.forward, e.tags.backward);
+        edgeCount++;
     }
 
     /**
-     * Retrieves the adjacency list of edges for a given vertex.
+     * Makes the flags of an arc.
      *
-     * @param u The identifier of the vertex.
-     * @return The adjacency list of edges for the vertex.
+     * @param along   The modes that may travel the arc.
+     * @param against The modes that may travel the edge of the arc the other way.
+     * @return The flags.
+     */
+    private static byte flags(byte along, byte against) {
+        return (byte) (along | against << OPPOSITE);
+    }
+
+    /**
+     * Gets the flags of the arc in the opposite direction of an arc.
+     */
+    private static byte opposite(byte flags) {
+        return flags(mode(flags >> OPPOSITE), mode(flags));
+    }
+
+    /**
+     * Gets the modes that may travel an arc from its flags.
      */
-    public Iterable<Edge> getAdjList(int u) {
-        return adjList.get(u);
+    private static byte mode(int flags) {
+        return (byte) (flags & (DRIVEABLE | WALKABLE | BIKEABLE));
     }
 
     /**
-     * Retrieves all edges in the graph.
+     * Merges every chain of vertices that a road passes through without meeting another road into a single edge
+     * between the vertices at its ends, with the summed length and time. The coordinates of the removed vertices
+     * are kept as the shape of the new edge, so routes are still drawn along the roads.
+     * <p>
+     * A vertex is removed if it has exactly two edges, which allow the same travel modes and, if one-way,
+     * lead through the vertex in the same direction. The remaining vertices are numbered again in their old order.
+     * This must be called before {@link #freeze()}.
      *
-     * @return An iterable collection of all edges in the graph.
+     * @throws IllegalStateException If the graph has been frozen.
      */
-    public Iterable<Edge> edges() {
-        ArrayList<Edge> list = new ArrayList<>();
-        for (int v = 0; v < vertices; v++) {
-            int selfLoops = 0;
-            for (Edge e : getAdjList(v)) {
-                if (e.next(v) > v) {
-                    list.add(e);
-                } else if (e.next(v) == v) {
-                    if (selfLoops % 2 == 0) list.add(e);
-                    selfLoops++;
+    public void simplify() {
+        if (offsets != null) {
+            throw new IllegalStateException("A frozen graph cannot be simplified");
+        }
+
+        // The edges of each vertex, in both directions
+        int[] incidentOffsets = new int[currentPos + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            incidentOffsets[edgeU[e] + 1]++;
+            incidentOffsets[edgeV[e] + 1]++;
+        }
+        for (int v = 0; v < currentPos; v++) {
+            incidentOffsets[v + 1] += incidentOffsets[v];
+        }
+        int[] incident = new int[edgeCount << 1];
+        int[] next = Arrays.copyOf(incidentOffsets, currentPos);
+        for (int e = 0; e < edgeCount; e++) {
+            incident[next[edgeU[e]]++] = e;
+            incident[next[edgeV[e]]++] = e;
+        }
+
+        boolean[] kept = new boolean[currentPos];
+        for (int v = 0; v < currentPos; v++) {
+            kept[v] = !isChainVertex(v, incidentOffsets, incident);
+        }
+
+        Chains chains = new Chains(edgeCount);
+        boolean[] used = new boolean[edgeCount];
+        for (int v = 0; v < currentPos; v++) {
+            if (kept[v]) {
+                for (int i = incidentOffsets[v]; i < incidentOffsets[v + 1]; i++) {
+                    if (!used[incident[i]]) {
+                        walkChain(v, incident[i], kept, used, incidentOffsets, incident, chains);
+                    }
                 }
             }
         }
-        return list;
+        // Chains that form a closed loop have no end, so one of their vertices is kept
+        for (int v = 0; v < currentPos; v++) {
+            if (!kept[v] && !used[incident[incidentOffsets[v]]]) {
+                kept[v] = true;
+                walkChain(v, incident[incidentOffsets[v]], kept, used, incidentOffsets, incident, chains);
+            }
+        }
+
+        int[] renumbered = new int[currentPos];
+        int vertices = 0;
+        for (int v = 0; v < currentPos; v++) {
+            if (kept[v]) {
+                coords[vertices << 1] = coords[v << 1];
+                coords[(vertices << 1) + 1] = coords[(v << 1) + 1];
+                renumbered[v] = vertices++;
+            }
+        }
+        currentPos = vertices;
+        coords = Arrays.copyOf(coords, vertices << 1);
+        positions = new CoordinateMap(vertices);
+        for (int v = 0; v < vertices; v++) {
+            positions.putIfAbsent(coords[v << 1], coords[(v << 1) + 1], v);
+        }
+
+        edgeCount = chains.count;
+        edgeU = new int[edgeCount];
+        edgeV = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeU[e] = renumbered[chains.u[e]];
+            edgeV[e] = renumbered[chains.v[e]];
+        }
+        edgeDistance = Arrays.copyOf(chains.distance, edgeCount);
+        for (Profile profile : Profile.values()) {
+            edgeTimes[profile.ordinal()] = Arrays.copyOf(chains.times[profile.ordinal()], edgeCount);
+        }
+        edgeFlags = Arrays.copyOf(chains.flags, edgeCount);
+        shapeOffsets = Arrays.copyOf(chains.shapeOffsets, edgeCount + 1);
+        shapes = Arrays.copyOf(chains.shapes, shapeOffsets[edgeCount] << 1);
     }
 
     /**
-     * Performs Dijkstra's algorithm to find the shortest path between two vertices.
-     *
-     * @param start The starting vertex of the path.
-     * @param end   The ending vertex of the path.
-     * @return A list of vertex identifiers representing the shortest path.
+     * Checks whether a vertex only continues a road, which is when its two edges can be merged into one.
      */
-    public List<Integer> dijkstra(Vertex start, Vertex end) {
-        System.out.println("Start: " + node2Pos.get(start) + " End: " + node2Pos.get(end));
-        return dijkstra(node2Pos.get(start), node2Pos.get(end));
+    private boolean isChainVertex(int v, int[] incidentOffsets, int[] incident) {
+        if (incidentOffsets[v + 1] - incidentOffsets[v] != 2) {
+            return false;
+        }
+        int a = incident[incidentOffsets[v]];
+        int b = incident[incidentOffsets[v] + 1];
+        if (a == b || edgeU[a] == edgeV[a] || edgeU[b] == edgeV[b]) {
+            return false;
+        }
+        // Seen in the direction from a through the vertex to b, both edges must allow the same modes each way
+        boolean sameDirection = (edgeV[a] == v) != (edgeV[b] == v);
+        return edgeFlags[a] == (sameDirection ? edgeFlags[b] : opposite(edgeFlags[b]));
     }
 
     /**
-     * Reconstructs the shortest path from the parent map.
-     *
-     * @param parent The parent map obtained during the shortest path search.
-     * @param start  The starting vertex index.
-     * @param end    The ending vertex index.
-     * @return A list of vertex indices representing the shortest path from start to end.
+     * Follows a chain from a kept vertex along one of its edges until the next kept vertex, and adds it as one edge.
      */
-    private List<Integer> reconstructPath(Map<Integer, Integer> parent, int start, int end) {
-        List<Integer> pathIds = new ArrayList<>();
-        int current = end;
-        while (!(current == start)) {
-            pathIds.add(current);
-            current = parent.get(current);
+    private void walkChain(int start, int first, boolean[] kept, boolean[] used, int[] incidentOffsets, int[] incident, Chains chains) {
+        int shapeStart = chains.points;
+        double distance = 0;
+        double[] times = new double[Profile.COUNT];
+        int current = start;
+        int edge = first;
+        while (true) {
+            used[edge] = true;
+            distance += edgeDistance[edge];
+            for (int p = 0; p < times.length; p++) {
+                times[p] += edgeTimes[p][edge];
+            }
+            current = edgeU[edge] == current ? edgeV[edge] : edgeU[edge];
+            if (kept[current]) {
+                break;
+            }
+            chains.addPoint(coords[current << 1], coords[(current << 1) + 1]);
+            int i = incidentOffsets[current];
+            edge = incident[i] == edge ? incident[i + 1] : incident[i];
         }
 
-        pathIds.add(start);
-        Collections.reverse(pathIds); // Reverse the list to get the correct order
-        return pathIds;
+        // The chain keeps the direction of its first edge, so the flags of that edge hold for the whole chain
+        if (edgeU[first] != start) {
+            chains.reverseShape(shapeStart);
+            chains.add(current, start, distance, times, edgeFlags[first]);
+        } else {
+            chains.add(start, current, distance, times, edgeFlags[first]);
+        }
     }
 
-    public static boolean wantToDrive = true;
+    /**
+     * The edges made by {@link #simplify()}, in growable columns like the edge columns of the graph.
+     */
+    private static class Chains {
+        int count;
+        int[] u;
+        int[] v;
+        float[] distance;
+        float[][] times;
+        byte[] flags;
+        int[] shapeOffsets;
+        int points;
+        float[] shapes = new float[1024];
+
+        Chains(int capacity) {
+            u = new int[capacity];
+            v = new int[capacity];
+            distance = new float[capacity];
+            times = new float[Profile.COUNT][capacity];
+            flags = new byte[capacity];
+            shapeOffsets = new int[capacity + 1];
+        }
+
+        void addPoint(float lat, float lon) {
+            if ((points + 1) << 1 > shapes.length) {
+                shapes = Arrays.copyOf(shapes, shapes.length << 1);
+            }
+            shapes[points << 1] = lat;
+            shapes[(points << 1) + 1] = lon;
+            points++;
+        }
+
+        void reverseShape(int from) {
+            for (int i = from, j = points - 1; i < j; i++, j--) {
+                float lat = shapes[i << 1];
+                float lon = shapes[(i << 1) + 1];
+                shapes[i << 1] = shapes[j << 1];
+                shapes[(i << 1) + 1] = shapes[(j << 1) + 1];
+                shapes[j << 1] = lat;
+                shapes[(j << 1) + 1] = lon;
+            }
+        }
+
+        void add(int from, int to, double length, double[] seconds, byte edgeFlags) {
+            u[count] = from;
+            v[count] = to;
+            distance[count] = (float) length;
+            for (int p = 0; p < seconds.length; p++) {
+                times[p][count] = (float) seconds[p];
+            }
+            flags[count] = edgeFlags;
+            count++;
+            shapeOffsets[count] = points;
+        }
+    }
 
     /**
-     * Retrieves the vertex corresponding to a given position in the graph.
-     *
-     * @param pos The position of the vertex in the graph.
-     * @return The vertex corresponding to the position.
+     * Builds the compressed sparse row adjacency from the edges added so far and releases the edge columns.
+     * Every edge gets an arc from u to v, and edges that any mode may travel the other way also get an arc from v to u.
+     * Call {@link #simplify()} first to merge the chains of vertices that roads pass through without meeting.
+     * The connected components of every profile are found as well.
+     * After this no more edges can be added and the graph can be searched from any number of threads at once.
+     * Calling it again does nothing.
      */
-    public Vertex getNodeFromPos(int pos) {
-        for (Map.Entry<Vertex, Integer> entry : node2Pos.entrySet()) {
-            if (entry.getValue() == pos) {
-                return entry.getKey();
+    public void freeze() {
+        if (!frozen) {
+            buildAdjacency();
+        }
+    }
+
+    /**
+     * Builds the adjacency once, while other threads that want to search wait for it.
+     */
+    private synchronized void buildAdjacency() {
+        if (offsets != null) {
+            frozen = true;
+            return;
+        }
+        offsets = new int[currentPos + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[edgeU[e] + 1]++;
+            if (mode(edgeFlags[e] >> OPPOSITE) != 0) {
+                offsets[edgeV[e] + 1]++;
             }
         }
-        return null;
+        for (int u = 0; u < currentPos; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        int arcs = offsets[currentPos];
+        targets = new int[arcs];
+        distances = new float[arcs];
+        float[][] weights = new float[Profile.COUNT][arcs];
+        flags = new byte[arcs];
+        arcEdges = new int[arcs];
+        int[] next = Arrays.copyOf(offsets, currentPos);
+        for (int e = 0; e < edgeCount; e++) {
+            addArc(weights, next[edgeU[e]]++, edgeV[e], e, e);
+            if (mode(edgeFlags[e] >> OPPOSITE) != 0) {
+                addArc(weights, next[edgeV[e]]++, edgeU[e], e, ~e);
+            }
+        }
+        weighting = new Weighting(weights, weighting.hierarchies());
+        if (shapeOffsets == null) {
+            shapeOffsets = new int[edgeCount + 1];
+        }
+
+        edgeU = null;
+        edgeV = null;
+        edgeDistance = null;
+        edgeTimes = null;
+        edgeFlags = null;
+        buildReverse();
+        findComponents();
+        frozen = true;
+    }
+
+    /**
+     * Finds the connected components of every profile, in parallel.
+     */
+    private void findComponents() {
+        components = forEachProfile(profile -> Components.build(this, profile), Components[]::new);
+    }
+
+    /**
+     * Builds something for every profile in parallel.
+     */
+    private static <T> T[] forEachProfile(Function<Profile, T> build, IntFunction<T[]> array) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (Profile profile : Profile.values()) {
+            futures.add(CompletableFuture.supplyAsync(() -> build.apply(profile)));
+        }
+        T[] built = array.apply(Profile.COUNT);
+        for (int p = 0; p < built.length; p++) {
+            built[p] = futures.get(p).join();
+        }
+        return built;
     }
+
     /**
-     * Performs Dijkstra's algorithm to find the shortest path between two vertices.
+     * Gets the connected components of a travel mode.
      *
-     * @param start The starting vertex index of the path.
-     * @param end   The ending vertex index of the path.
-     * @return A list of vertex indices representing the shortest path.
+     * @param drive True for driving, false for walking.
+     * @return The components, or null if the graph has not been frozen.
      */
-    public List<Integer> dijkstra(int start, int end) {
-//        // Priority queue for Dijkstra's algorithm with distances as priority
-        PriorityQueue<VertexNode> queue = new PriorityQueue<>();
+    public Components getComponents(boolean drive) {
+        return getComponents(Profile.of(drive));
+    }
+
+    /**
+     * Gets the connected components of a profile.
+     *
+     * @param profile The profile.
+     * @return The components, or null if the graph has not been frozen.
+     */
+    public Components getComponents(Profile profile) {
+        return components[profile.ordinal()];
+    }
 
-//        // Map to store the shortest distances from the start node to each node
-        Map<Integer, Double> times = new HashMap<>();
-        // Map to store parent nodes for path reconstruction
-        Map<Integer, Integer> parent = new HashMap<>();
+    /**
+     * Builds the reverse adjacency from the forward arcs.
+     */
+    private void buildReverse() {
+        reverseOffsets = new int[currentPos + 1];
+        for (int arc = 0; arc < targets.length; arc++) {
+            reverseOffsets[targets[arc] + 1]++;
+        }
+        for (int v = 0; v < currentPos; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
 
-        // Initialize distances
-        for (int vertex : node2Pos.values()) {
-            times.put(vertex, Double.MAX_VALUE);
+        reverseArcs = new int[targets.length];
+        sources = new int[targets.length];
+        int[] next = Arrays.copyOf(reverseOffsets, currentPos);
+        for (int u = 0; u < currentPos; u++) {
+            for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+                int reverseArc = next[targets[arc]]++;
+                reverseArcs[reverseArc] = arc;
+                sources[reverseArc] = u;
+            }
         }
-        times.put(start, 0.0);
+    }
 
-        queue.add(new VertexNode(start, 0.0, 0) {
-        });
+    private void addArc(float[][] weights, int arc, int target, int edge, int arcEdge) {
+        targets[arc] = target;
+        arcEdges[arc] = arcEdge;
+        distances[arc] = edgeDistance[edge];
+        for (int p = 0; p < weights.length; p++) {
+            weights[p][arc] = edgeTimes[p][edge];
+        }
+        flags[arc] = arcEdge < 0 ? opposite(edgeFlags[edge]) : edgeFlags[edge];
+    }
 
+    /**
+     * Builds the contraction hierarchies of every profile, in parallel, or customizes them from one
+     * {@link CustomizableHierarchy} if {@link #customizable} is enabled.
+     * Routes are found in the hierarchy of their profile from then on, and the weights can not be overridden meanwhile.
+     */
+    public synchronized void contract() {
+        freeze();
+        ContractionHierarchy[] hierarchies;
+        if (customizable) {
+            CustomizableHierarchy hierarchy = getCustomizableHierarchy();
+            hierarchies = forEachProfile(profile -> hierarchy.customize(profile, weights(profile)), ContractionHierarchy[]::new);
+        } else {
+            hierarchies = forEachProfile(profile -> ContractionHierarchy.build(this, profile), ContractionHierarchy[]::new);
+        }
+        weighting = new Weighting(weighting.weights(), hierarchies);
+    }
 
-        // Dijkstra's algorithm loop
-        while (!queue.isEmpty()) {
-            VertexNode current = queue.poll();
-            int currentNode = current.pos;
-            double currentDistance = current.getDistance();
-            double currentTime = current.getTime();
+    /**
+     * Gets the order and shortcuts that the hierarchies of any weights are customized from, finding them the first time.
+     *
+     * @return The customizable hierarchy of the graph.
+     */
+    public synchronized CustomizableHierarchy getCustomizableHierarchy() {
+        if (customizableHierarchy == null) {
+            customizableHierarchy = CustomizableHierarchy.build(this);
+        }
+        return customizableHierarchy;
+    }
 
-            // Stop if the destination node is reached
-            if (currentNode == end) {
-                distanceOfLatestSearch = current.getDistance();
-                timeOfLatestSearch = current.getTime();
-                return reconstructPath(parent, start, end);
+    /**
+     * Makes some edges slower for a profile, such as roads that are closed or congested, and customizes the
+     * contraction hierarchy of the profile for the new weights so routes are found in it at once.
+     * Each call replaces the overrides of the one before it, so an empty map restores the weights of the tags.
+     * <p>
+     * Weights can only be raised, so the landmarks and the straight-line bounds that guide A* still hold.
+     * The weights and the hierarchy are published together, so routes being found while they change use either the
+     * old or the new ones throughout, and the route cache is cleared.
+     *
+     * @param profile The profile.
+     * @param factors The factor each edge index is slower by, at least 1, or infinity for an edge that is closed.
+     * @throws IllegalArgumentException If an edge does not exist or a factor is less than 1.
+     */
+    public synchronized void overrideWeights(Profile profile, Map<Integer, Double> factors) {
+        freeze();
+        CustomizableHierarchy hierarchy = getCustomizableHierarchy();
+        Weighting current = weighting;
+        if (tagWeighting == null) {
+            tagWeighting = current;
+        }
+        float[] overridden = tagWeighting.weights()[profile.ordinal()].clone();
+        for (Map.Entry<Integer, Double> entry : factors.entrySet()) {
+            int edge = entry.getKey();
+            double factor = entry.getValue();
+            if (edge < 0 || edge >= edgeCount) {
+                throw new IllegalArgumentException("There is no edge " + edge);
             }
-
-            // Ignore if the current distance to this node is not the shortest
-            if (currentTime > times.get(currentNode)) {
-                continue;
+            if (!(factor >= 1)) {
+                throw new IllegalArgumentException("The weight of edge " + edge + " can not be multiplied by " + factor);
             }
-            // Relax neighboring nodes
-            boolean isValidEdge;
-            for (Edge edge : adjList.get(currentNode)) {
-                isValidEdge = wantToDrive ? edge.driveable : edge.walkable;
-
-                if (isValidEdge) {
-                    //System.out.println("is oneway: " + edge.oneway);
-                    int neighbor = edge.next(currentNode);
-                    double timeThroughCurrent;
-                    double distanceThroughCurrent = currentDistance + edge.distance;
-
-                    if (wantToDrive) {
-                        timeThroughCurrent = currentTime + edge.time;
-                    } else {
-                        timeThroughCurrent = currentTime + 3.6 * edge.distance / 5;
-                    }
-                    distanceThroughCurrent = currentDistance + edge.distance;
-                    if (timeThroughCurrent < times.get(neighbor)) {
-                        times.put(neighbor, timeThroughCurrent);
-                        parent.put(neighbor, currentNode);
-                        queue.add(new VertexNode(neighbor, timeThroughCurrent, distanceThroughCurrent));
-                    }
+            for (int arc : hierarchy.arcs(edge)) {
+                if (arc >= 0) {
+                    overridden[arc] = (float) (overridden[arc] * factor);
                 }
             }
         }
-        return null;
+
+        ContractionHierarchy customized = hierarchy.customize(profile, overridden);
+        float[][] newWeights = current.weights().clone();
+        newWeights[profile.ordinal()] = overridden;
+        ContractionHierarchy[] newHierarchies = current.hierarchies().clone();
+        newHierarchies[profile.ordinal()] = customized;
+        weighting = new Weighting(newWeights, newHierarchies);
+        routeCache.clear();
     }
 
     /**
-     * Retrieves the mapping of vertices to their positions in the graph.
+     * Gets the contraction hierarchy of a travel mode.
      *
-     * @return The mapping of vertices to their positions.
+     * @param drive True for driving, false for walking.
+     * @return The contraction hierarchy, or null if the graph has not been contracted.
      */
-    public Map<Vertex, Integer> getNode2Pos() {
-        return node2Pos;
+    public ContractionHierarchy getHierarchy(boolean drive) {
+        return getHierarchy(Profile.of(drive));
     }
 
-    public String toString() {
-        StringBuilder s = new StringBuilder();
-        return s.toString();
+    /**
+     * Gets the contraction hierarchy of a profile.
+     *
+     * @param profile The profile.
+     * @return The contraction hierarchy, or null if the graph has not been contracted.
+     */
+    public ContractionHierarchy getHierarchy(Profile profile) {
+        return weighting.hierarchies()[profile.ordinal()];
     }
 
+    /**
+     * Gets the contraction hierarchy of a profile for the weights of the tags, which is the one a map file is saved
+     * with, since {@link #write(MapFile.Writer)} saves those weights rather than any that were overridden.
+     *
+     * @param profile The profile.
+     * @return The contraction hierarchy, or null if there is none for the weights of the tags.
+     */
+    public ContractionHierarchy getTagHierarchy(Profile profile) {
+        return tagWeighting().hierarchies()[profile.ordinal()];
+    }
 
-    public void addGraphToMap() {
-        for (Vertex node : node2Pos.keySet()) {
-            Model.add(new Vertex(node.getCoords()));
-        }
+    /**
+     * Gets the weighting compiled from the tags, which is the current one unless the weights have been overridden.
+     */
+    private synchronized Weighting tagWeighting() {
+        return tagWeighting != null ? tagWeighting : weighting;
     }
 
     /**
-     * Executes the Dijkstra algorithm based on a list of selected points on the graph.
+     * Gets the routes found most recently in this graph.
      *
-     * @param click A list of coordinates representing selected points on the graph.
-     * @return A string representation of the calculated path time and distance.
-     * @throws NullPointerException If fewer than two points are selected.
+     * @return The route cache.
      */
-    public static String executeDijkstraAction(List<float[]> click) {
-        if (click.size() < 2)
-            throw new NullPointerException("Please select 2 point(s) on the graph!");
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
 
-        Vertex v1 = new Vertex(click.get(0));
-        Vertex v2 = new Vertex(click.get(1));
+    /**
+     * Sets the contraction hierarchy of a profile, as read from a map file.
+     *
+     * @param profile   The profile.
+     * @param hierarchy The contraction hierarchy.
+     */
+    public synchronized void setHierarchy(Profile profile, ContractionHierarchy hierarchy) {
+        ContractionHierarchy[] newHierarchies = weighting.hierarchies().clone();
+        newHierarchies[profile.ordinal()] = hierarchy;
+        weighting = new Weighting(weighting.weights(), newHierarchies);
+    }
 
-        List<Integer> dijkstraPath = Model.getGraph().dijkstra(v1, v2);
+    /**
+     * Chooses landmarks for every profile and computes the times to and from them, in parallel.
+     * A* is guided by the landmarks of its profile from then on.
+     *
+     * @param count The number of landmarks for each profile.
+     */
+    public void selectLandmarks(int count) {
+        freeze();
+        landmarks = forEachProfile(profile -> Landmarks.build(this, profile, count), Landmarks[]::new);
+    }
 
-        if (dijkstraPath == null) {
-            throw new NullPointerException("No path found");
-        } else {
-            float[] wayPoints = new float[dijkstraPath.size() * 2];
+    /**
+     * Gets the landmarks of a travel mode.
+     *
+     * @param drive True for driving, false for walking.
+     * @return The landmarks, or null if none have been chosen.
+     */
+    public Landmarks getLandmarks(boolean drive) {
+        return getLandmarks(Profile.of(drive));
+    }
 
-            Graph graph = Model.getGraph();
+    /**
+     * Gets the landmarks of a profile.
+     *
+     * @param profile The profile.
+     * @return The landmarks, or null if none have been chosen.
+     */
+    public Landmarks getLandmarks(Profile profile) {
+        return landmarks[profile.ordinal()];
+    }
 
-            for (int i = 0; i < dijkstraPath.size(); i += 2) {
-                wayPoints[i] = graph.getNodeFromPos(dijkstraPath.get(i)).getCoords()[0];
-                wayPoints[i + 1] = graph.getNodeFromPos(dijkstraPath.get(i)).getCoords()[1];
-            }
+    /**
+     * Sets the landmarks of a profile, as read from a map file.
+     *
+     * @param profile   The profile.
+     * @param landmarks The landmarks.
+     */
+    public void setLandmarks(Profile profile, Landmarks landmarks) {
+        this.landmarks[profile.ordinal()] = landmarks;
+    }
 
-            int count = 0;
-            for (int i = 0; i < wayPoints.length; i++) {
-                if (wayPoints[i] != 0) {
-                    count++;
-                }
-            }
-            float[] finalCoords = new float[count];
-            count = 0;
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return currentPos;
+    }
 
-            for (float wayPoint : wayPoints) {
-                if (wayPoint != 0) {
-                    finalCoords[count] = wayPoint;
-                    count++;
-                }
-            }
+    /**
+     * Gets the number of edges in the graph. An edge that can be travelled both ways counts once.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
 
-            Model.add(new Path(finalCoords));
+    /**
+     * Gets the coordinates of every vertex.
+     *
+     * @return The latitude and longitude of each vertex, ordered by position.
+     */
+    public float[] getVertexCoords() {
+        return Arrays.copyOf(coords, currentPos << 1);
+    }
 
-            if (getTimeOfLatestSearch() / 60 > 60) {
-                if (distanceOfLatestSearch >= 1000) {
-                    return "Path time: " + String.format("%.0f", getTimeOfLatestSearch() / 60 / 60) + " h " + String.format("%.0f", getTimeOfLatestSearch() % 60) + " min " + String.format("%.1f", getDistanceOfLatestSearch() / 1000) + "km\n";
-                } else {
-                    return "Path time: " + String.format("%.0f", getTimeOfLatestSearch() / 60 / 60) + " h " + String.format("%.0f", getTimeOfLatestSearch() % 60) + " min " + String.format("%.0f", getDistanceOfLatestSearch()) + "m\n";
-                }
-            } else {
-                if (distanceOfLatestSearch >= 1000) {
-                    return "Path time: " + String.format("%.0f", getTimeOfLatestSearch() / 60) + " min " + String.format("%.1f", getDistanceOfLatestSearch() / 1000) + "km\n";
+    /**
+     * Writes the frozen adjacency as the graph section of a {@link MapFile}: the edge count, the offsets
+     * and then one column each for the targets, distances, flags and edges of the arcs and the weights of every
+     * profile, followed by the shape offsets and points of the edges and the components of every profile.
+     * The weights are the ones compiled from the tags, so overrides are not saved.
+     *
+     * @param out The writer of the map file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MapFile.Writer out) throws IOException {
+        freeze();
+        out.putInt(edgeCount);
+        out.putInts(offsets, 0, offsets.length);
+        out.putInts(targets, 0, targets.length);
+        out.putFloats(distances, 0, distances.length);
+        out.putBytes(flags);
+        out.putInts(arcEdges, 0, arcEdges.length);
+        for (float[] profileWeights : tagWeighting().weights()) {
+            out.putFloats(profileWeights, 0, profileWeights.length);
+        }
+        out.putInts(shapeOffsets, 0, shapeOffsets.length);
+        out.putFloats(shapes, 0, shapeOffsets[edgeCount] << 1);
+        for (Components profileComponents : components) {
+            profileComponents.write(out);
+        }
+    }
 
-                } else {
-                    return "Path time: " + String.format("%.0f", getTimeOfLatestSearch() / 60) + " min " + String.format("%.0f", getDistanceOfLatestSearch()) + "m\n";
-                }
+    /**
+     * Reads a frozen graph written by {@link #write(MapFile.Writer)}.
+     *
+     * @param coords The coordinates of the vertices, as returned by {@link #getVertexCoords()}.
+     * @param in     The graph section of a map file.
+     * @return The graph.
+     */
+    public static Graph read(float[] coords, ByteBuffer in) {
+        Graph graph = new Graph();
+        graph.coords = coords;
+        graph.currentPos = coords.length / 2;
+        graph.positions = new CoordinateMap(graph.currentPos);
+        for (int i = 0; i < graph.currentPos; i++) {
+            graph.positions.putIfAbsent(coords[i << 1], coords[(i << 1) + 1], i);
+        }
 
-            }
+        graph.edgeCount = in.getInt();
+        graph.offsets = new int[graph.currentPos + 1];
+        in.asIntBuffer().get(graph.offsets);
+        in.position(in.position() + graph.offsets.length * 4);
+        int arcs = graph.offsets[graph.currentPos];
+        graph.targets = new int[arcs];
+        graph.distances = new float[arcs];
+        graph.flags = new byte[arcs];
+        in.asIntBuffer().get(graph.targets);
+        in.position(in.position() + arcs * 4);
+        in.asFloatBuffer().get(graph.distances);
+        in.position(in.position() + arcs * 4);
+        in.get(graph.flags);
+        graph.arcEdges = new int[arcs];
+        in.asIntBuffer().get(graph.arcEdges);
+        in.position(in.position() + arcs * 4);
+        float[][] weights = new float[Profile.COUNT][arcs];
+        for (float[] profileWeights : weights) {
+            in.asFloatBuffer().get(profileWeights);
+            in.position(in.position() + arcs * 4);
+        }
+        graph.weighting = new Weighting(weights, new ContractionHierarchy[Profile.COUNT]);
+        graph.shapeOffsets = new int[graph.edgeCount + 1];
+        in.asIntBuffer().get(graph.shapeOffsets);
+        in.position(in.position() + graph.shapeOffsets.length * 4);
+        graph.shapes = new float[graph.shapeOffsets[graph.edgeCount] << 1];
+        in.asFloatBuffer().get(graph.shapes);
+        in.position(in.position() + graph.shapes.length * 4);
+        for (int p = 0; p < Profile.COUNT; p++) {
+            graph.components[p] = Components.read(in);
+        }
+        graph.edgeU = null;
+        graph.edgeV = null;
+        graph.edgeDistance = null;
+        graph.edgeTimes = null;
+        graph.edgeFlags = null;
+        graph.buildReverse();
+        return graph;
+    }
+
+    /**
+     * Adds a vertex to the graph, unless a vertex with the same coordinates has already been added.
+     *
+     * @param node The coordinates of the vertex to be added.
+     * @return The position of the vertex.
+     */
+    public int addVertex(float[] node) {
+        int existing = positions.putIfAbsent(node[0], node[1], currentPos);
+        if (existing >= 0) {
+            return existing;
         }
+        if (currentPos << 1 == coords.length) {
+            coords = Arrays.copyOf(coords, coords.length << 1);
+        }
+        coords[currentPos << 1] = node[0];
+        coords[(currentPos << 1) + 1] = node[1];
+        return currentPos++;
+    }
+
+    /**
+     * Gets the position of the vertex at a coordinate.
+     *
+     * @param node The coordinates of the vertex.
+     * @return The position of the vertex, or -1 if there is no vertex at the coordinate.
+     */
+    public int getPosition(float[] node) {
+        return positions.get(node[0], node[1]);
     }
+
     /**
-     * Retrieves the time of the latest search performed on the graph.
+     * Finds the shortest path between two vertices in the travel mode of {@link #wantToDrive}, see {@link #route(RouteRequest)}.
      *
-     * @return The time of the latest search.
+     * @param start The starting vertex of the path.
+     * @param end   The ending vertex of the path.
+     * @return A list of vertex identifiers representing the shortest path, or null if there is none
+     *         or either vertex is not in the graph.
      */
-    private static double getTimeOfLatestSearch() {
-        return timeOfLatestSearch;
+    public List<Integer> dijkstra(Vertex start, Vertex end) {
+        int startPos = getPosition(start.getCoords());
+        int endPos = getPosition(end.getCoords());
+        System.out.println("Start: " + startPos + " End: " + endPos);
+        if (startPos < 0 || endPos < 0) {
+            return null;
+        }
+        return route(new RouteRequest(startPos, endPos, wantToDrive)).getPath();
     }
+
     /**
-     * Retrieves the distance of the latest search performed on the graph.
+     * Finds a route. The contraction hierarchy of the travel mode is used for the fastest route if there is one,
+     * otherwise A* unless {@link #useAStar} is disabled, from both ends if {@link #bidirectional} is enabled.
+     * A route between snapped points may start towards either vertex of the edge of its starting point,
+     * and arrive from either vertex of the edge of its ending point, or stay on the edge if both are on the same one.
+     * <p>
+     * The travel mode, the metric and the result belong to the query, the search state is taken from a shared pool
+     * and the graph does not change once it is frozen, so any number of threads can find routes at the same time.
      *
-     * @return The distance of the latest search.
+     * @param request The start, end, travel mode and metric of the route.
+     * @return The route, or a result without a path if there is none.
      */
-    private static double getDistanceOfLatestSearch() {
-        return distanceOfLatestSearch;
+    public RouteResult route(RouteRequest request) {
+        freeze();
+        Query query = new Query(request);
+        if (request.getMetric() == RouteRequest.Metric.FASTEST && query.hierarchy != null) {
+            return hierarchySearch(query);
+        }
+        if (bidirectional) {
+            return bidirectionalSearch(query, useAStar);
+        }
+        return search(query, useAStar);
+    }
+
+    /**
+     * The vertices a search for a route starts and ends at, with the cost of starting or ending at each.
+     * A route between two vertices has one vertex at each end, which costs nothing. A route from a snapped point
+     * starts at the vertices of its edge that can be travelled to, at the cost of the part of the edge up to each,
+     * and a route to a snapped point likewise ends at the vertices of its edge that it can be reached from.
+     */
+    private final class Query {
+        final Profile profile;
+        final RouteRequest.Metric metric;
+        final SnappedPoint from;
+        final SnappedPoint to;
+
+        /** The weights of the profile and its contraction hierarchy, or null, as they were when the query was made. */
+        final float[] times;
+        final ContractionHierarchy hierarchy;
+
+        /** The cost of each arc, which is the weight array of the profile or the lengths for the shortest route. */
+        final float[] costs;
+
+        /** The points the route starts and ends at, which guide the searches. */
+        final float startLat, startLon, endLat, endLon;
+
+        /** The starting vertices, the cost of starting at each and whether that leaves the snapped point towards v. */
+        int[] starts = new int[2];
+        double[] startCosts = new double[2];
+        boolean[] startForward = new boolean[2];
+
+        /** The ending vertices, the cost of ending at each and whether that arrives at the snapped point from u. */
+        int[] ends = new int[2];
+        double[] endCosts = new double[2];
+        boolean[] endForward = new boolean[2];
+
+        /** The cost of going straight along the edge both snapped points are on, or infinity if there is no such route. */
+        double direct = Double.POSITIVE_INFINITY;
+        boolean directForward;
+
+        Query(RouteRequest request) {
+            profile = request.getProfile();
+            metric = request.getMetric();
+            from = request.getFrom();
+            to = request.getTo();
+            Weighting current = weighting;
+            times = current.weights()[profile.ordinal()];
+            hierarchy = current.hierarchies()[profile.ordinal()];
+            costs = metric == RouteRequest.Metric.SHORTEST ? distances : times;
+            byte mode = profile.mode;
+            int startCount = 0;
+            int endCount = 0;
+
+            if (from == null) {
+                starts[startCount++] = request.getStart();
+                startLat = coords[request.getStart() << 1];
+                startLon = coords[(request.getStart() << 1) + 1];
+                startForward[0] = true;
+            } else {
+                startLat = from.getCoords()[0];
+                startLon = from.getCoords()[1];
+                int arc = from.getArc();
+                // A closed edge is not started along, or the cost at its far end would be infinity times zero
+                boolean open = costs[arc] < Float.POSITIVE_INFINITY;
+                if (open && (flags[arc] & mode) != 0) {
+                    starts[startCount] = from.getV();
+                    startCosts[startCount] = (1 - from.getFraction()) * costs[arc];
+                    startForward[startCount++] = true;
+                }
+                if (open && (flags[arc] & mode << OPPOSITE) != 0) {
+                    starts[startCount] = from.getU();
+                    startCosts[startCount++] = from.getFraction() * costs[arc];
+                }
+            }
+
+            if (to == null) {
+                ends[endCount++] = request.getEnd();
+                endLat = coords[request.getEnd() << 1];
+                endLon = coords[(request.getEnd() << 1) + 1];
+                endForward[0] = true;
+            } else {
+                endLat = to.getCoords()[0];
+                endLon = to.getCoords()[1];
+                int arc = to.getArc();
+                boolean open = costs[arc] < Float.POSITIVE_INFINITY;
+                if (open && (flags[arc] & mode) != 0) {
+                    ends[endCount] = to.getU();
+                    endCosts[endCount] = to.getFraction() * costs[arc];
+                    endForward[endCount++] = true;
+                }
+                if (open && (flags[arc] & mode << OPPOSITE) != 0) {
+                    ends[endCount] = to.getV();
+                    endCosts[endCount++] = (1 - to.getFraction()) * costs[arc];
+                }
+            }
+
+            if (from != null && to != null && from.getEdge() == to.getEdge() && costs[from.getArc()] < Float.POSITIVE_INFINITY) {
+                int arc = from.getArc();
+                if (to.getFraction() >= from.getFraction() && (flags[arc] & mode) != 0) {
+                    direct = (to.getFraction() - from.getFraction()) * costs[arc];
+                    directForward = true;
+                } else if (to.getFraction() <= from.getFraction() && (flags[arc] & mode << OPPOSITE) != 0) {
+                    direct = (from.getFraction() - to.getFraction()) * costs[arc];
+                }
+            }
+            starts = Arrays.copyOf(starts, startCount);
+            startCosts = Arrays.copyOf(startCosts, startCount);
+            ends = Arrays.copyOf(ends, endCount);
+            endCosts = Arrays.copyOf(endCosts, endCount);
+        }
+
+        /**
+         * Checks whether the connected components allow a route from any start to any end.
+         */
+        boolean mayReach() {
+            if (direct < Double.POSITIVE_INFINITY) {
+                return true;
+            }
+            Components components = getComponents(profile);
+            for (int start : starts) {
+                for (int end : ends) {
+                    if (components.mayReach(start, end)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Gets the cheapest of the starting or ending costs of a vertex.
+         *
+         * @return The index of the cheapest entry for the vertex, or -1 if it is not among the vertices.
+         */
+        int cheapest(int[] vertices, double[] costs, int vertex) {
+            int cheapest = -1;
+            for (int i = 0; i < vertices.length; i++) {
+                if (vertices[i] == vertex && (cheapest < 0 || costs[i] < costs[cheapest])) {
+                    cheapest = i;
+                }
+            }
+            return cheapest;
+        }
+    }
+
+    /**
+     * Starts a search at a set of vertices, each with its own starting cost. The parent of a starting vertex is itself.
+     */
+    private static void reachAll(SearchState state, int[] vertices, double[] costs, double[] keys) {
+        for (int i = 0; i < vertices.length; i++) {
+            int vertex = vertices[i];
+            if (!state.reached(vertex) || costs[i] < state.times[vertex]) {
+                state.reach(vertex, vertex, -1, costs[i], 0, keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds the result of a search from the arcs of the route it found, adding the parts of the edges of the
+     * snapped points at both ends.
+     *
+     * @param query   The query the search answered.
+     * @param first   The vertex the route starts at.
+     * @param arcs    The arcs along the route, in order.
+     * @param settled The number of vertices the search settled.
+     * @return The result with the vertices, time and length of the route.
+     */
+    private RouteResult result(Query query, int first, int[] arcs, int settled) {
+        List<Integer> path = new ArrayList<>(arcs.length + 1);
+        path.add(first);
+        float[] times = query.times;
+        double time = 0;
+        double distance = 0;
+        for (int arc : arcs) {
+            path.add(targets[arc]);
+            time += times[arc];
+            distance += distances[arc];
+        }
+        if (query.from == null && query.to == null) {
+            return new RouteResult(path, arcs, time, distance, settled);
+        }
+
+        boolean leavesForward = true;
+        boolean arrivesForward = true;
+        if (query.from != null) {
+            leavesForward = query.startForward[query.cheapest(query.starts, query.startCosts, first)];
+            double part = leavesForward ? 1 - query.from.getFraction() : query.from.getFraction();
+            time += along(part, times[query.from.getArc()]);
+            distance += part * distances[query.from.getArc()];
+        }
+        if (query.to != null) {
+            int last = path.get(path.size() - 1);
+            arrivesForward = query.endForward[query.cheapest(query.ends, query.endCosts, last)];
+            double part = arrivesForward ? query.to.getFraction() : 1 - query.to.getFraction();
+            time += along(part, times[query.to.getArc()]);
+            distance += part * distances[query.to.getArc()];
+        }
+        return new RouteResult(path, arcs, time, distance, settled)
+                .between(query.from, query.to, leavesForward, arrivesForward);
+    }
+
+    /**
+     * Builds the result of a route that goes straight along the edge both snapped points of a query are on.
+     */
+    private RouteResult directResult(Query query, int settled) {
+        int arc = query.from.getArc();
+        double part = Math.abs(query.to.getFraction() - query.from.getFraction());
+        return new RouteResult(List.of(), new int[0], along(part, query.times[arc]),
+                part * distances[arc], settled).between(query.from, query.to, query.directForward, query.directForward);
+    }
+
+    /**
+     * Gets the cost of part of an arc, which is nothing for no part of it even if the arc is closed.
+     *
+     * @param part The part of the arc, from 0 to 1.
+     * @param cost The cost of the whole arc, which may be infinity.
+     * @return The cost of the part.
+     */
+    private static double along(double part, float cost) {
+        return part == 0 ? 0 : part * cost;
+    }
+
+    /**
+     * Collects the arcs of the best path a search found to a vertex, by following the parents back to where it started.
+     *
+     * @param state  The state of the search.
+     * @param vertex The vertex the path leads to.
+     * @return The arcs from the start to the vertex, in order.
+     */
+    private static int[] arcsTo(SearchState state, int vertex) {
+        int count = 0;
+        for (int current = vertex; state.arcs[current] >= 0; current = state.parents[current]) {
+            count++;
+        }
+        int[] arcs = new int[count];
+        for (int current = vertex; state.arcs[current] >= 0; current = state.parents[current]) {
+            arcs[--count] = state.arcs[current];
+        }
+        return arcs;
+    }
+
+    /**
+     * Finds the vertex a search started from on the best path it found to a vertex.
+     */
+    private static int origin(SearchState state, int vertex) {
+        int current = vertex;
+        while (state.arcs[current] >= 0) {
+            current = state.parents[current];
+        }
+        return current;
+    }
+
+    /**
+     * Finds the vertex an arc leaves.
+     *
+     * @param arc The index of the arc.
+     * @return The vertex position.
+     */
+    private int arcSource(int arc) {
+        int low = 0;
+        int high = currentPos - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= arc) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Takes a search state that no other search is using, creating one if there is none to reuse.
+     * The state must be given back with {@link #releaseState(SearchState)} when the search is done.
+     *
+     * @return The search state.
+     */
+    SearchState acquireState() {
+        SearchState state = idleStates.poll();
+        while (state != null && state.size() != currentPos) {
+            state = idleStates.poll();
+        }
+        return state != null ? state : new SearchState(currentPos);
+    }
+
+    /**
+     * Gives back a search state so the next search can reuse it.
+     *
+     * @param state The search state taken with {@link #acquireState()}.
+     */
+    void releaseState(SearchState state) {
+        idleStates.offer(state);
+    }
+
+    /**
+     * The travel mode of the routes and isochrones the user interface asks for, and of the methods that take no mode.
+     */
+    public static boolean wantToDrive = true;
+
+    /**
+     * Whether routes are found with {@link #aStar(int, int)} instead of {@link #dijkstra(int, int)}.
+     * Disabled with {@code -Dmapofdenmark.astar=false}.
+     */
+    public static boolean useAStar = !"false".equals(System.getProperty("mapofdenmark.astar"));
+
+    /**
+     * Whether routes are found by searching from both ends at once.
+     * Enabled with {@code -Dmapofdenmark.bidirectional=true}.
+     */
+    public static boolean bidirectional = Boolean.getBoolean("mapofdenmark.bidirectional");
+
+    /**
+     * Whether {@link #contract()} customizes the hierarchies from a {@link CustomizableHierarchy} instead of
+     * contracting the vertices by importance, so that {@link #overrideWeights(Profile, Map)} does not have to
+     * find the order first. Enabled with {@code -Dmapofdenmark.contract=customizable}.
+     */
+    public static boolean customizable = "customizable".equals(System.getProperty("mapofdenmark.contract"));
+
+    /**
+     * Retrieves the vertex corresponding to a given position in the graph.
+     *
+     * @param pos The position of the vertex in the graph.
+     * @return The vertex corresponding to the position.
+     */
+    public Vertex getNodeFromPos(int pos) {
+        return new Vertex(new float[]{coords[pos << 1], coords[(pos << 1) + 1]});
+    }
+    /**
+     * Performs Dijkstra's algorithm to find the fastest path between two vertices in the travel mode of {@link #wantToDrive}.
+     *
+     * @param start The starting vertex index of the path.
+     * @param end   The ending vertex index of the path.
+     * @return A list of vertex indices representing the shortest path.
+     */
+    public List<Integer> dijkstra(int start, int end) {
+        freeze();
+        return search(new Query(new RouteRequest(start, end, wantToDrive)), false).getPath();
+    }
+
+    /**
+     * Performs an A* search for the fastest path between two vertices in the travel mode of {@link #wantToDrive}.
+     * The search is guided by the great-circle time to the end vertex at the fastest possible speed,
+     * which never overestimates the remaining time, so the path is as short as the one Dijkstra's algorithm finds.
+     * If landmarks have been chosen for the travel mode, the larger of that bound and the landmark bound is used.
+     *
+     * @param start The starting vertex index of the path.
+     * @param end   The ending vertex index of the path.
+     * @return A list of vertex indices representing the shortest path.
+     */
+    public List<Integer> aStar(int start, int end) {
+        freeze();
+        return search(new Query(new RouteRequest(start, end, wantToDrive)), true).getPath();
+    }
+
+    /**
+     * Finds the shortest path of a query. Routes the connected components rule out fail without searching.
+     * The search stops once no vertex left in the queue can lead to an end more cheaply than the best route found.
+     *
+     * @param query  The query.
+     * @param guided Whether to guide the search towards the end point.
+     * @return The result of the search.
+     */
+    private RouteResult search(Query query, boolean guided) {
+        if (!query.mayReach()) {
+            return RouteResult.none(0);
+        }
+        SearchState state = acquireState();
+        try {
+            state.start();
+            RouteRequest.Metric metric = query.metric;
+            byte mode = query.profile.mode;
+            float[] costs = query.costs;
+            double speed = speed(query.profile, metric);
+            Landmarks landmarks = guided && metric == RouteRequest.Metric.FASTEST && query.starts.length > 0 && query.ends.length > 0
+                    ? getLandmarks(query.profile) : null;
+            int[] active = landmarks != null ? landmarks.select(query.starts[0], query.ends[0]) : null;
+            int settled = 0;
+            double best = query.direct;
+            int bestEnd = -1;
+            double[] keys = new double[query.starts.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = query.startCosts[i] + (guided ? bound(query, query.starts[i], speed, landmarks, active) : 0);
+            }
+            reachAll(state, query.starts, query.startCosts, keys);
+
+            while (!state.heap.isEmpty() && state.heap.peekKey() < best) {
+                int current = state.heap.poll();
+                double currentTime = state.times[current];
+                double currentDistance = state.distances[current];
+                settled++;
+
+                // An end is settled with its final cost, but a cheaper route may still lead to another end
+                int end = query.cheapest(query.ends, query.endCosts, current);
+                if (end >= 0 && currentTime + query.endCosts[end] < best) {
+                    best = currentTime + query.endCosts[end];
+                    bestEnd = current;
+                }
+
+                // Relax neighboring nodes
+                for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+                    if ((flags[arc] & mode) == 0) {
+                        continue;
+                    }
+                    int neighbor = targets[arc];
+                    double time = currentTime + costs[arc];
+                    if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                        double key = guided ? time + bound(query, neighbor, speed, landmarks, active) : time;
+                        state.reach(neighbor, current, arc, time, currentDistance + distances[arc], key);
+                    }
+                }
+            }
+            if (bestEnd >= 0) {
+                return result(query, origin(state, bestEnd), arcsTo(state, bestEnd), settled);
+            }
+            return best < Double.POSITIVE_INFINITY ? directResult(query, settled) : RouteResult.none(settled);
+        } finally {
+            releaseState(state);
+        }
+    }
+
+    /**
+     * Calculates a lower bound on the cost from a vertex to the end of a query: the great-circle distance to the
+     * end point at the fastest speed, or the landmark bound to the cheapest end if it is larger.
+     */
+    private double bound(Query query, int vertex, double speed, Landmarks landmarks, int[] active) {
+        double bound = HelperMethods.greatCircleDistance(coords[vertex << 1], coords[(vertex << 1) + 1], query.endLat, query.endLon) / speed;
+        if (landmarks != null) {
+            double landmarkBound = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < query.ends.length; i++) {
+                landmarkBound = Math.min(landmarkBound, landmarks.lowerBound(vertex, query.ends[i], active) + query.endCosts[i]);
+            }
+            bound = Math.max(bound, landmarkBound);
+        }
+        return bound;
+    }
+
+    /**
+     * Performs a bidirectional Dijkstra search for the fastest path between two vertices in the travel mode of
+     * {@link #wantToDrive}. One search grows forward from the start and another backward from the end along the
+     * reverse arcs, until the shortest path through a vertex reached by both is known.
+     *
+     * @param start The starting vertex index of the path.
+     * @param end   The ending vertex index of the path.
+     * @return A list of vertex indices representing the shortest path, or null if there is none.
+     */
+    public List<Integer> bidirectionalDijkstra(int start, int end) {
+        freeze();
+        return bidirectionalSearch(new Query(new RouteRequest(start, end, wantToDrive)), false).getPath();
+    }
+
+    /**
+     * Performs a bidirectional A* search for the fastest path between two vertices in the travel mode of
+     * {@link #wantToDrive}. Both searches are guided by the average of the great-circle time to the end and from
+     * the start, which keeps the two halves consistent so they can stop as soon as their frontiers meet.
+     *
+     * @param start The starting vertex index of the path.
+     * @param end   The ending vertex index of the path.
+     * @return A list of vertex indices representing the shortest path, or null if there is none.
+     */
+    public List<Integer> bidirectionalAStar(int start, int end) {
+        freeze();
+        return bidirectionalSearch(new Query(new RouteRequest(start, end, wantToDrive)), true).getPath();
+    }
+
+    /**
+     * Finds the shortest path of a query by searching from both ends.
+     * The queue keys of a vertex in the two searches are its time plus or minus the same potential,
+     * so the best path found is the shortest once the smallest keys of the two queues add up to its time.
+     *
+     * @param query  The query.
+     * @param guided Whether to guide the searches towards each other.
+     * @return The result of the search.
+     */
+    private RouteResult bidirectionalSearch(Query query, boolean guided) {
+        if (!query.mayReach()) {
+            return RouteResult.none(0);
+        }
+        SearchState forward = acquireState();
+        SearchState backward = acquireState();
+        try {
+            forward.start();
+            backward.start();
+            byte mode = query.profile.mode;
+            float[] costs = query.costs;
+            double speed = speed(query.profile, query.metric);
+            int settled = 0;
+            double best = query.direct;
+            int meeting = -1;
+            double[] keys = new double[query.starts.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = query.startCosts[i] + (guided ? potential(query.starts[i], query, speed) : 0);
+            }
+            reachAll(forward, query.starts, query.startCosts, keys);
+            keys = new double[query.ends.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = query.endCosts[i] - (guided ? potential(query.ends[i], query, speed) : 0);
+            }
+            reachAll(backward, query.ends, query.endCosts, keys);
+            for (int start : query.starts) {
+                if (backward.reached(start) && forward.times[start] + backward.times[start] < best) {
+                    best = forward.times[start] + backward.times[start];
+                    meeting = start;
+                }
+            }
+
+            while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+                    && forward.heap.peekKey() + backward.heap.peekKey() < best) {
+                boolean forwards = forward.heap.peekKey() <= backward.heap.peekKey();
+                SearchState state = forwards ? forward : backward;
+                SearchState other = forwards ? backward : forward;
+                int current = state.heap.poll();
+                double currentTime = state.times[current];
+                double currentDistance = state.distances[current];
+                settled++;
+
+                int first = forwards ? offsets[current] : reverseOffsets[current];
+                int last = forwards ? offsets[current + 1] : reverseOffsets[current + 1];
+                for (int i = first; i < last; i++) {
+                    int arc = forwards ? i : reverseArcs[i];
+                    if ((flags[arc] & mode) == 0) {
+                        continue;
+                    }
+                    int neighbor = forwards ? targets[arc] : sources[i];
+                    double time = currentTime + costs[arc];
+                    if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                        double potential = guided ? potential(neighbor, query, speed) : 0;
+                        state.reach(neighbor, current, arc, time, currentDistance + distances[arc], forwards ? time + potential : time - potential);
+                    }
+                    if (other.reached(neighbor) && time + other.times[neighbor] < best) {
+                        best = time + other.times[neighbor];
+                        meeting = neighbor;
+                    }
+                }
+            }
+
+            if (meeting < 0) {
+                return best < Double.POSITIVE_INFINITY ? directResult(query, settled) : RouteResult.none(settled);
+            }
+            int[] toMeeting = arcsTo(forward, meeting);
+            int count = toMeeting.length;
+            for (int current = meeting; backward.arcs[current] >= 0; current = backward.parents[current]) {
+                count++;
+            }
+            int[] arcs = Arrays.copyOf(toMeeting, count);
+            count = toMeeting.length;
+            for (int current = meeting; backward.arcs[current] >= 0; current = backward.parents[current]) {
+                arcs[count++] = backward.arcs[current];
+            }
+            return result(query, origin(forward, meeting), arcs, settled);
+        } finally {
+            releaseState(forward);
+            releaseState(backward);
+        }
+    }
+
+    /**
+     * Finds the fastest path between two vertices in the contraction hierarchy of the travel mode of
+     * {@link #wantToDrive}, and unpacks its shortcuts into the vertices of the graph.
+     *
+     * @param start The starting vertex index of the path.
+     * @param end   The ending vertex index of the path.
+     * @return A list of vertex indices representing the shortest path, or null if there is none.
+     * @throws IllegalStateException If the graph has not been contracted.
+     */
+    public List<Integer> hierarchySearch(int start, int end) {
+        freeze();
+        return hierarchySearch(new Query(new RouteRequest(start, end, wantToDrive))).getPath();
+    }
+
+    /**
+     * Finds the fastest path of a query in the contraction hierarchy of its travel mode.
+     *
+     * @param query The query.
+     * @return The result of the search.
+     * @throws IllegalStateException If the graph has not been contracted.
+     */
+    private RouteResult hierarchySearch(Query query) {
+        ContractionHierarchy hierarchy = query.hierarchy;
+        if (hierarchy == null) {
+            throw new IllegalStateException("The graph has not been contracted");
+        }
+        if (!query.mayReach()) {
+            return RouteResult.none(0);
+        }
+        SearchState forward = acquireState();
+        SearchState backward = acquireState();
+        try {
+            int[] arcs = hierarchy.route(query.starts, query.startCosts, query.ends, query.endCosts, query.direct, forward, backward);
+            if (arcs == null) {
+                return query.direct < Double.POSITIVE_INFINITY ? directResult(query, forward.settled) : RouteResult.none(forward.settled);
+            }
+            int first;
+            if (arcs.length > 0) {
+                first = arcSource(arcs[0]);
+            } else {
+                // The route starts and ends at a vertex that is both a start and an end
+                first = -1;
+                double cheapest = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < query.starts.length; i++) {
+                    int end = query.cheapest(query.ends, query.endCosts, query.starts[i]);
+                    if (end >= 0 && query.startCosts[i] + query.endCosts[end] < cheapest) {
+                        cheapest = query.startCosts[i] + query.endCosts[end];
+                        first = query.starts[i];
+                    }
+                }
+            }
+            return result(query, first, arcs, forward.settled);
+        } finally {
+            releaseState(forward);
+            releaseState(backward);
+        }
+    }
+
+    /**
+     * Finds the area that can be reached from a vertex within a time in the travel mode of {@link #wantToDrive},
+     * see {@link #isochrone(int, double, boolean)}.
+     *
+     * @param start   The vertex to start from.
+     * @param seconds The travel time, in seconds.
+     * @return The latitude and longitude of each point of the outline, in order around the start.
+     */
+    public float[] isochrone(int start, double seconds) {
+        return isochrone(start, seconds, wantToDrive);
+    }
+
+    /**
+     * Finds the area that can be reached from a vertex within a time.
+     * A Dijkstra search settles every vertex within the time and stops. The shapes of the arcs it travels are
+     * added as well, and each arc that leads out of the time adds the point along it where the time runs out. The outline keeps the point farthest from the start
+     * in each of {@value #ISOCHRONE_SECTORS} directions, so it follows the roads instead of enclosing a convex hull.
+     *
+     * @param start   The vertex to start from.
+     * @param seconds The travel time, in seconds.
+     * @param drive   True for driving, false for walking.
+     * @return The latitude and longitude of each point of the outline, in order around the start.
+     */
+    public float[] isochrone(int start, double seconds, boolean drive) {
+        freeze();
+        return isochrone(new Query(new RouteRequest(start, start, drive)), seconds);
+    }
+
+    /**
+     * Finds the area that can be reached from a point on the roads within a time, see {@link #isochrone(int, double, boolean)}.
+     * The search starts at the vertices of the edge of the point that can be reached within the time.
+     *
+     * @param start   The point to start from.
+     * @param seconds The travel time, in seconds.
+     * @param drive   True for driving, false for walking.
+     * @return The latitude and longitude of each point of the outline, in order around the start.
+     */
+    public float[] isochrone(SnappedPoint start, double seconds, boolean drive) {
+        return isochrone(start, seconds, Profile.of(drive));
+    }
+
+    /**
+     * Finds the area that a profile can reach from a point on the roads within a time,
+     * see {@link #isochrone(SnappedPoint, double, boolean)}.
+     *
+     * @param start   The point to start from.
+     * @param seconds The travel time, in seconds.
+     * @param profile The profile.
+     * @return The latitude and longitude of each point of the outline, in order around the start.
+     */
+    public float[] isochrone(SnappedPoint start, double seconds, Profile profile) {
+        freeze();
+        return isochrone(new Query(new RouteRequest(start, start, profile)), seconds);
+    }
+
+    private float[] isochrone(Query query, double seconds) {
+        SearchState state = acquireState();
+        byte mode = query.profile.mode;
+        float[] times = query.times;
+        float startLat = query.startLat;
+        float startLon = query.startLon;
+        float[] outline = new float[ISOCHRONE_SECTORS << 1];
+        double[] farthest = new double[ISOCHRONE_SECTORS];
+        Arrays.fill(farthest, -1);
+        addToOutline(outline, farthest, startLat, startLon, startLat, startLon);
+        try {
+            state.start();
+            reachAll(state, query.starts, query.startCosts, query.startCosts);
+
+            while (!state.heap.isEmpty() && state.heap.peekKey() <= seconds) {
+                int current = state.heap.poll();
+                double currentTime = state.times[current];
+                float lat = coords[current << 1];
+                float lon = coords[(current << 1) + 1];
+                addToOutline(outline, farthest, startLat, startLon, lat, lon);
+
+                for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+                    if ((flags[arc] & mode) == 0) {
+                        continue;
+                    }
+                    int neighbor = targets[arc];
+                    double weight = times[arc];
+                    double time = currentTime + weight;
+                    if (time > seconds) {
+                        // The time runs out along the arc
+                        addArcToOutline(arc, current, (seconds - currentTime) / weight, outline, farthest, startLat, startLon);
+                        continue;
+                    }
+                    if (hasShape(arc)) {
+                        addArcToOutline(arc, current, 1, outline, farthest, startLat, startLon);
+                    }
+                    if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                        state.reach(neighbor, current, arc, time, state.distances[current] + distances[arc], time);
+                    }
+                }
+            }
+        } finally {
+            releaseState(state);
+        }
+
+        int points = 0;
+        for (int sector = 0; sector < ISOCHRONE_SECTORS; sector++) {
+            if (farthest[sector] >= 0) {
+                outline[points << 1] = outline[sector << 1];
+                outline[(points << 1) + 1] = outline[(sector << 1) + 1];
+                points++;
+            }
+        }
+        return Arrays.copyOf(outline, points << 1);
+    }
+
+    /**
+     * Checks whether the edge of an arc has points between its two vertices.
+     */
+    private boolean hasShape(int arc) {
+        int edge = arcEdges[arc] < 0 ? ~arcEdges[arc] : arcEdges[arc];
+        return shapeOffsets[edge + 1] > shapeOffsets[edge];
+    }
+
+    /**
+     * Adds the points along the first part of an arc to the outline of an isochrone, following the shape of its edge.
+     * The part is measured by length, ending with the point that far along the arc.
+     */
+    private void addArcToOutline(int arc, int from, double part, float[] outline, double[] farthest, float startLat, float startLon) {
+        int edge = arcEdges[arc];
+        boolean reversed = edge < 0;
+        if (reversed) {
+            edge = ~edge;
+        }
+        int first = shapeOffsets[edge];
+        int count = shapeOffsets[edge + 1] - first + 2;
+        float[] line = new float[count << 1];
+        line[0] = coords[from << 1];
+        line[1] = coords[(from << 1) + 1];
+        for (int i = 1; i < count - 1; i++) {
+            int shape = reversed ? first + count - 2 - i : first + i - 1;
+            line[i << 1] = shapes[shape << 1];
+            line[(i << 1) + 1] = shapes[(shape << 1) + 1];
+        }
+        line[(count - 1) << 1] = coords[targets[arc] << 1];
+        line[((count - 1) << 1) + 1] = coords[(targets[arc] << 1) + 1];
+
+        double length = 0;
+        for (int i = 1; i < count; i++) {
+            length += HelperMethods.distance(line[(i - 1) << 1], line[((i - 1) << 1) + 1], line[i << 1], line[(i << 1) + 1]);
+        }
+        double remaining = length * part;
+        for (int i = 1; i < count; i++) {
+            float lat = line[(i - 1) << 1];
+            float lon = line[((i - 1) << 1) + 1];
+            double segment = HelperMethods.distance(lat, lon, line[i << 1], line[(i << 1) + 1]);
+            if (segment >= remaining) {
+                float along = segment == 0 ? 0 : (float) (remaining / segment);
+                addToOutline(outline, farthest, startLat, startLon,
+                        lat + (line[i << 1] - lat) * along, lon + (line[(i << 1) + 1] - lon) * along);
+                return;
+            }
+            remaining -= segment;
+            addToOutline(outline, farthest, startLat, startLon, line[i << 1], line[(i << 1) + 1]);
+        }
+    }
+
+    /**
+     * Keeps a point in the outline of an isochrone if it is the farthest from the start in its direction so far.
+     * Longitudes are scaled by the same factor as when drawing, so directions and distances match the map.
+     */
+    private static void addToOutline(float[] outline, double[] farthest, float startLat, float startLon, float lat, float lon) {
+        double x = (lon - startLon) * 0.56;
+        double y = lat - startLat;
+        double angle = Math.atan2(y, x) + Math.PI;
+        int sector = Math.min(ISOCHRONE_SECTORS - 1, (int) (angle / (2 * Math.PI) * ISOCHRONE_SECTORS));
+        double distance = x * x + y * y;
+        if (distance > farthest[sector]) {
+            farthest[sector] = distance;
+            outline[sector << 1] = lat;
+            outline[(sector << 1) + 1] = lon;
+        }
+    }
+
+    /**
+     * Computes the travel times and distances from every source to every target in the current travel mode.
+     *
+     * @param sources The positions of the sources.
+     * @param targets The positions of the targets.
+     * @return The table of the fastest routes.
+     */
+    public TravelTimeMatrix travelTimes(int[] sources, int[] targets) {
+        return travelTimes(sources, targets, wantToDrive);
+    }
+
+    /**
+     * Computes the travel times and distances from every source to every target.
+     *
+     * @param sources The positions of the sources.
+     * @param targets The positions of the targets.
+     * @param drive   True for driving, false for walking.
+     * @return The table of the fastest routes.
+     */
+    public TravelTimeMatrix travelTimes(int[] sources, int[] targets, boolean drive) {
+        return travelTimes(sources, targets, Profile.of(drive));
+    }
+
+    /**
+     * Computes the travel times and distances of a profile from every source to every target.
+     *
+     * @param sources The positions of the sources.
+     * @param targets The positions of the targets.
+     * @param profile The profile.
+     * @return The table of the fastest routes.
+     */
+    public TravelTimeMatrix travelTimes(int[] sources, int[] targets, Profile profile) {
+        freeze();
+        return TravelTimeMatrix.compute(this, profile, sources, targets);
+    }
+
+    /**
+     * Computes the travel times and distances between coordinates in the current travel mode.
+     * Each coordinate is snapped to the nearest road, and then to the vertex of that road that is nearer along it.
+     *
+     * @param sources The coordinates of the sources.
+     * @param targets The coordinates of the targets.
+     * @return The table of the fastest routes.
+     * @throws IllegalArgumentException If there is no road of the travel mode to snap a coordinate to.
+     */
+    public TravelTimeMatrix travelTimes(List<float[]> sources, List<float[]> targets) {
+        return travelTimes(sources, targets, wantToDrive);
+    }
+
+    /**
+     * Computes the travel times and distances between coordinates.
+     * Each coordinate is snapped to the nearest road, and then to the vertex of that road that is nearer along it.
+     *
+     * @param sources The coordinates of the sources.
+     * @param targets The coordinates of the targets.
+     * @param drive   True for driving, false for walking.
+     * @return The table of the fastest routes.
+     * @throws IllegalArgumentException If there is no road of the travel mode to snap a coordinate to.
+     */
+    public TravelTimeMatrix travelTimes(List<float[]> sources, List<float[]> targets, boolean drive) {
+        return travelTimes(sources, targets, Profile.of(drive));
+    }
+
+    /**
+     * Computes the travel times and distances of a profile between coordinates, see {@link #travelTimes(List, List, boolean)}.
+     *
+     * @param sources The coordinates of the sources.
+     * @param targets The coordinates of the targets.
+     * @param profile The profile.
+     * @return The table of the fastest routes.
+     * @throws IllegalArgumentException If there is no road the profile may use to snap a coordinate to.
+     */
+    public TravelTimeMatrix travelTimes(List<float[]> sources, List<float[]> targets, Profile profile) {
+        return travelTimes(snap(sources, profile), snap(targets, profile), profile);
+    }
+
+    /**
+     * Finds the vertex of the nearest road that is nearer along the road to each coordinate.
+     *
+     * @param points  The coordinates.
+     * @param profile The profile.
+     * @return The position of the vertex for each coordinate.
+     * @throws IllegalArgumentException If there is no road the profile may use to snap a coordinate to.
+     */
+    private int[] snap(List<float[]> points, Profile profile) {
+        int[] snapped = new int[points.size()];
+        for (int i = 0; i < snapped.length; i++) {
+            float[] point = points.get(i);
+            SnappedPoint nearest = snap(new double[]{point[0], point[1]}, profile);
+            if (nearest == null) {
+                throw new IllegalArgumentException("There is no road for " + profile.name().toLowerCase()
+                        + " to snap " + point[0] + ", " + point[1] + " to");
+            }
+            snapped[i] = nearest.getFraction() <= 0.5 ? nearest.getU() : nearest.getV();
+        }
+        return snapped;
+    }
+
+    /**
+     * Snaps a point onto the nearest road of the current travel mode, see {@link #snap(double[], boolean)}.
+     *
+     * @param point The latitude and longitude of the point.
+     * @return The point on the nearest road, or null if the graph has no road of the travel mode.
+     */
+    public SnappedPoint snap(double[] point) {
+        return snap(point, wantToDrive);
+    }
+
+    /**
+     * Snaps a point onto the nearest road segment of a travel mode, preferring the roads of the largest strongly
+     * connected component so every two points snapped this way can be routed between.
+     *
+     * @param point The latitude and longitude of the point.
+     * @param drive True for driving, false for walking.
+     * @return The point on the nearest road, or null if the graph has no road of the travel mode.
+     */
+    public SnappedPoint snap(double[] point, boolean drive) {
+        return snap(point, Profile.of(drive));
+    }
+
+    /**
+     * Snaps a point onto the nearest road segment a profile may use, see {@link #snap(double[], boolean)}.
+     *
+     * @param point   The latitude and longitude of the point.
+     * @param profile The profile.
+     * @return The point on the nearest road, or null if the graph has no road the profile may use.
+     */
+    public SnappedPoint snap(double[] point, Profile profile) {
+        return getSegmentIndex().nearest((float) point[0], (float) point[1], profile);
+    }
+
+    /**
+     * Gets the spatial index of the road segments, building it the first time it is needed.
+     *
+     * @return The segment index.
+     */
+    public SegmentIndex getSegmentIndex() {
+        SegmentIndex index = segmentIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = segmentIndex;
+                if (index == null) {
+                    index = SegmentIndex.build(this);
+                    segmentIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Calculates the potential of a vertex in a bidirectional search: half the difference between the
+     * great-circle time to the end point and the great-circle time from the start point.
+     *
+     * @param vertex The vertex position.
+     * @param query  The query of the search.
+     * @param speed  The fastest speed in meters per second, or 1 when searching for the shortest path.
+     * @return The potential of the vertex, in seconds or meters.
+     */
+    private double potential(int vertex, Query query, double speed) {
+        float lat = coords[vertex << 1];
+        float lon = coords[(vertex << 1) + 1];
+        double toEnd = HelperMethods.greatCircleDistance(lat, lon, query.endLat, query.endLon);
+        double fromStart = HelperMethods.greatCircleDistance(query.startLat, query.startLon, lat, lon);
+        return (toEnd - fromStart) / (2 * speed);
+    }
+
+    /**
+     * Gets the weight array of a profile. Searches keep the cost of their paths as the time of each vertex.
+     *
+     * @param profile The profile.
+     * @return The time it takes the profile to travel each arc in seconds, by arc. It must not be changed.
+     */
+    float[] weights(Profile profile) {
+        return weighting.weights()[profile.ordinal()];
+    }
+
+    /**
+     * Gets the largest distance that can be covered per unit of cost, which turns a great-circle distance into
+     * a lower bound on the cost of the path.
+     *
+     * @param profile The profile.
+     * @param metric  What the cost measures.
+     * @return The fastest speed in meters per second, or 1 when the cost is the length.
+     */
+    private static double speed(Profile profile, RouteRequest.Metric metric) {
+        if (metric == RouteRequest.Metric.SHORTEST) {
+            return 1;
+        }
+        return profile.maxSpeed / 3.6;
+    }
+
+    /**
+     * Gets the coordinates along a path, including the shapes of the edges between its vertices.
+     * Between two vertices the fastest arc of the current travel mode is followed, as the search would have.
+     *
+     * @param path The vertex positions of the path.
+     * @return The latitude and longitude of each point on the path, in order.
+     */
+    public float[] getPathCoords(List<Integer> path) {
+        freeze();
+        int[] arcs = new int[Math.max(0, path.size() - 1)];
+        for (int i = 0; i < arcs.length; i++) {
+            arcs[i] = fastestArc(path.get(i), path.get(i + 1));
+        }
+        return getPathCoords(path, arcs);
+    }
+
+    /**
+     * Gets the coordinates along a route, following the shapes of the arcs the search took.
+     *
+     * @param result A result that has a route.
+     * @return The latitude and longitude of each point on the route, in order.
+     */
+    public float[] getPathCoords(RouteResult result) {
+        float[] pathCoords = getPathCoords(result.getPath(), result.getArcs());
+        SnappedPoint from = result.getFrom();
+        SnappedPoint to = result.getTo();
+        if (from == null && to == null) {
+            return pathCoords;
+        }
+        if (result.getPath().isEmpty()) {
+            // Straight along the edge both points are on
+            return result.leavesForward()
+                    ? concat(from.getCoords(), edgePoints(from, from.getSegment() + 1, to.getSegment(), 1), to.getCoords())
+                    : concat(from.getCoords(), edgePoints(from, from.getSegment(), to.getSegment() + 1, -1), to.getCoords());
+        }
+
+        float[] head = new float[0];
+        if (from != null) {
+            head = result.leavesForward()
+                    ? concat(from.getCoords(), edgePoints(from, from.getSegment() + 1, pointCount(from.getEdge()) - 2, 1))
+                    : concat(from.getCoords(), edgePoints(from, from.getSegment(), 1, -1));
+        }
+        float[] tail = new float[0];
+        if (to != null) {
+            tail = result.arrivesForward()
+                    ? concat(edgePoints(to, 1, to.getSegment(), 1), to.getCoords())
+                    : concat(edgePoints(to, pointCount(to.getEdge()) - 2, to.getSegment() + 1, -1), to.getCoords());
+        }
+        return concat(head, pathCoords, tail);
+    }
+
+    /**
+     * Gets the points along the edge of a snapped point from one index to another, both included.
+     *
+     * @param snapped The snapped point.
+     * @param from    The index of the first point, 0 for u.
+     * @param to      The index of the last point.
+     * @param step    1 to go towards v, -1 to go towards u.
+     * @return The latitude and longitude of each point, or none if the last point comes before the first.
+     */
+    private float[] edgePoints(SnappedPoint snapped, int from, int to, int step) {
+        int count = Math.max(0, (to - from) * step + 1);
+        float[] points = new float[count << 1];
+        for (int i = 0; i < count; i++) {
+            int k = from + i * step;
+            points[i << 1] = point(snapped.getEdge(), snapped.getU(), snapped.getV(), k, 0);
+            points[(i << 1) + 1] = point(snapped.getEdge(), snapped.getU(), snapped.getV(), k, 1);
+        }
+        return points;
+    }
+
+    private static float[] concat(float[]... parts) {
+        int length = 0;
+        for (float[] part : parts) {
+            length += part.length;
+        }
+        float[] result = new float[length];
+        int position = 0;
+        for (float[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of points along an edge, from its vertex u through the points of its shape to its vertex v.
+     *
+     * @param edge The edge index.
+     * @return The number of points.
+     */
+    int pointCount(int edge) {
+        return shapeOffsets[edge + 1] - shapeOffsets[edge] + 2;
+    }
+
+    /**
+     * Gets the latitude or longitude of a point along an edge.
+     *
+     * @param edge The edge index.
+     * @param u    The vertex the edge starts at.
+     * @param v    The vertex the edge ends at.
+     * @param k    The index of the point, from 0 for u to {@code pointCount(edge) - 1} for v.
+     * @param axis 0 for the latitude, 1 for the longitude.
+     * @return The coordinate.
+     */
+    float point(int edge, int u, int v, int k, int axis) {
+        if (k == 0) {
+            return coords[(u << 1) + axis];
+        }
+        if (k == pointCount(edge) - 1) {
+            return coords[(v << 1) + axis];
+        }
+        return shapes[((shapeOffsets[edge] + k - 1) << 1) + axis];
+    }
+
+    private float[] getPathCoords(List<Integer> path, int[] arcs) {
+        int points = path.size();
+        for (int i = 0; i < arcs.length; i++) {
+            int edge = arcs[i] < 0 ? -1 : arcEdges[arcs[i]] < 0 ? ~arcEdges[arcs[i]] : arcEdges[arcs[i]];
+            if (edge >= 0) {
+                points += shapeOffsets[edge + 1] - shapeOffsets[edge];
+            }
+        }
+
+        float[] pathCoords = new float[points << 1];
+        int point = 0;
+        for (int i = 0; i < path.size(); i++) {
+            int pos = path.get(i);
+            pathCoords[point << 1] = coords[pos << 1];
+            pathCoords[(point << 1) + 1] = coords[(pos << 1) + 1];
+            point++;
+            if (i < arcs.length && arcs[i] >= 0) {
+                point = addShape(arcs[i], pathCoords, point);
+            }
+        }
+        return pathCoords;
+    }
+
+    /**
+     * Copies the shape of an arc into an array of coordinates, in the direction of the arc.
+     *
+     * @param arc    The index of the arc.
+     * @param out    The coordinates to copy into.
+     * @param point  The index of the first point to write.
+     * @return The index of the point after the shape.
+     */
+    private int addShape(int arc, float[] out, int point) {
+        int edge = arcEdges[arc];
+        boolean reversed = edge < 0;
+        if (reversed) {
+            edge = ~edge;
+        }
+        int first = shapeOffsets[edge];
+        int last = shapeOffsets[edge + 1];
+        for (int i = 0; i < last - first; i++) {
+            int shape = reversed ? last - 1 - i : first + i;
+            out[point << 1] = shapes[shape << 1];
+            out[(point << 1) + 1] = shapes[(shape << 1) + 1];
+            point++;
+        }
+        return point;
+    }
+
+    /**
+     * Finds the fastest arc from one vertex to another in the current travel mode.
+     *
+     * @param from The vertex the arc leaves.
+     * @param to   The vertex the arc enters.
+     * @return The index of the arc, or -1 if there is none.
+     */
+    private int fastestArc(int from, int to) {
+        Profile profile = Profile.of(wantToDrive);
+        byte mode = profile.mode;
+        float[] times = weights(profile);
+        int fastest = -1;
+        for (int arc = offsets[from]; arc < offsets[from + 1]; arc++) {
+            if (targets[arc] != to) {
+                continue;
+            }
+            boolean better = fastest < 0
+                    || ((flags[arc] & mode) != 0 && (flags[fastest] & mode) == 0)
+                    || ((flags[arc] & mode) == (flags[fastest] & mode) && times[arc] < times[fastest]);
+            if (better) {
+                fastest = arc;
+            }
+        }
+        return fastest;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        return s.toString();
+    }
+
+
+    /**
+     * Executes the Dijkstra algorithm based on a list of selected points on the graph.
+     * The points are snapped onto the nearest roads, and the route starts and ends at them partway along the roads.
+     * Routes already found between the same points in the same travel mode are taken from the {@link #getRouteCache() route cache} of the graph.
+     *
+     * @param click A list of coordinates representing selected points on the graph.
+     * @return A string representation of the calculated path time and distance.
+     * @throws NullPointerException If fewer than two points are selected.
+     */
+    public static String executeDijkstraAction(List<float[]> click) {
+        if (click.size() < 2)
+            throw new NullPointerException("Please select 2 point(s) on the graph!");
+
+        Graph graph = Model.getGraph();
+        SnappedPoint from = graph.snap(new double[]{click.get(0)[0], click.get(0)[1]});
+        SnappedPoint to = graph.snap(new double[]{click.get(1)[0], click.get(1)[1]});
+        if (from == null || to == null)
+            throw new NullPointerException("No path found");
+
+        RouteCache routeCache = graph.getRouteCache();
+        RouteCache.Route route = routeCache.get(from.getKey(), to.getKey(), wantToDrive);
+        if (route == null) {
+            RouteResult result = graph.route(new RouteRequest(from, to, wantToDrive));
+            if (result.isFound()) {
+                route = new RouteCache.Route(result.getPath(), result.getTime(), result.getDistance(), graph.getPathCoords(result));
+                routeCache.put(from.getKey(), to.getKey(), wantToDrive, route);
+            }
+        }
+        if (route == null) {
+            throw new NullPointerException("No path found");
+        } else {
+            Model.add(new Path(route.getCoords()));
+            return describe("Path time: ", route.getTime(), route.getDistance());
+        }
+    }
+
+    /**
+     * Executes a route through more than two selected points, which are visited in the order that is about the
+     * fastest, see {@link Tour}. The route starts at the first point and ends at whichever point is visited last,
+     * and is drawn as a single path.
+     *
+     * @param click A list of coordinates representing selected points on the graph.
+     * @return A description of the tour, with the order the points are visited in, counted from 1.
+     * @throws NullPointerException If fewer than two points are selected or there is no route between them.
+     */
+    public static String executeTourAction(List<float[]> click) {
+        if (click.size() < 2)
+            throw new NullPointerException("Please select 2 point(s) on the graph!");
+
+        Graph graph = Model.getGraph();
+        List<SnappedPoint> stops = new ArrayList<>();
+        for (float[] point : click) {
+            SnappedPoint stop = graph.snap(new double[]{point[0], point[1]});
+            if (stop == null)
+                throw new NullPointerException("No path found");
+            stops.add(stop);
+        }
+        Tour tour = Tour.plan(graph, stops, wantToDrive, false);
+        if (tour == null)
+            throw new NullPointerException("No path found");
+
+        List<RouteResult> legs = tour.getLegs();
+        float[][] legCoords = new float[legs.size()][];
+        IntStream.range(0, legCoords.length).parallel().forEach(k -> legCoords[k] = graph.getPathCoords(legs.get(k)));
+        // Each leg starts where the one before it ends, so that point is only kept once
+        int length = 2;
+        for (float[] coords : legCoords) {
+            length += coords.length - 2;
+        }
+        float[] pathCoords = new float[length];
+        int next = 0;
+        for (int k = 0; k < legCoords.length; k++) {
+            int from = k == 0 ? 0 : 2;
+            System.arraycopy(legCoords[k], from, pathCoords, next, legCoords[k].length - from);
+            next += legCoords[k].length - from;
+        }
+        Model.add(new Path(pathCoords));
+
+        StringBuilder order = new StringBuilder();
+        for (int stop : tour.getOrder()) {
+            order.append(order.length() == 0 ? "" : " > ").append(stop + 1);
+        }
+        return describe("Tour time: ", tour.getTime(), tour.getDistance()) + "Stops: " + order + "\n";
+    }
+
+    /**
+     * Describes the time and length of a route.
+     *
+     * @param label    The text before the time.
+     * @param time     The time in seconds.
+     * @param distance The length in meters.
+     * @return The description, ending with a line break.
+     */
+    private static String describe(String label, double time, double distance) {
+        String length = distance >= 1000 ? String.format("%.1f", distance / 1000) + "km" : String.format("%.0f", distance) + "m";
+        long minutes = Math.round(time / 60);
+        if (minutes > 60) {
+            return label + minutes / 60 + " h " + minutes % 60 + " min " + length + "\n";
+        }
+        return label + minutes + " min " + length + "\n";
+    }
+
+    /**
+     * Draws the area that can be reached from a selected point within a number of minutes.
+     *
+     * @param click   The coordinates of the selected point, which is snapped onto the nearest road.
+     * @param minutes The travel time in minutes.
+     * @return A description of the search.
+     * @throws NullPointerException If no point is selected.
+     */
+    public static String executeIsochroneAction(float[] click, double minutes) {
+        if (click == null)
+            throw new NullPointerException("Please select a point on the graph!");
+
+        SnappedPoint start = Model.getGraph().snap(new double[]{click[0], click[1]});
+        if (start == null)
+            throw new NullPointerException("Please select a point on the graph!");
+
+        float[] outline = Model.getGraph().isochrone(start, minutes * 60, wantToDrive);
+        Model.add(new Isochrone(outline));
+        return "Reachable within " + String.format("%.0f", minutes) + " min\n";
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+/**
+ * A 4-ary min-heap of vertex positions keyed by a double, with decrease-key.
+ * <p>
+ * The heap position of every vertex is kept in an array indexed by vertex. An entry is only trusted
+ * if the heap slot it points to holds the same vertex, so clearing the heap is constant time.
+ * This class is package-private, used internally by the search state of the Graph class.
+ */
+class IndexedHeap {
+    /** The vertices in heap order. */
+    private final int[] heap;
+
+    /** The keys of the vertices in heap order. */
+    private final double[] keys;
+
+    /** The heap slot of each vertex, only valid while the vertex is in the heap. */
+    private final int[] index;
+
+    /** The number of vertices in the heap. */
+    private int size;
+
+    /**
+     * Constructs an empty heap for the given number of vertices.
+     *
+     * @param vertices The number of vertices in the graph.
+     */
+    IndexedHeap(int vertices) {
+        heap = new int[vertices];
+        keys = new double[vertices];
+        index = new int[vertices];
+    }
+
+    /**
+     * Removes every vertex from the heap.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     *
+     * @return True if the heap holds no vertices.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether a vertex is in the heap.
+     *
+     * @param vertex The vertex position.
+     * @return True if the vertex is in the heap.
+     */
+    boolean contains(int vertex) {
+        int i = index[vertex];
+        return i < size && heap[i] == vertex;
+    }
+
+    /**
+     * Gets the smallest key in the heap.
+     *
+     * @return The key of the vertex that {@link #poll()} would return.
+     */
+    double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Inserts a vertex, or lowers its key if it is already in the heap with a larger key.
+     *
+     * @param vertex The vertex position.
+     * @param key    The key of the vertex.
+     */
+    void insertOrDecrease(int vertex, double key) {
+        int i;
+        if (contains(vertex)) {
+            i = index[vertex];
+            if (key >= keys[i]) {
+                return;
+            }
+        } else {
+            i = size++;
+        }
+        siftUp(i, vertex, key);
+    }
+
+    /**
+     * Inserts a vertex, or changes its key if it is already in the heap.
+     *
+     * @param vertex The vertex position.
+     * @param key    The key of the vertex.
+     */
+    void update(int vertex, double key) {
+        if (!contains(vertex)) {
+            siftUp(size++, vertex, key);
+            return;
+        }
+        int i = index[vertex];
+        if (key < keys[i]) {
+            siftUp(i, vertex, key);
+        } else {
+            siftDown(i, vertex, key);
+        }
+    }
+
+    /**
+     * Removes the vertex with the smallest key.
+     *
+     * @return The vertex position.
+     */
+    int poll() {
+        int top = heap[0];
+        size--;
+        if (size > 0) {
+            siftDown(0, heap[size], keys[size]);
+        }
+        return top;
+    }
+
+    private void siftUp(int i, int vertex, double key) {
+        while (i > 0) {
+            int parent = (i - 1) >> 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        place(i, vertex, key);
+    }
+
+    private void siftDown(int i, int vertex, double key) {
+        while (true) {
+            int first = (i << 2) + 1;
+            if (first >= size) {
+                break;
+            }
+            int smallest = first;
+            int last = Math.min(first + 4, size);
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (keys[smallest] >= key) {
+                break;
+            }
+            move(smallest, i);
+            i = smallest;
+        }
+        place(i, vertex, key);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        index[heap[to]] = to;
+    }
+
+    private void place(int i, int vertex, double key) {
+        heap[i] = vertex;
+        keys[i] = key;
+        index[vertex] = i;
+    }
+}
@@ -0,0 +1,298 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import dk.itu.MapOfDenmark.Model.MapFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The landmarks of the routing graph for one travel mode, with the travel time from every landmark to every vertex
+ * and from every vertex to every landmark.
+ * <p>
+ * By the triangle inequality the time from a vertex v to the end t of a route is at least
+ * {@code d(L, t) - d(L, v)} and {@code d(v, L) - d(t, L)} for every landmark L, which is a much tighter bound
+ * than the great-circle time when L lies behind v or beyond t. A* guided by these bounds is called ALT.
+ * <p>
+ * The landmarks are chosen by farthest-point selection: each new landmark is the vertex farthest from all landmarks
+ * chosen so far, so they end up spread along the edges of the map. Preprocessing takes two searches of the whole graph
+ * per landmark, which is far less than building a contraction hierarchy.
+ */
+public class Landmarks {
+    /** The number of landmarks whose bounds are used in a single search, chosen for the start and end of the route. */
+    private static final int ACTIVE = 4;
+
+    /** The landmark vertices. */
+    int[] vertices;
+
+    /**
+     * The time from each landmark to each vertex, in seconds. The times of vertex v are the entries from
+     * {@code v * count} to {@code (v + 1) * count}, so a search reads the times of a vertex from one place.
+     * Vertices a landmark can not reach are infinite.
+     */
+    float[] from;
+
+    /** The time from each vertex to each landmark, in seconds, laid out like {@link #from}. */
+    float[] to;
+
+    private Landmarks() {
+    }
+
+    /**
+     * Chooses landmarks of a frozen graph for a profile and computes the times to and from them.
+     * The searches from the landmarks are run one after another, as each landmark is chosen from the times of
+     * the previous ones, while the searches towards the landmarks run in parallel on the common pool.
+     *
+     * @param graph   The graph.
+     * @param profile The profile, whose arcs are weighed by its weight array and are the only ones used.
+     * @param count   The number of landmarks to choose.
+     * @return The landmarks, which may be fewer than asked for if the graph is small.
+     */
+    public static Landmarks build(Graph graph, Profile profile, int count) {
+        int vertexCount = graph.getVertexCount();
+        Landmarks landmarks = new Landmarks();
+        landmarks.from = new float[vertexCount * count];
+        landmarks.to = new float[vertexCount * count];
+        if (vertexCount == 0) {
+            landmarks.vertices = new int[0];
+            return landmarks;
+        }
+        int[] chosen = new int[count];
+        List<CompletableFuture<Void>> backward = new ArrayList<>();
+
+        double[] times = new double[vertexCount];
+        double[] nearest = new double[vertexCount];
+        IndexedHeap heap = new IndexedHeap(vertexCount);
+        byte mode = profile.mode;
+        int first = 0;
+        while (first < vertexCount - 1 && !hasArc(graph, first, mode)) {
+            first++;
+        }
+        // The first landmark is the vertex farthest from an arbitrary vertex rather than the vertex itself
+        search(graph, profile, first, false, times, heap);
+        int landmark = farthest(times);
+
+        int found = 0;
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        while (found < count && landmark >= 0) {
+            int index = found++;
+            chosen[index] = landmark;
+            search(graph, profile, landmark, false, times, heap);
+            for (int v = 0; v < vertexCount; v++) {
+                landmarks.from[v * count + index] = (float) times[v];
+                nearest[v] = Math.min(nearest[v], times[v]);
+            }
+            int source = landmark;
+            backward.add(CompletableFuture.runAsync(() -> {
+                double[] backwardTimes = new double[vertexCount];
+                search(graph, profile, source, true, backwardTimes, new IndexedHeap(vertexCount));
+                for (int v = 0; v < vertexCount; v++) {
+                    landmarks.to[v * count + index] = (float) backwardTimes[v];
+                }
+            }));
+            landmark = farthest(nearest);
+        }
+        CompletableFuture.allOf(backward.toArray(CompletableFuture<?>[]::new)).join();
+
+        landmarks.vertices = Arrays.copyOf(chosen, found);
+        if (found < count) {
+            landmarks.from = compact(landmarks.from, count, found);
+            landmarks.to = compact(landmarks.to, count, found);
+        }
+        return landmarks;
+    }
+
+    /**
+     * Gets the number of landmarks.
+     *
+     * @return The number of landmarks.
+     */
+    public int getCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Gets the landmark vertices.
+     *
+     * @return The position of each landmark.
+     */
+    public int[] getVertices() {
+        return vertices.clone();
+    }
+
+    /**
+     * Chooses the landmarks that give the tightest bound on the time of a route, which are the only ones used
+     * while searching for it.
+     *
+     * @param start The starting vertex index of the route.
+     * @param end   The ending vertex index of the route.
+     * @return The indices of the chosen landmarks.
+     */
+    int[] select(int start, int end) {
+        int count = vertices.length;
+        Integer[] order = new Integer[count];
+        double[] bounds = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            bounds[i] = bound(start, end, i);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(bounds[b], bounds[a]));
+        int[] active = new int[Math.min(ACTIVE, count)];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = order[i];
+        }
+        return active;
+    }
+
+    /**
+     * Calculates a lower bound on the time from a vertex to the end of a route.
+     *
+     * @param vertex The vertex position.
+     * @param end    The ending vertex of the route.
+     * @param active The landmarks to use, as returned by {@link #select(int, int)}.
+     * @return The lower bound, in seconds.
+     */
+    double lowerBound(int vertex, int end, int[] active) {
+        double best = 0;
+        for (int landmark : active) {
+            best = Math.max(best, bound(vertex, end, landmark));
+        }
+        return best;
+    }
+
+    /**
+     * Calculates the bound one landmark gives on the time from a vertex to the end of a route.
+     * The times are stored as floats, so each difference is lowered by the rounding error of the larger time
+     * to keep the bound below the exact time.
+     */
+    private double bound(int vertex, int end, int landmark) {
+        int count = vertices.length;
+        double best = 0;
+        float fromVertex = from[vertex * count + landmark];
+        float fromEnd = from[end * count + landmark];
+        if (fromEnd != Float.POSITIVE_INFINITY && fromVertex != Float.POSITIVE_INFINITY) {
+            best = (double) fromEnd - fromVertex - Math.ulp(Math.max(fromEnd, fromVertex));
+        }
+        float toVertex = to[vertex * count + landmark];
+        float toEnd = to[end * count + landmark];
+        if (toVertex != Float.POSITIVE_INFINITY && toEnd != Float.POSITIVE_INFINITY) {
+            best = Math.max(best, (double) toVertex - toEnd - Math.ulp(Math.max(toVertex, toEnd)));
+        }
+        return best;
+    }
+
+    /**
+     * Writes the landmarks as a section of a {@link MapFile}: the number of landmarks and vertices,
+     * the landmark vertices and then the times from and to the landmarks.
+     *
+     * @param out The writer of the map file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MapFile.Writer out) throws IOException {
+        out.putInt(vertices.length);
+        out.putInt(from.length / Math.max(1, vertices.length));
+        out.putInts(vertices, 0, vertices.length);
+        out.putFloats(from, 0, from.length);
+        out.putFloats(to, 0, to.length);
+    }
+
+    /**
+     * Reads landmarks written by {@link #write(MapFile.Writer)}.
+     *
+     * @param in The section of a map file.
+     * @return The landmarks.
+     */
+    public static Landmarks read(ByteBuffer in) {
+        Landmarks landmarks = new Landmarks();
+        int count = in.getInt();
+        int vertexCount = in.getInt();
+        landmarks.vertices = new int[count];
+        landmarks.from = new float[count * vertexCount];
+        landmarks.to = new float[count * vertexCount];
+        in.asIntBuffer().get(landmarks.vertices);
+        in.position(in.position() + count * 4);
+        in.asFloatBuffer().get(landmarks.from);
+        in.position(in.position() + landmarks.from.length * 4);
+        in.asFloatBuffer().get(landmarks.to);
+        in.position(in.position() + landmarks.to.length * 4);
+        return landmarks;
+    }
+
+    /**
+     * Computes the time from a vertex to every other vertex, or from every other vertex to it, with Dijkstra's algorithm.
+     *
+     * @param graph    The graph.
+     * @param profile  The profile to search with.
+     * @param source   The vertex to search from.
+     * @param backward True to follow the arcs backwards, which gives the times towards the source.
+     * @param times    Filled with the time of every vertex, infinite if it is not reached.
+     * @param heap     An empty heap for the vertices of the graph.
+     */
+    private static void search(Graph graph, Profile profile, int source, boolean backward, double[] times, IndexedHeap heap) {
+        byte mode = profile.mode;
+        float[] weights = graph.weights(profile);
+        Arrays.fill(times, Double.POSITIVE_INFINITY);
+        times[source] = 0;
+        heap.clear();
+        heap.insertOrDecrease(source, 0);
+        int[] offsets = backward ? graph.reverseOffsets : graph.offsets;
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            double currentTime = times[current];
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int arc = backward ? graph.reverseArcs[i] : i;
+                if ((graph.flags[arc] & mode) == 0) {
+                    continue;
+                }
+                int neighbor = backward ? graph.sources[i] : graph.targets[arc];
+                double time = currentTime + weights[arc];
+                if (time < times[neighbor]) {
+                    times[neighbor] = time;
+                    heap.insertOrDecrease(neighbor, time);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the reached vertex with the largest time.
+     *
+     * @param times The time of each vertex.
+     * @return The vertex position, or -1 if no vertex is farther than zero.
+     */
+    private static int farthest(double[] times) {
+        int farthest = -1;
+        double best = 0;
+        for (int v = 0; v < times.length; v++) {
+            if (times[v] > best && times[v] != Double.POSITIVE_INFINITY) {
+                best = times[v];
+                farthest = v;
+            }
+        }
+        return farthest;
+    }
+
+    private static boolean hasArc(Graph graph, int vertex, byte mode) {
+        for (int arc = graph.offsets[vertex]; arc < graph.offsets[vertex + 1]; arc++) {
+            if ((graph.flags[arc] & mode) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the unused columns of a vertex-major table when fewer landmarks were found than asked for.
+     */
+    private static float[] compact(float[] table, int count, int found) {
+        int vertexCount = table.length / count;
+        float[] compacted = new float[vertexCount * found];
+        for (int v = 0; v < vertexCount; v++) {
+            System.arraycopy(table, v * count, compacted, v * found, found);
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,48 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+/**
+ * A way of travelling the roads. Each profile has its own flag on the arcs it may use and its own weight array
+ * over the arcs, compiled from the {@link RoadTags} of every road when the map is loaded, so a search reads the
+ * time of an arc from one array instead of working it out.
+ */
+public enum Profile {
+    /** Driving a car, at the speed limit. */
+    CAR(Graph.DRIVEABLE, 130),
+    /** Walking, at the same speed everywhere. */
+    WALK(Graph.WALKABLE, 5),
+    /** Cycling, slower on paths and tracks. */
+    BIKE(Graph.BIKEABLE, 18);
+
+    /** The number of profiles, which is the length of every array indexed by profile. */
+    public static final int COUNT = values().length;
+
+    /** The flag of the arcs the profile may use. */
+    final byte mode;
+
+    /** The speed in km/h that no arc is faster than, which bounds the remaining time of a search. */
+    final double maxSpeed;
+
+    Profile(byte mode, double maxSpeed) {
+        this.mode = mode;
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Gets the profile of a travel mode as the user interface chooses it.
+     *
+     * @param drive True for driving, false for walking.
+     * @return The profile.
+     */
+    public static Profile of(boolean drive) {
+        return drive ? CAR : WALK;
+    }
+
+    /**
+     * Gets the fastest speed of the profile.
+     *
+     * @return The speed in km/h.
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+}
@@ -0,0 +1,241 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the tags of an OSM way mean for routing: which {@link Profile profiles} may travel it in each direction,
+ * and how fast.
+ * <p>
+ * The highway tag decides who may use a road by default and how fast cars go where there is no maxspeed tag.
+ * The access tags override that, from the general access tag to the tags of the single profile, such as
+ * {@code access=no} with {@code foot=yes}. Cars and bikes follow the oneway tag, which roundabouts and motorways
+ * imply, unless a bike contraflow is tagged. Pedestrians may walk both ways along any road.
+ * Bikes go at most as fast as the speed limit.
+ */
+public final class RoadTags {
+    /** The speed of cars in km/h on each kind of road without a maxspeed tag. */
+    private static final Map<String, Float> CAR_SPEEDS = Map.ofEntries(
+            Map.entry("motorway", 130f), Map.entry("motorway_link", 80f),
+            Map.entry("trunk", 110f), Map.entry("trunk_link", 60f),
+            Map.entry("primary", 90f), Map.entry("primary_link", 60f),
+            Map.entry("secondary", 80f), Map.entry("secondary_link", 50f),
+            Map.entry("tertiary", 70f), Map.entry("tertiary_link", 50f),
+            Map.entry("living_street", 15f), Map.entry("service", 30f), Map.entry("track", 30f)
+    );
+
+    /** The speed of cars in km/h on other roads, which is the Danish urban speed limit. */
+    private static final float URBAN_SPEED = 50;
+
+    /** The roads cars may use unless tagged otherwise. */
+    private static final Set<String> CAR_ROADS = Set.of(
+            "motorway", "motorway_link", "trunk", "trunk_link", "primary", "primary_link", "secondary", "secondary_link",
+            "tertiary", "tertiary_link", "unclassified", "residential", "living_street", "service", "road", "track"
+    );
+
+    /** The roads bikes may not use unless tagged otherwise. */
+    private static final Set<String> NO_BIKES = Set.of(
+            "motorway", "motorway_link", "trunk", "trunk_link", "footway", "pedestrian", "steps", "bridleway", "corridor"
+    );
+
+    /** The roads pedestrians may not use unless tagged otherwise. */
+    private static final Set<String> NO_PEDESTRIANS = Set.of("motorway", "motorway_link");
+
+    /** Roads that are not there to travel. */
+    private static final Set<String> NOT_BUILT = Set.of("proposed", "construction", "abandoned", "razed", "platform");
+
+    /** The values of access tags that forbid the road, and those that allow it. */
+    private static final Set<String> FORBIDDEN = Set.of("no", "private", "agricultural", "forestry", "use_sidepath");
+    private static final Set<String> ALLOWED = Set.of("yes", "designated", "permissive", "destination", "customers", "delivery", "official");
+
+    /** The speed of bikes in km/h on paths and tracks, and where they share the way with pedestrians. */
+    private static final float PATH_BIKE_SPEED = 14;
+    private static final float FOOTWAY_BIKE_SPEED = 8;
+
+    /** The profiles that may travel the way along its nodes, and against them, as {@link Profile#mode} flags. */
+    final byte forward;
+    final byte backward;
+
+    /** The speed of each profile in km/h, by ordinal. */
+    private final float[] speeds;
+
+    RoadTags(byte forward, byte backward, float[] speeds) {
+        this.forward = forward;
+        this.backward = backward;
+        this.speeds = speeds;
+    }
+
+    /**
+     * Interprets the tags of a way with a highway tag.
+     *
+     * @param tags The tags of the way.
+     * @return The access, direction and speed of each profile.
+     */
+    public static RoadTags of(Map<String, String> tags) {
+        String highway = tags.getOrDefault("highway", "road");
+        float carSpeed = CAR_SPEEDS.getOrDefault(highway, URBAN_SPEED);
+        float maxSpeed = parseSpeed(tags.get("maxspeed"));
+        if (!Float.isNaN(maxSpeed)) {
+            carSpeed = Math.max(5, Math.min((float) Profile.CAR.maxSpeed, maxSpeed));
+        }
+
+        boolean built = !NOT_BUILT.contains(highway);
+        boolean motorRoad = "yes".equals(tags.get("motorroad"));
+        boolean car = access(tags, built && CAR_ROADS.contains(highway), "access", "vehicle", "motor_vehicle", "motorcar");
+        boolean bike = access(tags, built && !motorRoad && !NO_BIKES.contains(highway), "access", "vehicle", "bicycle");
+        boolean foot = access(tags, built && !motorRoad && !NO_PEDESTRIANS.contains(highway), "access", "foot");
+
+        byte modes = (byte) ((car ? Graph.DRIVEABLE : 0) | (bike ? Graph.BIKEABLE : 0) | (foot ? Graph.WALKABLE : 0));
+        byte forward = modes;
+        byte backward = modes;
+        int direction = direction(tags, highway);
+        if (direction != 0) {
+            byte oneway = (byte) (Graph.DRIVEABLE | (bikeContraflow(tags) ? 0 : Graph.BIKEABLE));
+            if (direction > 0) {
+                backward &= (byte) ~oneway;
+            } else {
+                forward &= (byte) ~oneway;
+            }
+        }
+
+        float bikeSpeed = switch (highway) {
+            case "path", "track", "bridleway" -> PATH_BIKE_SPEED;
+            case "footway", "pedestrian", "steps", "corridor" -> FOOTWAY_BIKE_SPEED;
+            default -> (float) Profile.BIKE.maxSpeed;
+        };
+        float[] speeds = new float[Profile.COUNT];
+        speeds[Profile.CAR.ordinal()] = carSpeed;
+        speeds[Profile.WALK.ordinal()] = (float) Profile.WALK.maxSpeed;
+        speeds[Profile.BIKE.ordinal()] = Math.min(bikeSpeed, carSpeed);
+        return new RoadTags(forward, backward, speeds);
+    }
+
+    /**
+     * Makes the tags of a road from its speed limit and whether cars and pedestrians may use it, as roads were
+     * described before their tags were kept. Bikes may use the roads pedestrians may, and one-way roads are one-way
+     * for everyone.
+     *
+     * @param speed     The speed of cars in km/h.
+     * @param oneway    True if the road may only be travelled along its nodes.
+     * @param driveable True if cars may use the road.
+     * @param walkable  True if pedestrians and bikes may use the road.
+     * @return The tags.
+     */
+    static RoadTags of(float speed, boolean oneway, boolean driveable, boolean walkable) {
+        byte modes = (byte) ((driveable ? Graph.DRIVEABLE : 0) | (walkable ? Graph.WALKABLE | Graph.BIKEABLE : 0));
+        float[] speeds = new float[Profile.COUNT];
+        speeds[Profile.CAR.ordinal()] = speed;
+        speeds[Profile.WALK.ordinal()] = (float) Profile.WALK.maxSpeed;
+        speeds[Profile.BIKE.ordinal()] = (float) Profile.BIKE.maxSpeed;
+        return new RoadTags(modes, oneway ? 0 : modes, speeds);
+    }
+
+    /**
+     * Reads a maxspeed tag: a number in km/h, a number followed by mph, or one of the Danish default limits.
+     *
+     * @param value The value of the tag, or null.
+     * @return The speed in km/h, or NaN if there is no tag or it is not understood.
+     */
+    static float parseSpeed(String value) {
+        if (value == null) {
+            return Float.NaN;
+        }
+        switch (value) {
+            case "DK:urban":
+                return 50;
+            case "DK:rural":
+                return 80;
+            case "DK:motorway", "none":
+                return 130;
+            case "walk", "DK:walk":
+                return 6;
+        }
+        int end = 0;
+        while (end < value.length() && (Character.isDigit(value.charAt(end)) || value.charAt(end) == '.')) {
+            end++;
+        }
+        if (end == 0) {
+            return Float.NaN;
+        }
+        try {
+            float speed = Float.parseFloat(value.substring(0, end));
+            return value.endsWith("mph") ? speed * 1.609344f : speed;
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    /**
+     * Decides whether a profile may use a way, letting each access tag that says so override the ones before it.
+     */
+    private static boolean access(Map<String, String> tags, boolean allowed, String... keys) {
+        for (String key : keys) {
+            String value = tags.get(key);
+            if (value != null) {
+                if (FORBIDDEN.contains(value)) {
+                    allowed = false;
+                } else if (ALLOWED.contains(value)) {
+                    allowed = true;
+                }
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Reads the direction of a one-way road.
+     *
+     * @return 1 if the road may only be travelled along its nodes, -1 if only against them, 0 if both ways.
+     */
+    private static int direction(Map<String, String> tags, String highway) {
+        String oneway = tags.get("oneway");
+        if (oneway != null) {
+            return switch (oneway) {
+                case "yes", "true", "1" -> 1;
+                case "-1", "reverse" -> -1;
+                default -> 0;
+            };
+        }
+        String junction = tags.get("junction");
+        boolean implied = "roundabout".equals(junction) || "circular".equals(junction)
+                || highway.equals("motorway") || highway.equals("motorway_link");
+        return implied ? 1 : 0;
+    }
+
+    /**
+     * Checks whether bikes may ride both ways along a one-way road.
+     */
+    private static boolean bikeContraflow(Map<String, String> tags) {
+        if ("no".equals(tags.get("oneway:bicycle"))) {
+            return true;
+        }
+        for (String key : new String[]{"cycleway", "cycleway:left", "cycleway:right", "cycleway:both"}) {
+            String value = tags.get(key);
+            if (value != null && value.startsWith("opposite")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the speed of a profile.
+     *
+     * @param profile The profile.
+     * @return The speed in km/h.
+     */
+    public float speed(Profile profile) {
+        return speeds[profile.ordinal()];
+    }
+
+    /**
+     * Checks whether a profile may travel the way in a direction.
+     *
+     * @param profile The profile.
+     * @param along   True along the nodes of the way, false against them.
+     * @return True if the profile may travel that way.
+     */
+    public boolean allows(Profile profile, boolean along) {
+        return ((along ? forward : backward) & profile.mode) != 0;
+    }
+}
@@ -0,0 +1,198 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the routes found on the graph, keyed by the vertices or snapped points at both ends and the profile.
+ * When the cache is full, the route that was used the longest time ago is evicted.
+ * The cache counts its hits and misses so its hit rate can be reported. It is safe to use from several threads.
+ */
+public class RouteCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, Route> routes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The largest number of routes kept. A capacity of 0 keeps none.
+     */
+    public RouteCache(int capacity) {
+        this.capacity = capacity;
+        this.routes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Route> eldest) {
+                return size() > RouteCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached route and counts the lookup as a hit or a miss.
+     *
+     * @param start The starting vertex position, or the {@link SnappedPoint#getKey() key} of the starting point.
+     * @param end   The ending vertex position, or the {@link SnappedPoint#getKey() key} of the ending point.
+     * @param drive True for driving, false for walking.
+     * @return The route, or null if it is not cached.
+     */
+    public Route get(long start, long end, boolean drive) {
+        return get(start, end, Profile.of(drive));
+    }
+
+    /**
+     * Gets a cached route of a profile and counts the lookup as a hit or a miss.
+     *
+     * @param start   The starting vertex position, or the {@link SnappedPoint#getKey() key} of the starting point.
+     * @param end     The ending vertex position, or the {@link SnappedPoint#getKey() key} of the ending point.
+     * @param profile The profile.
+     * @return The route, or null if it is not cached.
+     */
+    public synchronized Route get(long start, long end, Profile profile) {
+        Route route = routes.get(new Key(start, end, profile));
+        if (route != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return route;
+    }
+
+    /**
+     * Caches a route, evicting the least recently used route if the cache is full.
+     *
+     * @param start The starting vertex position, or the {@link SnappedPoint#getKey() key} of the starting point.
+     * @param end   The ending vertex position, or the {@link SnappedPoint#getKey() key} of the ending point.
+     * @param drive True for driving, false for walking.
+     * @param route The route.
+     */
+    public void put(long start, long end, boolean drive, Route route) {
+        put(start, end, Profile.of(drive), route);
+    }
+
+    /**
+     * Caches a route of a profile, evicting the least recently used route if the cache is full.
+     *
+     * @param start   The starting vertex position, or the {@link SnappedPoint#getKey() key} of the starting point.
+     * @param end     The ending vertex position, or the {@link SnappedPoint#getKey() key} of the ending point.
+     * @param profile The profile.
+     * @param route   The route.
+     */
+    public synchronized void put(long start, long end, Profile profile, Route route) {
+        if (capacity > 0) {
+            routes.put(new Key(start, end, profile), route);
+        }
+    }
+
+    /**
+     * Removes every route and resets the statistics, as the routes of one map are no use on another.
+     */
+    public synchronized void clear() {
+        routes.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Gets the number of cached routes.
+     *
+     * @return The number of routes.
+     */
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Gets the number of lookups that found a route.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that did not find a route.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the share of lookups that found a route.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing has been looked up.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private record Key(long start, long end, Profile profile) {
+    }
+
+    /**
+     * A route found on the graph, with everything needed to show it again.
+     */
+    public static class Route {
+        private final List<Integer> path;
+        private final double time;
+        private final double distance;
+        private final float[] coords;
+
+        /**
+         * Constructs a route.
+         *
+         * @param path     The vertex positions along the route.
+         * @param time     The time of the route, in seconds.
+         * @param distance The length of the route, in meters.
+         * @param coords   The latitude and longitude of each point to draw the route through.
+         */
+        public Route(List<Integer> path, double time, double distance, float[] coords) {
+            this.path = List.copyOf(path);
+            this.time = time;
+            this.distance = distance;
+            this.coords = coords;
+        }
+
+        /**
+         * Gets the vertex positions along the route.
+         *
+         * @return An unmodifiable list of vertex positions.
+         */
+        public List<Integer> getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the time of the route.
+         *
+         * @return The time in seconds.
+         */
+        public double getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the length of the route.
+         *
+         * @return The length in meters.
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * Gets the points to draw the route through.
+         *
+         * @return The latitude and longitude of each point.
+         */
+        public float[] getCoords() {
+            return coords;
+        }
+    }
+}
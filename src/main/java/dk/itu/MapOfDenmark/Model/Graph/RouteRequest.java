@@ -0,0 +1,191 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+/**
+ * A query for a route between two vertices of the graph, or two points snapped onto its roads,
+ * with the {@link Profile} that travels it and the cost to minimise.
+ * Requests are immutable, so any number of them can be answered by {@link Graph#route(RouteRequest)} at the same time.
+ */
+public class RouteRequest {
+    /**
+     * What a route minimises.
+     */
+    public enum Metric {
+        /** The travel time, from the weight array of the profile. */
+        FASTEST,
+        /** The length, regardless of speed limits. */
+        SHORTEST
+    }
+
+    private final int start;
+    private final int end;
+    private final SnappedPoint from;
+    private final SnappedPoint to;
+    private final Profile profile;
+    private final Metric metric;
+
+    /**
+     * Constructs a request for the fastest route.
+     *
+     * @param start The starting vertex position.
+     * @param end   The ending vertex position.
+     * @param drive True for driving, false for walking.
+     */
+    public RouteRequest(int start, int end, boolean drive) {
+        this(start, end, drive, Metric.FASTEST);
+    }
+
+    /**
+     * Constructs a request.
+     *
+     * @param start  The starting vertex position.
+     * @param end    The ending vertex position.
+     * @param drive  True for driving, false for walking.
+     * @param metric What the route minimises.
+     */
+    public RouteRequest(int start, int end, boolean drive, Metric metric) {
+        this(start, end, Profile.of(drive), metric);
+    }
+
+    /**
+     * Constructs a request for the fastest route of a profile.
+     *
+     * @param start   The starting vertex position.
+     * @param end     The ending vertex position.
+     * @param profile The profile.
+     */
+    public RouteRequest(int start, int end, Profile profile) {
+        this(start, end, profile, Metric.FASTEST);
+    }
+
+    /**
+     * Constructs a request for a profile.
+     *
+     * @param start   The starting vertex position.
+     * @param end     The ending vertex position.
+     * @param profile The profile.
+     * @param metric  What the route minimises.
+     */
+    public RouteRequest(int start, int end, Profile profile, Metric metric) {
+        this.start = start;
+        this.end = end;
+        this.from = null;
+        this.to = null;
+        this.profile = profile;
+        this.metric = metric;
+    }
+
+    /**
+     * Constructs a request for the fastest route between two points on the roads.
+     *
+     * @param from  The starting point, snapped with {@link Graph#snap(double[], boolean)}.
+     * @param to    The ending point, snapped with {@link Graph#snap(double[], boolean)}.
+     * @param drive True for driving, false for walking.
+     */
+    public RouteRequest(SnappedPoint from, SnappedPoint to, boolean drive) {
+        this(from, to, drive, Metric.FASTEST);
+    }
+
+    /**
+     * Constructs a request between two points on the roads. The route starts and ends partway along the edges
+     * the points are on.
+     *
+     * @param from   The starting point, snapped with {@link Graph#snap(double[], boolean)}.
+     * @param to     The ending point, snapped with {@link Graph#snap(double[], boolean)}.
+     * @param drive  True for driving, false for walking.
+     * @param metric What the route minimises.
+     */
+    public RouteRequest(SnappedPoint from, SnappedPoint to, boolean drive, Metric metric) {
+        this(from, to, Profile.of(drive), metric);
+    }
+
+    /**
+     * Constructs a request for the fastest route of a profile between two points on the roads.
+     *
+     * @param from    The starting point, snapped with {@link Graph#snap(double[], Profile)}.
+     * @param to      The ending point, snapped with {@link Graph#snap(double[], Profile)}.
+     * @param profile The profile.
+     */
+    public RouteRequest(SnappedPoint from, SnappedPoint to, Profile profile) {
+        this(from, to, profile, Metric.FASTEST);
+    }
+
+    /**
+     * Constructs a request for a profile between two points on the roads.
+     *
+     * @param from    The starting point, snapped with {@link Graph#snap(double[], Profile)}.
+     * @param to      The ending point, snapped with {@link Graph#snap(double[], Profile)}.
+     * @param profile The profile.
+     * @param metric  What the route minimises.
+     */
+    public RouteRequest(SnappedPoint from, SnappedPoint to, Profile profile, Metric metric) {
+        this.start = -1;
+        this.end = -1;
+        this.from = from;
+        this.to = to;
+        this.profile = profile;
+        this.metric = metric;
+    }
+
+    /**
+     * Gets the starting vertex.
+     *
+     * @return The starting vertex position, or -1 if the route starts at a snapped point.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the ending vertex.
+     *
+     * @return The ending vertex position, or -1 if the route ends at a snapped point.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the snapped point the route starts at.
+     *
+     * @return The starting point, or null if the route starts at a vertex.
+     */
+    public SnappedPoint getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the snapped point the route ends at.
+     *
+     * @return The ending point, or null if the route ends at a vertex.
+     */
+    public SnappedPoint getTo() {
+        return to;
+    }
+
+    /**
+     * Gets the travel mode.
+     *
+     * @return True for driving, false for walking or cycling.
+     */
+    public boolean isDrive() {
+        return profile == Profile.CAR;
+    }
+
+    /**
+     * Gets the profile that travels the route.
+     *
+     * @return The profile.
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Gets what the route minimises.
+     *
+     * @return The metric.
+     */
+    public Metric getMetric() {
+        return metric;
+    }
+}
@@ -0,0 +1,154 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.List;
+
+/**
+ * The answer to a {@link RouteRequest}: the route, its time and length, and how much of the graph was searched.
+ */
+public class RouteResult {
+    private final List<Integer> path;
+    private final int[] arcs;
+    private final double time;
+    private final double distance;
+    private final int settled;
+    private SnappedPoint from;
+    private SnappedPoint to;
+    private boolean leavesForward;
+    private boolean arrivesForward;
+
+    /**
+     * Constructs a result.
+     *
+     * @param path     The vertex positions along the route, or null if there is none. A route along a single
+     *                 edge between two snapped points passes no vertices.
+     * @param arcs     The arcs along the route, or null if there is none.
+     * @param time     The time of the route, in seconds.
+     * @param distance The length of the route, in meters.
+     * @param settled  The number of vertices the search settled.
+     */
+    RouteResult(List<Integer> path, int[] arcs, double time, double distance, int settled) {
+        this.path = path == null ? null : List.copyOf(path);
+        this.arcs = arcs;
+        this.time = time;
+        this.distance = distance;
+        this.settled = settled;
+    }
+
+    /**
+     * Constructs the result of a search that found no route.
+     *
+     * @param settled The number of vertices the search settled.
+     * @return The result.
+     */
+    static RouteResult none(int settled) {
+        return new RouteResult(null, null, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, settled);
+    }
+
+    /**
+     * Records the snapped points a route between them starts and ends at, and which way it travels their edges,
+     * so the partial edges at both ends can be drawn.
+     *
+     * @param from           The starting point.
+     * @param to             The ending point.
+     * @param leavesForward  True if the route leaves the starting point towards v of its edge, false towards u.
+     * @param arrivesForward True if the route arrives at the ending point from u of its edge, false from v.
+     * @return This result.
+     */
+    RouteResult between(SnappedPoint from, SnappedPoint to, boolean leavesForward, boolean arrivesForward) {
+        this.from = from;
+        this.to = to;
+        this.leavesForward = leavesForward;
+        this.arrivesForward = arrivesForward;
+        return this;
+    }
+
+    /**
+     * Gets the snapped point the route starts at.
+     *
+     * @return The starting point, or null if the route starts at a vertex.
+     */
+    SnappedPoint getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the snapped point the route ends at.
+     *
+     * @return The ending point, or null if the route ends at a vertex.
+     */
+    SnappedPoint getTo() {
+        return to;
+    }
+
+    /**
+     * Checks which way the route leaves its starting point.
+     *
+     * @return True if it travels towards v of the edge of the point, false towards u.
+     */
+    boolean leavesForward() {
+        return leavesForward;
+    }
+
+    /**
+     * Checks which way the route arrives at its ending point.
+     *
+     * @return True if it travels from u of the edge of the point, false from v.
+     */
+    boolean arrivesForward() {
+        return arrivesForward;
+    }
+
+    /**
+     * Checks whether a route was found.
+     *
+     * @return True if there is a route.
+     */
+    public boolean isFound() {
+        return path != null;
+    }
+
+    /**
+     * Gets the vertices along the route.
+     *
+     * @return An unmodifiable list of vertex positions, or null if there is no route.
+     */
+    public List<Integer> getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the arcs along the route, which tell which road was taken between two vertices.
+     *
+     * @return The arc indices, or null if there is no route.
+     */
+    int[] getArcs() {
+        return arcs;
+    }
+
+    /**
+     * Gets the time of the route.
+     *
+     * @return The time in seconds, or infinity if there is no route.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the length of the route.
+     *
+     * @return The length in meters, or infinity if there is no route.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the number of vertices the search settled, which is 0 if the route was ruled out without searching.
+     *
+     * @return The number of settled vertices.
+     */
+    public int getSettled() {
+        return settled;
+    }
+}
@@ -0,0 +1,101 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.Arrays;
+
+/**
+ * The per-vertex state of a shortest path search, kept in primitive arrays so it can be reused between searches.
+ * <p>
+ * Instead of clearing the arrays before every search, each vertex is stamped with the version of the search
+ * that last reached it. A vertex with an older stamp counts as unreached, so starting a search is constant time.
+ * This class is package-private, used internally by the Graph class, which lends a state to each running search.
+ */
+class SearchState {
+    /** The version of the search that last reached each vertex. */
+    private final int[] stamps;
+
+    /** The time of the best path found to each vertex, in seconds. */
+    final double[] times;
+
+    /** The length of the best path found to each vertex, in meters. */
+    final double[] distances;
+
+    /** The vertex before each vertex on its best path. */
+    final int[] parents;
+
+    /** The arc from the parent to each vertex on its best path. */
+    final int[] arcs;
+
+    /** The number of vertices settled by the search, for searches that report it. */
+    int settled;
+
+    /** The queue of reached vertices that are not yet settled. */
+    final IndexedHeap heap;
+
+    /** The version of the current search. */
+    private int version;
+
+    /**
+     * Constructs the search state for a graph.
+     *
+     * @param vertices The number of vertices in the graph.
+     */
+    SearchState(int vertices) {
+        stamps = new int[vertices];
+        times = new double[vertices];
+        distances = new double[vertices];
+        parents = new int[vertices];
+        arcs = new int[vertices];
+        heap = new IndexedHeap(vertices);
+    }
+
+    /**
+     * Gets the number of vertices the state was made for.
+     *
+     * @return The number of vertices.
+     */
+    int size() {
+        return stamps.length;
+    }
+
+    /**
+     * Starts a new search, forgetting every vertex reached by the previous one.
+     */
+    void start() {
+        version++;
+        if (version == 0) {
+            Arrays.fill(stamps, 0);
+            version = 1;
+        }
+        heap.clear();
+        settled = 0;
+    }
+
+    /**
+     * Checks whether the current search has reached a vertex.
+     *
+     * @param vertex The vertex position.
+     * @return True if the vertex has been reached.
+     */
+    boolean reached(int vertex) {
+        return stamps[vertex] == version;
+    }
+
+    /**
+     * Records a better path to a vertex and queues it.
+     *
+     * @param vertex   The vertex position.
+     * @param parent   The vertex before it on the path.
+     * @param arc      The arc from the parent to the vertex, or -1 at the start of the path.
+     * @param time     The time of the path, in seconds.
+     * @param distance The length of the path, in meters.
+     * @param key      The priority of the vertex in the queue.
+     */
+    void reach(int vertex, int parent, int arc, double time, double distance, double key) {
+        stamps[vertex] = version;
+        times[vertex] = time;
+        distances[vertex] = distance;
+        parents[vertex] = parent;
+        arcs[vertex] = arc;
+        heap.insertOrDecrease(vertex, key);
+    }
+}
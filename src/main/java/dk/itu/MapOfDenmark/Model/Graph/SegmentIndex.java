@@ -0,0 +1,267 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import dk.itu.MapOfDenmark.utils.HelperMethods;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A spatial index of the road segments of a frozen graph, which snaps a point onto the nearest road.
+ * <p>
+ * Every edge is cut into the straight segments between its vertices and the points of its shape. The segments are
+ * sorted into the cells of a uniform grid in compressed sparse row form, like the adjacency of the graph, so the
+ * index is a few int arrays instead of an object per vertex. A query projects the point onto the segments in its
+ * cell and then in rings of cells around it, until the nearest segment found is closer than any cell left.
+ * Longitudes are scaled by the cosine of the middle latitude of the map, so distances are compared as on the map.
+ */
+public class SegmentIndex {
+    /** The average number of segments per cell the grid is sized for. */
+    private static final int SEGMENTS_PER_CELL = 4;
+
+    private final Graph graph;
+
+    /** The vertex u that each edge leaves. */
+    private final int[] edgeSources;
+
+    /**
+     * The arc from u to v of the edge of each segment, which also gives the edge. The segments of edge e are numbered
+     * from {@code shapeOffsets[e] + e}, one for each point of its shape and one more, so the index of a segment
+     * within its edge follows from the edge.
+     */
+    private final int[] segmentArcs;
+
+    /** The segments in the cell at column x and row y are {@code cellSegments} from {@code cellOffsets[y * columns + x]}. */
+    private final int[] cellOffsets;
+    private final int[] cellSegments;
+
+    private final int columns;
+    private final int rows;
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+
+    /** The factor longitudes are scaled by. */
+    private final double scale;
+
+    private SegmentIndex(Graph graph) {
+        this.graph = graph;
+        int edgeCount = graph.getEdgeCount();
+        int vertexCount = graph.getVertexCount();
+        int segmentCount = graph.shapeOffsets[edgeCount] + edgeCount;
+        edgeSources = new int[edgeCount];
+        segmentArcs = new int[segmentCount];
+        for (int u = 0; u < vertexCount; u++) {
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                int e = graph.arcEdges[arc];
+                if (e >= 0) {
+                    edgeSources[e] = u;
+                    for (int k = 0; k < pointCount(e) - 1; k++) {
+                        segmentArcs[firstSegment(e) + k] = arc;
+                    }
+                }
+            }
+        }
+
+        float minLat = Float.POSITIVE_INFINITY, maxLat = Float.NEGATIVE_INFINITY;
+        float minLon = Float.POSITIVE_INFINITY, maxLon = Float.NEGATIVE_INFINITY;
+        for (int s = 0; s < segmentCount; s++) {
+            int arc = segmentArcs[s];
+            int e = graph.arcEdges[arc];
+            for (int k = s - firstSegment(e); k <= s - firstSegment(e) + 1; k++) {
+                float lat = point(e, arc, k, 0);
+                float lon = point(e, arc, k, 1);
+                minLat = Math.min(minLat, lat);
+                maxLat = Math.max(maxLat, lat);
+                minLon = Math.min(minLon, lon);
+                maxLon = Math.max(maxLon, lon);
+            }
+        }
+        if (segmentCount == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+
+        scale = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        minX = minLon * scale;
+        minY = minLat;
+        double width = (maxLon - minLon) * scale;
+        double height = maxLat - minLat;
+        int cells = Math.max(1, segmentCount / SEGMENTS_PER_CELL);
+        cellSize = Math.max(Math.sqrt(width * height / cells), Math.max(width, height) / cells + 1e-9);
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+
+        // Each segment goes in every cell its bounding box covers, counted first and then filled in
+        cellOffsets = new int[columns * rows + 1];
+        for (int s = 0; s < segmentCount; s++) {
+            forEachCell(s, cell -> cellOffsets[cell + 1]++);
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+        cellSegments = new int[cellOffsets[columns * rows]];
+        int[] next = new int[columns * rows];
+        System.arraycopy(cellOffsets, 0, next, 0, next.length);
+        for (int s = 0; s < segmentCount; s++) {
+            int segment = s;
+            forEachCell(s, cell -> cellSegments[next[cell]++] = segment);
+        }
+    }
+
+    /**
+     * Builds the index of a frozen graph.
+     *
+     * @param graph The graph.
+     * @return The index.
+     */
+    public static SegmentIndex build(Graph graph) {
+        graph.freeze();
+        return new SegmentIndex(graph);
+    }
+
+    /**
+     * Gets the number of segments in the index.
+     *
+     * @return The number of segments.
+     */
+    public int getSegmentCount() {
+        return segmentArcs.length;
+    }
+
+    /**
+     * Snaps a point onto the nearest segment of an edge that the profile may use in either direction, that is not
+     * closed for it by an infinite weight and that connects both ways to the rest of the roads, which is when both
+     * its vertices are in the largest strongly connected component. Any usable edge is taken if there is no such edge.
+     *
+     * @param lat     The latitude of the point.
+     * @param lon     The longitude of the point.
+     * @param profile The profile.
+     * @return The point on the nearest segment, or null if the profile may use no edge.
+     */
+    public SnappedPoint nearest(float lat, float lon, Profile profile) {
+        SnappedPoint nearest = nearest(lat, lon, profile, graph.getComponents(profile));
+        return nearest != null ? nearest : nearest(lat, lon, profile, null);
+    }
+
+    private SnappedPoint nearest(float lat, float lon, Profile profile, Components components) {
+        int mode = profile.mode | profile.mode << Graph.OPPOSITE;
+        float[] weights = graph.weights(profile);
+        double x = lon * scale;
+        double y = lat;
+        int column = clamp((int) Math.floor((x - minX) / cellSize), columns);
+        int row = clamp((int) Math.floor((y - minY) / cellSize), rows);
+
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        double bestAlong = 0;
+        for (int ring = 0; ; ring++) {
+            for (int cy = row - ring; cy <= row + ring; cy++) {
+                if (cy < 0 || cy >= rows) {
+                    continue;
+                }
+                // Only the first and last column of the ring, apart from its first and last row
+                int step = cy == row - ring || cy == row + ring ? 1 : Math.max(1, 2 * ring);
+                for (int cx = column - ring; cx <= column + ring; cx += step) {
+                    if (cx < 0 || cx >= columns) {
+                        continue;
+                    }
+                    int cell = cy * columns + cx;
+                    for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+                        int s = cellSegments[i];
+                        int arc = segmentArcs[s];
+                        int e = graph.arcEdges[arc];
+                        if ((graph.flags[arc] & mode) == 0 || weights[arc] == Float.POSITIVE_INFINITY) {
+                            continue;
+                        }
+                        if (components != null && !(components.isInLargest(edgeSources[e]) && components.isInLargest(graph.targets[arc]))) {
+                            continue;
+                        }
+                        int k = s - firstSegment(e);
+                        double ax = point(e, arc, k, 1) * scale, ay = point(e, arc, k, 0);
+                        double bx = point(e, arc, k + 1, 1) * scale, by = point(e, arc, k + 1, 0);
+                        double dx = bx - ax, dy = by - ay;
+                        double squared = dx * dx + dy * dy;
+                        double along = squared == 0 ? 0 : Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / squared));
+                        double px = ax + along * dx - x, py = ay + along * dy - y;
+                        double distance = px * px + py * py;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = s;
+                            bestAlong = along;
+                        }
+                    }
+                }
+            }
+
+            // Every cell outside the rings searched so far is at least this far from the point
+            double left = column - ring > 0 ? x - (minX + (column - ring) * cellSize) : Double.POSITIVE_INFINITY;
+            double right = column + ring < columns - 1 ? minX + (column + ring + 1) * cellSize - x : Double.POSITIVE_INFINITY;
+            double below = row - ring > 0 ? y - (minY + (row - ring) * cellSize) : Double.POSITIVE_INFINITY;
+            double above = row + ring < rows - 1 ? minY + (row + ring + 1) * cellSize - y : Double.POSITIVE_INFINITY;
+            double remaining = Math.min(Math.min(left, right), Math.min(below, above));
+            if (remaining == Double.POSITIVE_INFINITY || (best >= 0 && bestDistance <= remaining * remaining)) {
+                break;
+            }
+        }
+        return best < 0 ? null : snap(best, bestAlong, lat, lon);
+    }
+
+    /**
+     * Makes the snapped point on a segment, measuring how far along its edge it is.
+     */
+    private SnappedPoint snap(int s, double along, float lat, float lon) {
+        int arc = segmentArcs[s];
+        int e = graph.arcEdges[arc];
+        int k = s - firstSegment(e);
+        double before = 0;
+        double total = 0;
+        for (int i = 0; i < pointCount(e) - 1; i++) {
+            double length = HelperMethods.greatCircleDistance(point(e, arc, i, 0), point(e, arc, i, 1), point(e, arc, i + 1, 0), point(e, arc, i + 1, 1));
+            if (i < k) {
+                before += length;
+            } else if (i == k) {
+                before += along * length;
+            }
+            total += length;
+        }
+        float snappedLat = (float) (point(e, arc, k, 0) + along * (point(e, arc, k + 1, 0) - point(e, arc, k, 0)));
+        float snappedLon = (float) (point(e, arc, k, 1) + along * (point(e, arc, k + 1, 1) - point(e, arc, k, 1)));
+        float fraction = total == 0 ? 0 : (float) Math.min(1, before / total);
+        return new SnappedPoint(e, arc, edgeSources[e], graph.targets[arc], k, fraction, snappedLat, snappedLon,
+                HelperMethods.greatCircleDistance(lat, lon, snappedLat, snappedLon));
+    }
+
+    /**
+     * Calls an action with every cell that the bounding box of a segment covers.
+     */
+    private void forEachCell(int s, IntConsumer action) {
+        int arc = segmentArcs[s];
+        int e = graph.arcEdges[arc];
+        int k = s - firstSegment(e);
+        double ax = point(e, arc, k, 1) * scale, ay = point(e, arc, k, 0);
+        double bx = point(e, arc, k + 1, 1) * scale, by = point(e, arc, k + 1, 0);
+        int firstColumn = clamp((int) ((Math.min(ax, bx) - minX) / cellSize), columns);
+        int lastColumn = clamp((int) ((Math.max(ax, bx) - minX) / cellSize), columns);
+        int firstRow = clamp((int) ((Math.min(ay, by) - minY) / cellSize), rows);
+        int lastRow = clamp((int) ((Math.max(ay, by) - minY) / cellSize), rows);
+        for (int cy = firstRow; cy <= lastRow; cy++) {
+            for (int cx = firstColumn; cx <= lastColumn; cx++) {
+                action.accept(cy * columns + cx);
+            }
+        }
+    }
+
+    private int firstSegment(int edge) {
+        return graph.shapeOffsets[edge] + edge;
+    }
+
+    private int pointCount(int edge) {
+        return graph.pointCount(edge);
+    }
+
+    private float point(int edge, int arc, int k, int axis) {
+        return graph.point(edge, edgeSources[edge], graph.targets[arc], k, axis);
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+}
@@ -0,0 +1,124 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+/**
+ * A point projected onto the nearest road segment by {@link SegmentIndex}. Routes start and end at the point
+ * itself instead of at a vertex, as if the edge had a vertex there that splits it in two.
+ */
+public class SnappedPoint {
+    private final int edge;
+    private final int arc;
+    private final int u;
+    private final int v;
+    private final int segment;
+    private final float fraction;
+    private final float lat;
+    private final float lon;
+    private final double distance;
+
+    /**
+     * Constructs a snapped point.
+     *
+     * @param edge     The edge the point is on.
+     * @param arc      The arc from u to v of the edge.
+     * @param u        The vertex the edge starts at.
+     * @param v        The vertex the edge ends at.
+     * @param segment  The segment of the edge the point is on, 0 for the segment that leaves u.
+     * @param fraction How far along the edge the point is, by length, from 0 at u to 1 at v.
+     * @param lat      The latitude of the point.
+     * @param lon      The longitude of the point.
+     * @param distance The distance from the queried point to this point, in meters.
+     */
+    SnappedPoint(int edge, int arc, int u, int v, int segment, float fraction, float lat, float lon, double distance) {
+        this.edge = edge;
+        this.arc = arc;
+        this.u = u;
+        this.v = v;
+        this.segment = segment;
+        this.fraction = fraction;
+        this.lat = lat;
+        this.lon = lon;
+        this.distance = distance;
+    }
+
+    /**
+     * Gets the edge the point is on.
+     *
+     * @return The edge index.
+     */
+    public int getEdge() {
+        return edge;
+    }
+
+    /**
+     * Gets the arc from u to v of the edge, which has the length, time and flags of the edge.
+     *
+     * @return The arc index.
+     */
+    int getArc() {
+        return arc;
+    }
+
+    /**
+     * Gets the vertex the edge starts at.
+     *
+     * @return The vertex position.
+     */
+    public int getU() {
+        return u;
+    }
+
+    /**
+     * Gets the vertex the edge ends at. A one-way edge can only be travelled from u to v.
+     *
+     * @return The vertex position.
+     */
+    public int getV() {
+        return v;
+    }
+
+    /**
+     * Gets the segment of the edge the point is on.
+     *
+     * @return The index of the segment, 0 for the segment that leaves u.
+     */
+    int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Gets how far along the edge the point is.
+     *
+     * @return The share of the length of the edge between u and the point, from 0 to 1.
+     */
+    public float getFraction() {
+        return fraction;
+    }
+
+    /**
+     * Gets the coordinates of the point on the road.
+     *
+     * @return The latitude and longitude.
+     */
+    public float[] getCoords() {
+        return new float[]{lat, lon};
+    }
+
+    /**
+     * Gets the distance from the queried point to the road.
+     *
+     * @return The distance in meters.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets a key that identifies the position of the point on the road network, for {@link RouteCache}.
+     * Keys are negative, so they never equal a vertex position.
+     *
+     * @return The key.
+     */
+    public long getKey() {
+        return ~(((long) edge << 32) | (Float.floatToIntBits(fraction) & 0xFFFFFFFFL));
+    }
+}
@@ -0,0 +1,300 @@
+package dk.itu.MapOfDenmark.Model.Graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The travel times and distances of the fastest routes from a list of sources to a list of targets.
+ * <p>
+ * The table is computed by one search per source instead of one per pair. If the graph is contracted, every
+ * target first stores the times of its backward search space in buckets at the vertices it reaches, and the
+ * forward search from a source then reads the time to each target from the buckets of the vertices it settles.
+ * Otherwise each source runs Dijkstra's algorithm until all targets are settled. The searches run in parallel.
+ */
+public class TravelTimeMatrix {
+    private final int[] sources;
+    private final int[] targets;
+
+    /** The time of the fastest route from source i to target j at index {@code i * targets.length + j}, in seconds. */
+    private final double[] times;
+
+    /** The length of the fastest route from source i to target j, laid out like {@link #times}, in meters. */
+    private final double[] distances;
+
+    private TravelTimeMatrix(int[] sources, int[] targets) {
+        this.sources = sources.clone();
+        this.targets = targets.clone();
+        times = new double[sources.length * targets.length];
+        distances = new double[sources.length * targets.length];
+        Arrays.fill(times, Double.POSITIVE_INFINITY);
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Computes the table between vertices of a frozen graph.
+     *
+     * @param graph   The graph.
+     * @param profile The profile.
+     * @param sources The positions of the sources.
+     * @param targets The positions of the targets.
+     * @return The table.
+     */
+    static TravelTimeMatrix compute(Graph graph, Profile profile, int[] sources, int[] targets) {
+        TravelTimeMatrix matrix = new TravelTimeMatrix(sources, targets);
+        ContractionHierarchy hierarchy = graph.getHierarchy(profile);
+        if (hierarchy != null) {
+            matrix.computeWithBuckets(graph, hierarchy);
+        } else {
+            matrix.computeWithDijkstra(graph, profile);
+        }
+        return matrix;
+    }
+
+    /**
+     * Gets the number of sources, which is the number of rows.
+     *
+     * @return The number of sources.
+     */
+    public int getSourceCount() {
+        return sources.length;
+    }
+
+    /**
+     * Gets the number of targets, which is the number of columns.
+     *
+     * @return The number of targets.
+     */
+    public int getTargetCount() {
+        return targets.length;
+    }
+
+    /**
+     * Gets the vertex a source was snapped to.
+     *
+     * @param source The index of the source.
+     * @return The vertex position.
+     */
+    public int getSource(int source) {
+        return sources[source];
+    }
+
+    /**
+     * Gets the vertex a target was snapped to.
+     *
+     * @param target The index of the target.
+     * @return The vertex position.
+     */
+    public int getTarget(int target) {
+        return targets[target];
+    }
+
+    /**
+     * Gets the time of the fastest route from a source to a target.
+     *
+     * @param source The index of the source.
+     * @param target The index of the target.
+     * @return The time in seconds, or infinity if the target can not be reached.
+     */
+    public double getTime(int source, int target) {
+        return times[source * targets.length + target];
+    }
+
+    /**
+     * Gets the length of the fastest route from a source to a target.
+     *
+     * @param source The index of the source.
+     * @param target The index of the target.
+     * @return The length in meters, or infinity if the target can not be reached.
+     */
+    public double getDistance(int source, int target) {
+        return distances[source * targets.length + target];
+    }
+
+    /**
+     * Gets every time of the table, row by row.
+     *
+     * @return The time from source i to target j at index {@code i * getTargetCount() + j}, in seconds.
+     */
+    public double[] getTimes() {
+        return times.clone();
+    }
+
+    /**
+     * Gets every length of the table, row by row.
+     *
+     * @return The length from source i to target j at index {@code i * getTargetCount() + j}, in meters.
+     */
+    public double[] getDistances() {
+        return distances.clone();
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from every source until every target it can reach is settled.
+     * Targets that share a vertex are chained through {@code nextTarget}, starting at {@code firstTarget} of the vertex.
+     */
+    private void computeWithDijkstra(Graph graph, Profile profile) {
+        int[] firstTarget = new int[graph.getVertexCount()];
+        int[] nextTarget = new int[targets.length];
+        int[] targetVertices = new int[targets.length];
+        Arrays.fill(firstTarget, -1);
+        int targetVertexCount = 0;
+        for (int j = 0; j < targets.length; j++) {
+            if (firstTarget[targets[j]] < 0) {
+                targetVertices[targetVertexCount++] = targets[j];
+            }
+            nextTarget[j] = firstTarget[targets[j]];
+            firstTarget[targets[j]] = j;
+        }
+        byte mode = profile.mode;
+        float[] weights = graph.weights(profile);
+        Components components = graph.getComponents(profile);
+        int distinctTargets = targetVertexCount;
+
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchState state = graph.acquireState();
+            try {
+                state.start();
+                state.reach(sources[i], sources[i], -1, 0, 0, 0);
+                // Targets the components rule out are not waited for, or the search would explore everything it reaches
+                int remaining = 0;
+                for (int k = 0; k < distinctTargets; k++) {
+                    if (components.mayReach(sources[i], targetVertices[k])) {
+                        remaining++;
+                    }
+                }
+                while (remaining > 0 && !state.heap.isEmpty()) {
+                    int current = state.heap.poll();
+                    double currentTime = state.times[current];
+                    double currentDistance = state.distances[current];
+                    if (firstTarget[current] >= 0) {
+                        for (int j = firstTarget[current]; j >= 0; j = nextTarget[j]) {
+                            times[i * targets.length + j] = currentTime;
+                            distances[i * targets.length + j] = currentDistance;
+                        }
+                        remaining--;
+                    }
+                    for (int arc = graph.offsets[current]; arc < graph.offsets[current + 1]; arc++) {
+                        if ((graph.flags[arc] & mode) == 0) {
+                            continue;
+                        }
+                        int neighbor = graph.targets[arc];
+                        double time = currentTime + weights[arc];
+                        if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                            state.reach(neighbor, current, arc, time, currentDistance + graph.distances[arc], time);
+                        }
+                    }
+                }
+            } finally {
+                graph.releaseState(state);
+            }
+        });
+    }
+
+    /**
+     * Computes the table in a contraction hierarchy. The backward search from each target settles every vertex
+     * above it, and each settled vertex gets a bucket entry with the target and the time from the vertex to it.
+     * The fastest route from a source to a target passes its most important vertex, which both searches settle
+     * with the exact time, so the smallest sum over the buckets of the vertices settled from the source is the time.
+     */
+    private void computeWithBuckets(Graph graph, ContractionHierarchy hierarchy) {
+        double[] lengths = hierarchy.lengths(graph);
+        int vertexCount = graph.getVertexCount();
+
+        // The backward search spaces of the targets, as parallel arrays of settled vertices, times and lengths
+        int[][] spaceVertices = new int[targets.length][];
+        double[][] spaceTimes = new double[targets.length][];
+        double[][] spaceDistances = new double[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            SearchState state = graph.acquireState();
+            try {
+                int[] vertices = search(state, targets[j], hierarchy.downOffsets, hierarchy.downSources,
+                        hierarchy.downWeights, hierarchy.downEdges, lengths);
+                double[] spaceTime = new double[vertices.length];
+                double[] spaceDistance = new double[vertices.length];
+                for (int k = 0; k < vertices.length; k++) {
+                    spaceTime[k] = state.times[vertices[k]];
+                    spaceDistance[k] = state.distances[vertices[k]];
+                }
+                spaceVertices[j] = vertices;
+                spaceTimes[j] = spaceTime;
+                spaceDistances[j] = spaceDistance;
+            } finally {
+                graph.releaseState(state);
+            }
+        });
+
+        // Sort the entries into one bucket per vertex
+        int[] bucketOffsets = new int[vertexCount + 1];
+        for (int[] vertices : spaceVertices) {
+            for (int v : vertices) {
+                bucketOffsets[v + 1]++;
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            bucketOffsets[v + 1] += bucketOffsets[v];
+        }
+        int entries = bucketOffsets[vertexCount];
+        int[] bucketTargets = new int[entries];
+        double[] bucketTimes = new double[entries];
+        double[] bucketDistances = new double[entries];
+        int[] next = Arrays.copyOf(bucketOffsets, vertexCount);
+        for (int j = 0; j < targets.length; j++) {
+            for (int k = 0; k < spaceVertices[j].length; k++) {
+                int entry = next[spaceVertices[j][k]]++;
+                bucketTargets[entry] = j;
+                bucketTimes[entry] = spaceTimes[j][k];
+                bucketDistances[entry] = spaceDistances[j][k];
+            }
+        }
+
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchState state = graph.acquireState();
+            try {
+                int[] settled = search(state, sources[i], hierarchy.upOffsets, hierarchy.upTargets,
+                        hierarchy.upWeights, hierarchy.upEdges, lengths);
+                for (int v : settled) {
+                    for (int entry = bucketOffsets[v]; entry < bucketOffsets[v + 1]; entry++) {
+                        int cell = i * targets.length + bucketTargets[entry];
+                        double time = state.times[v] + bucketTimes[entry];
+                        if (time < times[cell]) {
+                            times[cell] = time;
+                            distances[cell] = state.distances[v] + bucketDistances[entry];
+                        }
+                    }
+                }
+            } finally {
+                graph.releaseState(state);
+            }
+        });
+    }
+
+    /**
+     * Settles every vertex reachable from a vertex in one direction of a contraction hierarchy.
+     *
+     * @return The settled vertices, whose times and lengths are left in the search state.
+     */
+    private static int[] search(SearchState state, int source, int[] offsets, int[] neighbors, float[] weights,
+                              int[] edges, double[] lengths) {
+        state.start();
+        state.reach(source, -1, -1, 0, 0, 0);
+        int[] settled = new int[64];
+        int count = 0;
+        while (!state.heap.isEmpty()) {
+            int current = state.heap.poll();
+            double currentTime = state.times[current];
+            double currentDistance = state.distances[current];
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int neighbor = neighbors[i];
+                double time = currentTime + weights[i];
+                if (!state.reached(neighbor) || time < state.times[neighbor]) {
+                    state.reach(neighbor, -1, -1, time, currentDistance + lengths[edges[i]], time);
+                }
+            }
+            if (count == settled.length) {
+                settled = Arrays.copyOf(settled, count << 1);
+            }
+            settled[count++] = current;
+        }
+        return Arrays.copyOf(settled, count);
+    }
+}
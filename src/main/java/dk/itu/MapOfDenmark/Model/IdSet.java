@@ -0,0 +1,113 @@
+package dk.itu.MapOfDenmark.Model;
+
+import java.util.Arrays;
+
+/**
+ * The IdSet class is a compact set of OSM IDs backed by a single sorted long array.
+ * IDs are appended freely and the array is sorted and deduplicated whenever it fills up,
+ * so duplicate references only cost memory until the next compaction.
+ * Lookups that arrive in ascending order, as nodes do in an OSM file, gallop forward from the previous hit
+ * instead of running a full binary search.
+ */
+public class IdSet {
+    private long[] ids = new long[1 << 16];
+    private int size;
+    private int sortedSize;
+    private int cursor;
+
+    /**
+     * Adds an ID to the set.
+     *
+     * @param id The ID to add.
+     */
+    public void add(long id) {
+        if (size == ids.length) {
+            compact();
+            if (size > ids.length - (ids.length >> 2)) {
+                ids = Arrays.copyOf(ids, ids.length + (ids.length >> 1));
+            }
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Checks whether the set contains an ID.
+     *
+     * @param id The ID to look for.
+     * @return True if the ID has been added to the set, otherwise false.
+     */
+    public boolean contains(long id) {
+        if (sortedSize != size) {
+            compact();
+        }
+        if (sortedSize == 0) {
+            return false;
+        }
+
+        int low;
+        int high;
+        if (cursor < sortedSize && ids[cursor] <= id) {
+            // Gallop forward from the previous hit
+            int step = 1;
+            low = cursor;
+            high = cursor + 1;
+            while (high < sortedSize && ids[high] <= id) {
+                low = high;
+                step <<= 1;
+                high = low + step;
+            }
+            high = Math.min(high, sortedSize - 1);
+        } else {
+            low = 0;
+            high = sortedSize - 1;
+        }
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ids[mid] < id) {
+                low = mid + 1;
+            } else if (ids[mid] > id) {
+                high = mid - 1;
+            } else {
+                cursor = mid;
+                return true;
+            }
+        }
+        cursor = Math.min(low, sortedSize - 1);
+        return false;
+    }
+
+    /**
+     * Gets the number of distinct IDs in the set.
+     *
+     * @return The number of IDs.
+     */
+    public int size() {
+        compact();
+        return size;
+    }
+
+    /**
+     * Sorts the IDs, removes duplicates and releases unused capacity.
+     */
+    public void trimToSize() {
+        compact();
+        ids = Arrays.copyOf(ids, Math.max(size, 16));
+    }
+
+    private void compact() {
+        if (sortedSize == size) {
+            return;
+        }
+        Arrays.sort(ids, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        size = unique;
+        sortedSize = unique;
+        cursor = 0;
+    }
+}
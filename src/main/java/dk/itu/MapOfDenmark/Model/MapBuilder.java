@@ -0,0 +1,307 @@
+package dk.itu.MapOfDenmark.Model;
+
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.RoadTags;
+import dk.itu.MapOfDenmark.Model.objects.*;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Road;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the graph, the QuadTrees and the address trie of a {@link Model} from the elements of an OSM file.
+ * The address of a node or way is inserted once, at the position of the latest node. Tags that follow the end
+ * of a way belong to relations, which are not part of the map, so they are ignored until the next node or way.
+ */
+public class MapBuilder implements OsmHandler {
+    /** The model whose bounds are set while parsing. */
+    private final Model model;
+
+    /** Maps node IDs to coordinates. */
+    private NodeIndex id2node = new NodeIndex();
+
+    /** The nodes to keep, or null to keep every node. */
+    private final IdSet referencedNodes;
+
+    /** A map of key-value pairs of the current element. */
+    private final Map<String, String> keyValue_map = new HashMap<>();
+
+    /** The coordinates of the current way. */
+    private final ArrayList<float[]> way = new ArrayList<>();
+
+    /** The type of the current way, as given by its latest tag. */
+    private String wayType;
+
+    private float lat = 0;
+    private float lon = 0;
+
+    /** Whether the tags being read belong to a node or a way, rather than to a relation. */
+    private boolean inElement = false;
+
+    /** Whether the address of the current element has been inserted into the trie. */
+    private boolean addressed = false;
+    private boolean street = false;
+    private boolean housenumber = false;
+    private boolean postcode = false;
+    private boolean city = false;
+
+    /**
+     * Constructs a builder that keeps every node of the file.
+     *
+     * @param model The model to build.
+     */
+    public MapBuilder(Model model) {
+        this(model, null);
+    }
+
+    /**
+     * Constructs a builder that only keeps the given nodes.
+     *
+     * @param model           The model to build.
+     * @param referencedNodes The IDs of the nodes used by the ways that are kept, or null to keep every node.
+     */
+    public MapBuilder(Model model, IdSet referencedNodes) {
+        this.model = model;
+        this.referencedNodes = referencedNodes;
+    }
+
+    @Override
+    public void bounds(double minlat, double minlon, double maxlat, double maxlon) {
+        model.minlat = minlat;
+        model.maxlat = maxlat;
+        model.minlon = minlon;
+        model.maxlon = maxlon;
+        model.buildTrees(new SerializableRectangle(minlat, minlon, maxlat, maxlon));
+    }
+
+    @Override
+    public void node(long id, float lat, float lon) {
+        inElement = true;
+        addressed = false;
+        street = false;
+        housenumber = false;
+        postcode = false;
+        city = false;
+        keyValue_map.clear();
+        this.lat = lat;
+        this.lon = lon;
+
+        if (referencedNodes == null || referencedNodes.contains(id)) {
+            id2node.add(id, lat, lon);
+        }
+    }
+
+    @Override
+    public void way() {
+        inElement = true;
+        addressed = false;
+        street = false;
+        housenumber = false;
+        postcode = false;
+        city = false;
+        keyValue_map.clear();
+        wayType = null;
+        way.clear();
+    }
+
+    @Override
+    public void nd(long ref) {
+        float[] node = id2node.get(ref);
+        if (node != null) {
+            way.add(node);
+        }
+    }
+
+    @Override
+    public void tag(String k, String v) {
+        if (!inElement) {
+            return;
+        }
+        keyValue_map.put(k, v);
+        wayType = getWayType(k, v);
+
+        switch (k) {
+            case "addr:street" -> street = true;
+            case "addr:housenumber" -> housenumber = true;
+            case "addr:postcode" -> postcode = true;
+            case "addr:city" -> city = true;
+        }
+
+        if (street && housenumber && postcode && city && !addressed) {
+            Model.trie.insert(address(keyValue_map), new float[]{lat, lon});
+            addressed = true;
+        }
+    }
+
+    @Override
+    public void endWay() {
+        inElement = false;
+        float[] wayArr = new float[way.size() * 2];
+        for (int i = 0; i < way.size(); i++) {
+            wayArr[i << 1] = way.get(i)[0];
+            wayArr[(i << 1) + 1] = way.get(i)[1];
+        }
+
+        String highway = keyValue_map.get("highway");
+        if (highway != null) {
+            Road road = createRoad(highway, wayArr);
+            Graph graph = Model.getGraph();
+            for (float[] p : way) {
+                graph.addVertex(p);
+            }
+            road.addEdges(way, RoadTags.of(keyValue_map));
+            graph.addEdge(road);
+            Model.add(road);
+        }
+
+        Way area = createArea(resolveWayType(keyValue_map, wayType), wayArr);
+        if (area != null) {
+            Model.add(area);
+        }
+    }
+
+    @Override
+    public void end() {
+        id2node = null;
+    }
+
+    /**
+     * Formats the address of an element from its address tags.
+     *
+     * @param tags The tags of the element.
+     * @return The address as it is stored in the trie.
+     */
+    static String address(Map<String, String> tags) {
+        return tags.get("addr:street") + " " +
+                tags.get("addr:housenumber") + ", " +
+                tags.get("addr:postcode") + " " +
+                tags.get("addr:city");
+    }
+
+    /**
+     * Creates the road object for a way with a highway tag.
+     *
+     * @param highway The value of the highway tag.
+     * @param wayArr  The coordinates of the way.
+     * @return The road.
+     */
+    static Road createRoad(String highway, float[] wayArr) {
+        return switch (highway) {
+            case "motorway" -> new MotorWay(wayArr);
+            case "trunk" -> new TrunkRoad(wayArr);
+            case "primary" -> new PrimaryRoad(wayArr);
+            case "secondary" -> new SecondaryRoad(wayArr);
+            case "tertiary" -> new TertiaryRoad(wayArr);
+            case "footway", "path", "steps" -> new WalkWay(wayArr);
+            default -> new OtherRoad(wayArr);
+        };
+    }
+
+    /**
+     * Creates the drawn area or line for a way of the given type.
+     *
+     * @param wayType The type returned by {@link #resolveWayType(Map, String)}.
+     * @param wayArr  The coordinates of the way.
+     * @return The way, or null if ways of this type are not drawn.
+     */
+    static Way createArea(String wayType, float[] wayArr) {
+        if (wayType == null) {
+            return null;
+        }
+        return switch (wayType) {
+            case "coast" -> new Coast(wayArr);
+            case "water" -> new Water(wayArr);
+            case "building" -> new Building(wayArr);
+            case "grass" -> new Grass(wayArr);
+            case "ground" -> new Island(wayArr);
+            case "waterway" -> new WaterWay(wayArr);
+            default -> null;
+        };
+    }
+
+    /**
+     * Checks whether a way ends up in the map, either as a road or as a drawn area.
+     *
+     * @param tags    The tags of the way.
+     * @param wayType The type given by the latest tag of the way.
+     * @return True if the way is kept, false if it is discarded.
+     */
+    static boolean isKept(Map<String, String> tags, String wayType) {
+        if (tags.containsKey("highway")) {
+            return true;
+        }
+        String type = resolveWayType(tags, wayType);
+        return type != null && switch (type) {
+            case "coast", "water", "building", "grass", "ground", "waterway" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Resolves the final type of a way from its landuse, natural, waterway and leisure tags.
+     *
+     * @param tags    The tags of the way.
+     * @param wayType The type given by the latest tag of the way.
+     * @return The type of the way.
+     */
+    static String resolveWayType(Map<String, String> tags, String wayType) {
+        String landuse = tags.get("landuse");
+        if (landuse != null) {
+            switch (landuse) {
+                case "forest", "meadow", "farmland", "farmyard", "orchard", "vineyard", "greenhouse_horticulture",
+                        "plant_nursery", "allotments", "farm" -> wayType = "grass";
+            }
+        }
+
+        if (tags.containsKey("natural")) {
+            if (tags.get("natural").equals("coastline")) {
+                wayType = "coast";
+            } else if (tags.get("natural").equals("water")) {
+                wayType = "water";
+            }
+        } else if (tags.containsKey("waterway")) {
+            wayType = "waterway";
+        } else if (tags.containsKey("leisure")) {
+            String leisureValue = tags.get("leisure");
+            if (leisureValue != null && !leisureValue.equals("nature_reserve")) {
+                wayType = "grass";
+            }
+        }
+        return wayType;
+    }
+
+    private static boolean isWater(String k, String v) {
+        return k.equals("natural") && v.equals("water");
+    }
+
+    private static boolean isIsland(String k, String v) {
+        return k.equals("place") && (v.equals("island") || v.equals("islet"));
+    }
+
+    static String getWayType(String k, String v) {
+        if (isRoad(k, v)) {
+            return "road";
+        } else if (isWater(k, v)) {
+            return "water";
+        } else if (k.equals("building")) {
+            return "building";
+        } else if (v.equals("coastline")) {
+            return "coastline";
+        } else if (k.equals("leisure") || k.equals("landuse")) {
+            return "grass";
+        } else if (isIsland(k, v) || k.equals("area") || v.equals("grass")) {
+            return "ground";
+        } else if (k.equals("type") && v.equals("multipolygon")) {
+            return "multipolygon";
+        }
+        return "Unknown way type: " + v;
+    }
+
+    private static boolean isRoad(String k, String v) {
+        return (k.equals("highway") || k.equals("cycleway") || k.equals("footway") || k.equals("busway")) ||
+                (v.equals("primary") || v.equals("secondary") || v.equals("tertiary") || v.equals("residential") ||
+                        v.equals("motor_vehicle") || v.equals("unclassified") || v.equals("path") || v.equals("track")) || k.equals("route");
+    }
+}
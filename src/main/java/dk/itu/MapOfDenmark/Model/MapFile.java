@@ -0,0 +1,522 @@
+package dk.itu.MapOfDenmark.Model;
+
+import dk.itu.MapOfDenmark.Model.Graph.ContractionHierarchy;
+import dk.itu.MapOfDenmark.Model.Graph.Landmarks;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.Profile;
+import dk.itu.MapOfDenmark.Model.Graph.Vertex;
+import dk.itu.MapOfDenmark.Model.Trees.QuadTree.QuadTree;
+import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
+import dk.itu.MapOfDenmark.Model.objects.*;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Element;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Road;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Reads and writes preprocessed maps in a binary format that is read through memory mapping.
+ * <p>
+ * A map file starts with a header holding a magic number, the format version, the bounds of the map
+ * and a table with the offset and length of every section. Each section stores its data in primitive columns,
+ * so it is read with a few bulk copies from a mapped buffer instead of reflective deserialization.
+ * <ul>
+ *     <li>{@link #LAYERS}: The ways of every drawn QuadTree, as type codes, coordinate offsets and one coordinate column.</li>
+ *     <li>{@link #VERTICES}: The coordinates of the vertices of the graph, by position.</li>
+ *     <li>{@link #GRAPH}: The edges of the routing graph, see {@link Graph#write(Writer)}.</li>
+ *     <li>{@link #ADDRESSES}: The addresses of the trie and their coordinates.</li>
+ *     <li>{@link #DRIVE_HIERARCHY}, {@link #WALK_HIERARCHY} and {@link #BIKE_HIERARCHY}: The contraction hierarchies
+ *     of the graph, if it was contracted, see {@link ContractionHierarchy#write(Writer)}.</li>
+ *     <li>{@link #DRIVE_LANDMARKS}, {@link #WALK_LANDMARKS} and {@link #BIKE_LANDMARKS}: The landmarks of the graph,
+ *     if any were chosen, see {@link Landmarks#write(Writer)}.</li>
+ * </ul>
+ * All numbers are little-endian. Readers skip sections they do not know.
+ * <p>
+ * Sections are mapped and read independently. Only the layers are read before the map is shown,
+ * the routing graph, the vertex QuadTree and the trie are loaded in the background and waited for on first use.
+ */
+public class MapFile {
+    /** The extension of map files. */
+    public static final String EXTENSION = ".bin";
+
+    /** Identifies a map file, "DKMP" in ASCII. */
+    private static final int MAGIC = 0x444B4D50;
+
+    /** The version of the format. Files of any other version are rejected and must be parsed again. */
+    private static final int VERSION = 9;
+
+    /** The section holding the QuadTree layers. */
+    public static final int LAYERS = 1;
+
+    /** The section holding the edges of the routing graph. */
+    public static final int GRAPH = 2;
+
+    /** The section holding the address trie. */
+    public static final int ADDRESSES = 3;
+
+    /** The section holding the vertex coordinates. */
+    public static final int VERTICES = 4;
+
+    /** The section holding the contraction hierarchy for driving. */
+    public static final int DRIVE_HIERARCHY = 5;
+
+    /** The section holding the contraction hierarchy for walking. */
+    public static final int WALK_HIERARCHY = 6;
+
+    /** The section holding the landmarks for driving. */
+    public static final int DRIVE_LANDMARKS = 7;
+
+    /** The section holding the landmarks for walking. */
+    public static final int WALK_LANDMARKS = 8;
+
+    /** The section holding the contraction hierarchy for cycling. */
+    public static final int BIKE_HIERARCHY = 9;
+
+    /** The section holding the landmarks for cycling. */
+    public static final int BIKE_LANDMARKS = 10;
+
+    /** The hierarchy and landmark sections of each profile, by ordinal. */
+    private static final int[] HIERARCHY_SECTIONS = new int[Profile.COUNT];
+    private static final int[] LANDMARK_SECTIONS = new int[Profile.COUNT];
+
+    static {
+        HIERARCHY_SECTIONS[Profile.CAR.ordinal()] = DRIVE_HIERARCHY;
+        HIERARCHY_SECTIONS[Profile.WALK.ordinal()] = WALK_HIERARCHY;
+        HIERARCHY_SECTIONS[Profile.BIKE.ordinal()] = BIKE_HIERARCHY;
+        LANDMARK_SECTIONS[Profile.CAR.ordinal()] = DRIVE_LANDMARKS;
+        LANDMARK_SECTIONS[Profile.WALK.ordinal()] = WALK_LANDMARKS;
+        LANDMARK_SECTIONS[Profile.BIKE.ordinal()] = BIKE_LANDMARKS;
+    }
+
+    /** Loads the sections that are not needed to draw the map. */
+    private static final Executor LOADER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "map-file-loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /** The way classes that can be stored, indexed by their type code. */
+    private static final List<Class<? extends Way>> TYPES = List.of(
+            Building.class, Coast.class, Water.class, Grass.class, WaterWay.class, Island.class, OtherWay.class,
+            MotorWay.class, TrunkRoad.class, PrimaryRoad.class, SecondaryRoad.class, TertiaryRoad.class,
+            WalkWay.class, OtherRoad.class, Vertex.class, Path.class, PointOfInterest.class, Isochrone.class
+    );
+
+    /** Creates the ways of each type code. */
+    private static final List<Function<float[], Way>> FACTORIES = List.of(
+            Building::new, Coast::new, Water::new, Grass::new, WaterWay::new, Island::new, OtherWay::new,
+            MotorWay::new, TrunkRoad::new, PrimaryRoad::new, SecondaryRoad::new, TertiaryRoad::new,
+            WalkWay::new, OtherRoad::new, Vertex::new, Path::new, PointOfInterest::new, Isochrone::new
+    );
+
+    /** The classes used as keys in {@link Model#quadTreeMap}, apart from the vertices which have their own section. */
+    private static final List<Class<? extends Element>> LAYER_KEYS = List.of(
+            Building.class, Road.class, Water.class, Grass.class, Coast.class,
+            WaterWay.class, WalkWay.class, Path.class, PointOfInterest.class, Isochrone.class
+    );
+
+    private final double minlat, minlon, maxlat, maxlon;
+    private final Map<Integer, ByteBuffer> sections = new HashMap<>();
+
+    private MapFile(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(java.nio.file.Path.of(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < header.capacity()) {
+                throw new IOException(filename + " is not a map file");
+            }
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a map file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Map file version " + version + " is not supported, please load the OSM file again");
+            }
+            minlat = header.getDouble();
+            minlon = header.getDouble();
+            maxlat = header.getDouble();
+            maxlon = header.getDouble();
+            int sectionCount = header.getInt();
+
+            ByteBuffer table = ByteBuffer.allocate(sectionCount * 20).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, table, 44);
+            for (int i = 0; i < sectionCount; i++) {
+                int id = table.getInt();
+                long offset = table.getLong();
+                long length = table.getLong();
+                MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                sections.put(id, section.order(ByteOrder.LITTLE_ENDIAN));
+            }
+        }
+    }
+
+    /**
+     * Reads from a file until a buffer is full, since a single read may return fewer bytes, and flips the buffer.
+     *
+     * @param channel  The file.
+     * @param buffer   The buffer to fill.
+     * @param position The position in the file to read from.
+     * @throws EOFException If the file ends before the buffer is full.
+     * @throws IOException  If an I/O error occurs.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The map file ends at " + (position + buffer.position()) + " bytes, in its header");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Loads a map file. The layers are read before this returns, the other sections are read in the background.
+     *
+     * @param filename The name of the map file.
+     * @return The loaded map.
+     * @throws IOException If an I/O error occurs or the file is not a map file of the current version.
+     */
+    public static BinaryFileData read(String filename) throws IOException {
+        MapFile file = new MapFile(filename);
+        Model model = new Model(file.minlat, file.minlon, file.maxlat, file.maxlon);
+        ByteBuffer vertexSection = file.section(VERTICES);
+        ByteBuffer graphSection = file.section(GRAPH);
+        ByteBuffer addressSection = file.section(ADDRESSES);
+
+        var layers = file.readLayers();
+        var vertices = CompletableFuture.supplyAsync(() -> readVertices(vertexSection), LOADER);
+        var graph = vertices.thenApplyAsync(coords -> {
+            Graph g = Graph.read(coords, graphSection);
+            for (Profile profile : Profile.values()) {
+                ByteBuffer hierarchy = file.sections.get(HIERARCHY_SECTIONS[profile.ordinal()]);
+                if (hierarchy != null) {
+                    g.setHierarchy(profile, ContractionHierarchy.read(hierarchy.duplicate().order(ByteOrder.LITTLE_ENDIAN)));
+                }
+                ByteBuffer landmarks = file.sections.get(LANDMARK_SECTIONS[profile.ordinal()]);
+                if (landmarks != null) {
+                    g.setLandmarks(profile, Landmarks.read(landmarks.duplicate().order(ByteOrder.LITTLE_ENDIAN)));
+                }
+            }
+            g.getSegmentIndex();
+            return g;
+        }, LOADER);
+        var trie = CompletableFuture.supplyAsync(() -> readAddresses(addressSection), LOADER);
+        return new BinaryFileData(graph, layers, trie, model, model.bounds);
+    }
+
+    /**
+     * Saves the current map, which is the static state of {@link Model}, to a map file.
+     *
+     * @param filename The name of the file to save to.
+     * @param model    The model holding the bounds of the map.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(String filename, Model model) throws IOException {
+        try (FileChannel channel = FileChannel.open(java.nio.file.Path.of(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<Integer> sectionIds = new ArrayList<>(List.of(LAYERS, VERTICES, GRAPH, ADDRESSES));
+            for (Profile profile : Profile.values()) {
+                if (Model.getGraph().getTagHierarchy(profile) != null) {
+                    sectionIds.add(HIERARCHY_SECTIONS[profile.ordinal()]);
+                }
+                if (Model.getGraph().getLandmarks(profile) != null) {
+                    sectionIds.add(LANDMARK_SECTIONS[profile.ordinal()]);
+                }
+            }
+            int[] ids = sectionIds.stream().mapToInt(Integer::intValue).toArray();
+            long[] offsets = new long[ids.length];
+            long[] lengths = new long[ids.length];
+
+            Writer out = new Writer(channel);
+            out.position(44 + ids.length * 20);
+            for (int i = 0; i < ids.length; i++) {
+                offsets[i] = out.position();
+                switch (ids[i]) {
+                    case LAYERS -> writeLayers(out);
+                    case VERTICES -> {
+                        float[] coords = Model.getGraph().getVertexCoords();
+                        out.putInt(coords.length / 2);
+                        out.putFloats(coords, 0, coords.length);
+                    }
+                    case GRAPH -> Model.getGraph().write(out);
+                    case ADDRESSES -> writeAddresses(out, Model.trie);
+                    case DRIVE_HIERARCHY -> Model.getGraph().getTagHierarchy(Profile.CAR).write(out);
+                    case WALK_HIERARCHY -> Model.getGraph().getTagHierarchy(Profile.WALK).write(out);
+                    case BIKE_HIERARCHY -> Model.getGraph().getTagHierarchy(Profile.BIKE).write(out);
+                    case DRIVE_LANDMARKS -> Model.getGraph().getLandmarks(Profile.CAR).write(out);
+                    case WALK_LANDMARKS -> Model.getGraph().getLandmarks(Profile.WALK).write(out);
+                    case BIKE_LANDMARKS -> Model.getGraph().getLandmarks(Profile.BIKE).write(out);
+                }
+                lengths[i] = out.position() - offsets[i];
+            }
+
+            out.position(0);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putDouble(model.minlat);
+            out.putDouble(model.minlon);
+            out.putDouble(model.maxlat);
+            out.putDouble(model.maxlon);
+            out.putInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                out.putInt(ids[i]);
+                out.putLong(offsets[i]);
+                out.putLong(lengths[i]);
+            }
+            out.flush();
+        }
+    }
+
+    private ByteBuffer section(int id) throws IOException {
+        ByteBuffer section = sections.get(id);
+        if (section == null) {
+            throw new IOException("The map file has no section " + id);
+        }
+        return section.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the ways of every QuadTree. Each tree is written in the order of {@link QuadTree#forEach},
+     * so inserting the ways again rebuilds the same trees.
+     */
+    private static void writeLayers(Writer out) throws IOException {
+        List<Way> ways = new ArrayList<>();
+        List<Class<? extends Element>> layers = new ArrayList<>(Model.quadTreeMap.keySet());
+        layers.remove(Vertex.class);
+        layers.sort(Comparator.comparingInt(LAYER_KEYS::indexOf));
+
+        out.putInt(layers.size());
+        for (Class<? extends Element> layer : layers) {
+            if (!LAYER_KEYS.contains(layer)) {
+                throw new IOException("Cannot store the layer " + layer.getSimpleName());
+            }
+            QuadTree tree = Model.quadTreeMap.get(layer);
+            int start = ways.size();
+            tree.forEach(ways::add);
+            out.putInt(LAYER_KEYS.indexOf(layer));
+            out.putInt(tree.getCapacity());
+            out.putInt(ways.size() - start);
+        }
+
+        out.putInt(ways.size());
+        int coordCount = 0;
+        for (Way way : ways) {
+            int type = TYPES.indexOf(way.getClass());
+            if (type < 0) {
+                throw new IOException("Cannot store ways of type " + way.getClass().getSimpleName());
+            }
+            out.putByte((byte) type);
+        }
+        for (Way way : ways) {
+            out.putInt(coordCount);
+            coordCount += way.getCoords().length;
+        }
+        out.putInt(coordCount);
+        for (Way way : ways) {
+            out.putFloats(way.getCoords(), 0, way.getCoords().length);
+        }
+    }
+
+    /**
+     * Reads the QuadTree layers.
+     *
+     * @return The QuadTrees by the class of the elements they hold.
+     * @throws IOException If the section is missing.
+     */
+    Map<Class<? extends Element>, QuadTree> readLayers() throws IOException {
+        ByteBuffer in = section(LAYERS);
+        SerializableRectangle rect = new SerializableRectangle(minlat, minlon, maxlat, maxlon);
+
+        int layerCount = in.getInt();
+        List<Class<? extends Element>> keys = new ArrayList<>(layerCount);
+        QuadTree[] trees = new QuadTree[layerCount];
+        int[] counts = new int[layerCount];
+        for (int i = 0; i < layerCount; i++) {
+            keys.add(LAYER_KEYS.get(in.getInt()));
+            trees[i] = new QuadTree(rect, in.getInt());
+            counts[i] = in.getInt();
+        }
+
+        int wayCount = in.getInt();
+        byte[] types = new byte[wayCount];
+        in.get(types);
+        int[] offsets = new int[wayCount + 1];
+        IntBuffer ints = in.asIntBuffer();
+        ints.get(offsets);
+        in.position(in.position() + offsets.length * 4);
+        FloatBuffer coords = in.asFloatBuffer();
+
+        Map<Class<? extends Element>, QuadTree> quadTreeMap = new HashMap<>();
+        int way = 0;
+        for (int i = 0; i < layerCount; i++) {
+            for (int end = way + counts[i]; way < end; way++) {
+                float[] wayCoords = new float[offsets[way + 1] - offsets[way]];
+                coords.get(wayCoords);
+                trees[i].insert(FACTORIES.get(types[way]).apply(wayCoords));
+            }
+            quadTreeMap.put(keys.get(i), trees[i]);
+        }
+        return quadTreeMap;
+    }
+
+    /**
+     * Reads the vertex coordinates.
+     *
+     * @param in The vertex section.
+     * @return The latitude and longitude of every vertex by position.
+     */
+    private static float[] readVertices(ByteBuffer in) {
+        float[] coords = new float[in.getInt() * 2];
+        in.asFloatBuffer().get(coords);
+        return coords;
+    }
+
+    private static void writeAddresses(Writer out, CompressedTrie trie) throws IOException {
+        List<String> addresses = new ArrayList<>(trie.size());
+        List<float[]> coords = new ArrayList<>(trie.size());
+        trie.forEach((address, point) -> {
+            addresses.add(address);
+            coords.add(point);
+        });
+
+        out.putInt(addresses.size());
+        for (float[] point : coords) {
+            out.putFloat(point[0]);
+            out.putFloat(point[1]);
+        }
+        for (String address : addresses) {
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+        }
+    }
+
+    /**
+     * Reads the address trie.
+     *
+     * @param in The address section.
+     * @return The trie.
+     */
+    private static CompressedTrie readAddresses(ByteBuffer in) {
+        int count = in.getInt();
+        float[] coords = new float[count * 2];
+        in.asFloatBuffer().get(coords);
+        in.position(in.position() + coords.length * 4);
+
+        CompressedTrie trie = new CompressedTrie();
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < count; i++) {
+            int length = in.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[length];
+            }
+            in.get(bytes, 0, length);
+            trie.insert(new String(bytes, 0, length, StandardCharsets.UTF_8), new float[]{coords[i << 1], coords[(i << 1) + 1]});
+        }
+        return trie;
+    }
+
+    /**
+     * Writes little-endian primitives to a file channel through a buffer.
+     */
+    public static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void position(long position) throws IOException {
+            flush();
+            this.position = position;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        public void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        public void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        public void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        public void putFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        public void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        public void putBytes(byte[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), values.length - i);
+                buffer.put(values, i, n);
+                i += n;
+            }
+        }
+
+        public void putInts(int[] values, int offset, int length) throws IOException {
+            for (int i = offset, end = offset + length; i < end; ) {
+                ensure(4);
+                int n = Math.min(buffer.remaining() >> 2, end - i);
+                buffer.asIntBuffer().put(values, i, n);
+                buffer.position(buffer.position() + (n << 2));
+                i += n;
+            }
+        }
+
+        public void putFloats(float[] values, int offset, int length) throws IOException {
+            for (int i = offset, end = offset + length; i < end; ) {
+                ensure(4);
+                int n = Math.min(buffer.remaining() >> 2, end - i);
+                buffer.asFloatBuffer().put(values, i, n);
+                buffer.position(buffer.position() + (n << 2));
+                i += n;
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package dk.itu.MapOfDenmark.Model;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.ZipInputStream;
 
 import javax.xml.stream.*;
@@ -25,24 +26,55 @@ public class Model  implements ParsingElement, Serializable {
     /** A map of class types to QuadTrees for spatial indexing. */
     public static Map<Class<? extends Element>, QuadTree> quadTreeMap = new HashMap<>();
 
-    /** A map of key-value pairs parsed from OSM data. */
-    private Map<String, String> keyValue_map = new HashMap<>();
+    /**
+     * Whether to parse in two passes, keeping only the nodes referenced by ways that end up in the map.
+     * Enabled with {@code -Dmapofdenmark.twoPass=true}.
+     */
+    public static boolean twoPass = Boolean.getBoolean("mapofdenmark.twoPass");
 
-    /** Indicates if a road allows one-way traffic. */
-    private boolean oneway = false;
+    /**
+     * Whether to parse with {@link PipelinedMapBuilder}, spreading the work over all cores.
+     * Disabled with {@code -Dmapofdenmark.pipelined=false}.
+     */
+    public static boolean pipelined = !"false".equals(System.getProperty("mapofdenmark.pipelined"));
+
+    /**
+     * Whether to read plain .osm files with the memory-mapped {@link OsmTokenizer} instead of StAX.
+     * Enabled with {@code -Dmapofdenmark.tokenizer=mmap}.
+     */
+    public static boolean mappedTokenizer = "mmap".equals(System.getProperty("mapofdenmark.tokenizer"));
+
+    /**
+     * Whether to merge the chains of vertices that roads pass through into single edges before routing.
+     * Disabled with {@code -Dmapofdenmark.simplify=false}.
+     */
+    public static boolean simplify = !"false".equals(System.getProperty("mapofdenmark.simplify"));
+
+    /**
+     * Whether to build contraction hierarchies of the routing graph after parsing.
+     * Disabled with {@code -Dmapofdenmark.contract=false}.
+     */
+    public static boolean contract = !"false".equals(System.getProperty("mapofdenmark.contract"));
+
+    /**
+     * The number of landmarks chosen for A* after parsing when the routing graph is not contracted, 0 for none.
+     * Set with {@code -Dmapofdenmark.landmarks=16}.
+     */
+    public static int landmarks = Integer.getInteger("mapofdenmark.landmarks", 8);
 
     /** The bounding rectangle of the map. */
     public SerializableRectangle bounds;
 
-    /** Set of reference IDs. */
-    Set<Long> refIds;
-
     /** Trie data structure for efficient string search. */
     static CompressedTrie trie = new CompressedTrie();
 
     /** The graph representing the road network. */
     private static Graph graph = new Graph();
 
+    /* Sections of a map file that are still loading in the background, or null once they are in use */
+    private static volatile CompletableFuture<Graph> pendingGraph;
+    private static volatile CompletableFuture<CompressedTrie> pendingTrie;
+
     /** Minimum latitude of the map. */
     public double minlat;
 
@@ -67,26 +99,17 @@ public class Model  implements ParsingElement, Serializable {
     }
 
     /**
-     * Loads data from a file.
+     * Loads data from a file. Map files are read with {@link MapFile}, any other file is parsed as OSM data.
      *
      * @param filename The name of the file to load.
      * @return A ParsingElement object representing the loaded data.
      * @throws IOException              If an I/O error occurs.
-     * @throws ClassNotFoundException   If the class of a serialized object cannot be found.
      * @throws XMLStreamException       If an error occurs during XML parsing.
      * @throws FactoryConfigurationError If an error occurs during factory configuration.
      */
-    public static ParsingElement load(String filename) throws IOException, ClassNotFoundException, XMLStreamException, FactoryConfigurationError {
-        if (filename.endsWith(".obj")) {
-            try (var in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
-                return new BinaryFileData(
-                        (Graph) in.readObject(),
-                        (Map<Class<? extends Element>, QuadTree>) in.readObject(),
-                        (CompressedTrie) in.readObject(),
-                        (Model) in.readObject(),
-                        (SerializableRectangle) in.readObject()
-                );
-            }
+    public static ParsingElement load(String filename) throws IOException, XMLStreamException, FactoryConfigurationError {
+        if (filename.endsWith(MapFile.EXTENSION)) {
+            return MapFile.read(filename);
         }
         return new Model(filename);
     }
@@ -100,256 +123,112 @@ public class Model  implements ParsingElement, Serializable {
      * @throws IOException              If an I/O error occurs.
      */
     public Model(String filename) throws XMLStreamException, FactoryConfigurationError, IOException {
-        if (filename.endsWith(".osm.zip")) {
-            parseZIP(filename);
-        } else if (filename.endsWith(".osm")) {
+        if (filename.endsWith(".osm.zip") || filename.endsWith(".osm") || filename.endsWith(".osm.pbf")) {
             parseOSM(filename);
         }
-        save(filename + ".obj");
+        getGraph().getSegmentIndex();
+        save(filename + MapFile.EXTENSION);
     }
 
     /**
-     * Saves the Model object to a file.
+     * Constructs a Model object for a map that has already been parsed.
      *
-     * @param filename The name of the file to save to.
-     * @throws FileNotFoundException If the specified file is not found.
-     * @throws IOException           If an I/O error occurs.
+     * @param minlat Minimum latitude of the map.
+     * @param minlon Minimum longitude of the map.
+     * @param maxlat Maximum latitude of the map.
+     * @param maxlon Maximum longitude of the map.
      */
-    void save(String filename) throws FileNotFoundException, IOException {
-        try (var out = new ObjectOutputStream(
-                new BufferedOutputStream(
-                        new FileOutputStream(filename)))) {
-            out.writeObject(graph);
-            out.writeObject(quadTreeMap);
-            out.writeObject(trie);
-            out.writeObject(this);
-            out.writeObject(this.bounds);
-        }
-
+    Model(double minlat, double minlon, double maxlat, double maxlon) {
+        this.minlat = minlat;
+        this.minlon = minlon;
+        this.maxlat = maxlat;
+        this.maxlon = maxlon;
     }
 
     /**
-     * Parses OSM data from a ZIP file.
+     * Saves the map to a map file.
      *
-     * @param filename The name of the ZIP file containing OSM data.
-     * @throws IOException              If an I/O error occurs.
-     * @throws XMLStreamException       If an error occurs during XML parsing.
-     * @throws FactoryConfigurationError If an error occurs during factory configuration.
+     * @param filename The name of the file to save to.
+     * @throws IOException If an I/O error occurs.
      */
-    private void parseZIP(String filename) throws IOException, XMLStreamException, FactoryConfigurationError {
-        var input = new ZipInputStream(new FileInputStream(filename));
-        input.getNextEntry();
-        parseOSM(input);
+    void save(String filename) throws IOException {
+        MapFile.write(filename, this);
     }
 
     /**
-     * Parses OSM data from a file.
+     * Opens the OSM data of a file, unpacking it if it is a ZIP file.
      *
      * @param filename The name of the file containing OSM data.
-     * @throws FileNotFoundException If the specified file is not found.
-     * @throws XMLStreamException    If an error occurs during XML parsing.
-     * @throws FactoryConfigurationError If an error occurs during factory configuration.
+     * @return An input stream of the OSM XML.
+     * @throws IOException If an I/O error occurs.
      */
-    private void parseOSM(String filename) throws FileNotFoundException, XMLStreamException, FactoryConfigurationError {
-        parseOSM(new FileInputStream(filename));
+    private InputStream open(String filename) throws IOException {
+        if (filename.endsWith(".osm.zip")) {
+            var input = new ZipInputStream(new FileInputStream(filename));
+            input.getNextEntry();
+            return input;
+        }
+        return new FileInputStream(filename);
     }
 
     /**
-     * Parses OSM data from an input stream.
+     * Parses OSM data from a file.
+     * In two-pass mode the file is read twice: first to collect the nodes used by the ways that are kept,
+     * and then to build the map while skipping every other node.
+     * The routing graph is simplified and frozen once the file has been read, and then contracted unless {@link #contract} is disabled,
+     * in which case {@link #landmarks} are chosen for A* instead.
      *
-     * @param inputStream The input stream containing OSM data.
-     * @throws XMLStreamException    If an error occurs during XML parsing.
+     * @param filename The name of the file containing OSM data.
+     * @throws IOException        If an I/O error occurs.
+     * @throws XMLStreamException If an error occurs during XML parsing.
      */
-    private void parseOSM(InputStream inputStream) throws XMLStreamException {
-        XMLInputFactory factory = XMLInputFactory.newInstance();
-        XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
-
-        SortedArray id2node;
-        float lat = 0;
-        float lon = 0;
-        boolean street = false;
-        boolean housenumber = false;
-        boolean postcode = false;
-        boolean city = false;
-
-        id2node = new SortedArray();
-
-        var way = new ArrayList<float[]>();
-
-        Map<String, String> wayAttributes = new HashMap<>();
-        boolean driveable = false;
-        boolean walkable = false;
-
-        while (reader.hasNext()) {
-            int event = reader.next();
-            switch (event) {
-                case XMLStreamConstants.START_ELEMENT:
-                    String name = reader.getLocalName();
-
-                    switch (name) {
-                        case "bounds":
-                            minlat = Double.parseDouble(reader.getAttributeValue(null, "minlat"));
-                            maxlat = Double.parseDouble(reader.getAttributeValue(null, "maxlat"));
-                            minlon = Double.parseDouble(reader.getAttributeValue(null, "minlon"));
-                            maxlon = Double.parseDouble(reader.getAttributeValue(null, "maxlon"));
-                            buildTrees(new SerializableRectangle(minlat, minlon, maxlat, maxlon));
-
-                            break;
-                        case "node":
-                            street = false;
-                            housenumber = false;
-                            postcode = false;
-                            city = false;
-
-                            keyValue_map.clear();
-                            long id = Long.parseLong(reader.getAttributeValue(null, "id"));
-                            lat = Float.parseFloat(reader.getAttributeValue(null, "lat"));
-                            lon = Float.parseFloat(reader.getAttributeValue(null, "lon"));
-
-                            id2node.add(id, new float[]{lat, lon});
-
-
-                            break;
-                        case "way":
-                            driveable = false;
-                            walkable = false;
-                            oneway = false;
-                            keyValue_map.clear();
-                            wayAttributes.clear();
-                            way.clear();
-
-                            break;
-                        case "nd":
-                            long ref = Long.parseLong(reader.getAttributeValue(null, "ref"));
-
-                            way.add(id2node.binarySearchGet(ref));
-                            break;
-                        case "tag":
-                            String k = reader.getAttributeValue(null, "k");
-                            String v = reader.getAttributeValue(null, "v");
-                            keyValue_map.put(k, v);
-                            wayAttributes.put("type", getWayType(k, v));
-                            if (walkAble(k, v)) {
-                                walkable = true;
-                            }
-                            if (driveAble(k, v)) {
-                                driveable = true;
-                                if (k.equals("highway")) {
-                                    wayAttributes.put("type", "road");
-                                }
-                            }
-                            if (k.equals("oneway") && v.equals("yes")) {
-                                oneway = true;
-                            }
-
-                            switch (k) {
-                                case "addr:street" -> street = true;
-                                case "addr:housenumber" -> housenumber = true;
-                                case "addr:postcode" -> postcode = true;
-                                case "addr:city" -> city = true;
-                            }
-
-
-                            if (street && housenumber && postcode && city) {
-                                trie.insert(
-                                        keyValue_map.get("addr:street") + " " +
-                                                keyValue_map.get("addr:housenumber") + ", " +
-                                                keyValue_map.get("addr:postcode") + " " +
-                                                keyValue_map.get("addr:city"), new float[]{lat, lon}
-
-                                );
-                            }
-                            break;
-                    }
-                    break;
-                case XMLStreamConstants.END_ELEMENT:
-
-                    String endName = reader.getLocalName();
-                    if (endName.equals("way")) {
-                        float[] wayArr = new float[way.size() * 2];
-                        if (!way.isEmpty()) {
-                            for (int i = 0; i < way.size(); i++) {
-                                wayArr[i << 1] = way.get(i)[0];
-                                wayArr[(i << 1) + 1] = way.get(i)[1];
-                            }
-                        }
-
-
-                        String wayType = wayAttributes.get("type");
-
-                        if (keyValue_map.containsKey("landuse")) {
-                            if (keyValue_map.get("landuse").equals("forest")) {
-                                wayType = "grass";
-                            } else if (keyValue_map.get("landuse").equals("farmland") || keyValue_map.get("landuse").equals("farmyard") || keyValue_map.get("landuse").equals("orchard") || keyValue_map.get("landuse").equals("vineyard") || keyValue_map.get("landuse").equals("greenhouse_horticulture") || keyValue_map.get("landuse").equals("plant_nursery") || keyValue_map.get("landuse").equals("allotments") || keyValue_map.get("landuse").equals("vineyard") || keyValue_map.get("landuse").equals("farm")) {
-                                wayType = "grass";
-                            } else if (keyValue_map.get("landuse").equals("meadow")) {
-                                wayType = "grass";
-                            }
-                        }
-
-
-                        if (keyValue_map.containsKey("natural")) {
-                            if (keyValue_map.get("natural").equals("coastline")) {
-                                //layerManagement.add(new Coast(idWay, nodeIds), way);
-                                wayType = "coast";
-                            } else if (keyValue_map.get("natural").equals("water")) {
-                                wayType = "water";
-                            }
-                        } else if (keyValue_map.containsKey("waterway")) {
-                            wayType = "waterway";
-                        } else if (keyValue_map.containsKey("leisure")) {
-                            String leisureValue = keyValue_map.get("leisure");
-                            if (leisureValue != null && !leisureValue.equals("nature_reserve")) {
-                                wayType = "grass";
-                            }
-                        }
-
-
-                        if (keyValue_map.containsKey("highway")) {
-                            Road road = switch (keyValue_map.get("highway")) {
-                                case "motorway" -> new MotorWay(wayArr);
-                                case "trunk" -> new TrunkRoad(wayArr);
-                                case "primary" -> new PrimaryRoad(wayArr);
-                                case "secondary" -> new SecondaryRoad(wayArr);
-                                case "tertiary" -> new TertiaryRoad(wayArr);
-                                case "footway", "path", "steps" -> new WalkWay(wayArr);
-                                default -> new OtherRoad(wayArr);
-                            };
-
-                            for (float[] p : way) {
-                                graph.addVertex(p);
-                            }
-
-                            road.addEdges(way, oneway, driveable, walkable);
-
-                            graph.addEdge(road);
-
-                            add(road);
-                        }
-
-
-                        if (wayType == null) {
-                            continue;
-                        }
-
-                        switch (wayType) {
-                            case "coast" -> add(new Coast(wayArr));
-                            case "water" -> add(new Water(wayArr));
-                            case "building" -> add(new Building(wayArr));
-                            case "grass" -> add(new Grass(wayArr));
-                            case "ground" -> add(new Island(wayArr));
-                            case "waterway" -> add(new WaterWay(wayArr));
-                        }
-                    }
-                    break;
-            }
+    private void parseOSM(String filename) throws IOException, XMLStreamException {
+        IdSet referencedNodes = null;
+        if (twoPass) {
+            var collector = new ReferencedNodeCollector();
+            read(filename, collector);
+            referencedNodes = collector.getReferencedNodes();
         }
 
-        id2node = null;
-        refIds = null;
+        OsmHandler builder = pipelined
+                ? new PipelinedMapBuilder(this, referencedNodes)
+                : new MapBuilder(this, referencedNodes);
+        read(filename, builder);
+        if (simplify) {
+            getGraph().simplify();
+        }
+        getGraph().freeze();
+        if (contract) {
+            getGraph().contract();
+        } else if (landmarks > 0) {
+            getGraph().selectLandmarks(landmarks);
+        }
         System.gc();
     }
 
+    /**
+     * Reads an OSM file with the selected tokenizer and passes its elements to a handler.
+     * PBF files are always read with the {@link PbfReader}.
+     *
+     * @param filename The name of the file containing OSM data.
+     * @param handler  The handler receiving the elements.
+     * @throws IOException        If an I/O error occurs.
+     * @throws XMLStreamException If an error occurs during XML parsing.
+     */
+    private void read(String filename, OsmHandler handler) throws IOException, XMLStreamException {
+        if (filename.endsWith(".osm.pbf")) {
+            PbfReader.read(java.nio.file.Path.of(filename), handler);
+            return;
+        }
+        if (mappedTokenizer && filename.endsWith(".osm")) {
+            OsmTokenizer.read(java.nio.file.Path.of(filename), handler);
+            return;
+        }
+        try (var input = open(filename)) {
+            OsmXmlReader.read(input, handler);
+        }
+    }
+
     /**
      * Adds an element to the QuadTree for spatial indexing.
      *
@@ -362,58 +241,16 @@ public class Model  implements ParsingElement, Serializable {
     }
 
     /**
-     * Only returns roads where cars can drive on
+     * Gets the graph, waiting for it if it is still being loaded from a map file.
      *
-     * @param k
-     * @param v
-     * @return true, if can drive.
+     * @return The graph representing the road network.
      */
-    private static boolean isWater (String k, String v){
-        return k.equals("natural") && v.equals("water");
-    }
-
-    private static boolean isIsland (String k, String v){
-        return k.equals("place") && (v.equals("island") || v.equals("islet"));
-    }
-
-    private static String getWayType (String k, String v){
-        if (isRoad(k, v)) {
-            return "road";
-        } else if (isWater(k, v)) {
-            return "water";
-        } else if (k.equals("building")) {
-            return "building";
-        } else if (v.equals("coastline")) {
-            return "coastline";
-        } else if (k.equals("leisure") || k.equals("landuse")) {
-            return "grass";
-        } else if (isIsland(k, v) || k.equals("area") || v.equals("grass")) {
-            return "ground";
-        } else if (k.equals("type") && v.equals("multipolygon")) {
-            return "multipolygon";
-        }
-        return "Unknown way type: " + v;
-    }
-
-    private static boolean driveAble (String k, String v){
-        return k.equals("highway") && (v.equals("motorway") || v.equals("trunk")
-                || v.equals("primary") || v.equals("secondary") || v.equals("tertiary")
-                || v.equals("road") || v.equals("residential") || v.equals("motor_vehicle")
-                || v.equals("unclassified") || v.equals("track") || v.equals("service"));
-    }
-
-    private static boolean walkAble (String k, String v){
-        return (!v.equals("motorway"));
-    }
-
-
-    private static boolean isRoad (String k, String v){
-        return (k.equals("highway") || k.equals("cycleway") || k.equals("footway") || k.equals("busway")) ||
-                (v.equals("primary") || v.equals("secondary") || v.equals("tertiary") || v.equals("residential") ||
-                        v.equals("motor_vehicle") || v.equals("unclassified") || v.equals("path") || v.equals("track")) || k.equals("route");
-    }
-
     public static Graph getGraph() {
+        CompletableFuture<Graph> pending = pendingGraph;
+        if (pending != null) {
+            graph = pending.join();
+            pendingGraph = null;
+        }
         if(graph == null) {
             Model.graph = new Graph();
         }
@@ -421,10 +258,32 @@ public class Model  implements ParsingElement, Serializable {
     }
 
     /**
-     * Resets the model by creating a new graph, clearing the QuadTree map, and clearing the trie.
+     * Gets the QuadTree of the graph's vertices, which are drawn in graph mode.
+     * Points are snapped to the roads by the {@link dk.itu.MapOfDenmark.Model.Graph.SegmentIndex} instead,
+     * so the tree is only built the first time it is drawn.
+     *
+     * @return The vertex QuadTree.
+     */
+    public static synchronized QuadTree getVertexIndex() {
+        QuadTree index = quadTreeMap.get(Vertex.class);
+        if (index == null) {
+            index = new QuadTree(quadTreeMap.get(Road.class).getBoundary(), 40);
+            float[] coords = getGraph().getVertexCoords();
+            for (int i = 0; i < coords.length; i += 2) {
+                index.insert(new Vertex(new float[]{coords[i], coords[i + 1]}));
+            }
+            quadTreeMap.put(Vertex.class, index);
+        }
+        return index;
+    }
+
+    /**
+     * Resets the model by creating a new graph, which has an empty route cache, clearing the QuadTree map, and clearing the trie.
      * This method also performs garbage collection to free up memory.
      */
     public void hardReset () {
+        pendingGraph = null;
+        pendingTrie = null;
         graph = new Graph();
         quadTreeMap = new HashMap<>();
         getTrie().clear();
@@ -433,11 +292,16 @@ public class Model  implements ParsingElement, Serializable {
     }
 
     /**
-     * Retrieves the compressed trie used in the model.
+     * Retrieves the compressed trie used in the model, waiting for it if it is still being loaded from a map file.
      *
      * @return The compressed trie.
      */
     public CompressedTrie getTrie() {
+        CompletableFuture<CompressedTrie> pending = pendingTrie;
+        if (pending != null) {
+            trie = pending.join();
+            pendingTrie = null;
+        }
         return trie;
     }
 
@@ -462,9 +326,6 @@ public class Model  implements ParsingElement, Serializable {
         // Coast QuadTree
         quadTreeMap.put(Coast.class, new QuadTree(rect, 55));
 
-        // Vertex QuadTree
-        quadTreeMap.put(Vertex.class, new QuadTree(rect, 40));
-
         // Edge QuadTree
         quadTreeMap.put(WaterWay.class, new QuadTree(rect, 100));
 
@@ -473,6 +334,9 @@ public class Model  implements ParsingElement, Serializable {
         quadTreeMap.put(Path.class, new QuadTree(rect, 20));
 
         quadTreeMap.put(PointOfInterest.class, new QuadTree(rect, 20));
+
+        // Isochrone QuadTree
+        quadTreeMap.put(Isochrone.class, new QuadTree(rect, 20));
     }
 
     /**
@@ -490,6 +354,7 @@ public class Model  implements ParsingElement, Serializable {
         List<Way> coasts = quadTreeMap.get(Coast.class).query(rect, new ArrayList<>());
         List<Way> paths = quadTreeMap.get(Path.class).query(rect, new ArrayList<>());
         List<Way> pointsOfInterest = quadTreeMap.get(PointOfInterest.class).query(rect, new ArrayList<>());
+        List<Way> isochrones = quadTreeMap.get(Isochrone.class).query(rect, new ArrayList<>());
 
         for (Way way : grasses) {
             way.draw(gc);
@@ -515,6 +380,9 @@ public class Model  implements ParsingElement, Serializable {
             way.draw(gc);
             }
         }
+        for (Way way : isochrones) {
+            way.draw(gc);
+        }
         if (pointsOfInterest != null) {
             for (Way way : pointsOfInterest) {
                 way.draw(gc);
@@ -536,8 +404,9 @@ public class Model  implements ParsingElement, Serializable {
 
         List<Way> paths = quadTreeMap.get(Path.class).query(rect, new ArrayList<>());
         List<Way> edges = quadTreeMap.get(Road.class).query(rect, new ArrayList<>());
-        List<Way> vertices = quadTreeMap.get(Vertex.class).query(rect, new ArrayList<>());
+        List<Way> vertices = getVertexIndex().query(rect, new ArrayList<>());
         List<Way> pointsOfInterest = quadTreeMap.get(PointOfInterest.class).query(rect, new ArrayList<>());
+        List<Way> isochrones = quadTreeMap.get(Isochrone.class).query(rect, new ArrayList<>());
 
         for (Way way : edges) {
             way.draw(gc);
@@ -545,6 +414,9 @@ public class Model  implements ParsingElement, Serializable {
         for (Way way : vertices) {
             way.draw(gc);
         }
+        for (Way way : isochrones) {
+            way.draw(gc);
+        }
         for (Way way : paths) {
             way.draw(gc);
         }
@@ -567,13 +439,33 @@ public class Model  implements ParsingElement, Serializable {
     }
 
     public void setGraph(Graph graph) {
+        pendingGraph = null;
         Model.graph = graph;
     }
 
+    /**
+     * Sets a graph that is still being loaded. {@link #getGraph()} waits for it on first use.
+     *
+     * @param graph The graph being loaded.
+     */
+    public void setGraph(CompletableFuture<Graph> graph) {
+        pendingGraph = graph;
+    }
+
     public void setTrie(CompressedTrie trie) {
+        pendingTrie = null;
         Model.trie = trie;
     }
 
+    /**
+     * Sets a trie that is still being loaded. {@link #getTrie()} waits for it on first use.
+     *
+     * @param trie The trie being loaded.
+     */
+    public void setTrie(CompletableFuture<CompressedTrie> trie) {
+        pendingTrie = trie;
+    }
+
     public void setQuadTreeMap(Map<Class<? extends Element>, QuadTree> quadTreeMap) {
         Model.quadTreeMap = quadTreeMap;
     }
@@ -0,0 +1,188 @@
+package dk.itu.MapOfDenmark.Model;
+
+import java.util.Arrays;
+
+/**
+ * The NodeIndex class maps OSM node IDs to their coordinates while a file is being parsed.
+ * IDs are kept in a primitive long column and coordinates in a packed float column (lat, lon interleaved),
+ * so a node costs 16 bytes instead of a boxed Long, a Pair and a float array.
+ * OSM files list their nodes in ascending ID order, in which case the columns are already sorted and
+ * lookups never have to sort.
+ */
+public class NodeIndex {
+    private long[] ids;
+    private float[] coords;
+    private int size;
+    private boolean sorted = true;
+
+    /**
+     * Constructs an empty node index with a default initial capacity.
+     */
+    public NodeIndex() {
+        this(1 << 16);
+    }
+
+    /**
+     * Constructs an empty node index.
+     *
+     * @param capacity The number of nodes to reserve room for.
+     */
+    public NodeIndex(int capacity) {
+        capacity = Math.max(capacity, 16);
+        ids = new long[capacity];
+        coords = new float[capacity << 1];
+    }
+
+    /**
+     * Adds a node to the index.
+     *
+     * @param id  The OSM ID of the node.
+     * @param lat The latitude of the node.
+     * @param lon The longitude of the node.
+     */
+    public void add(long id, float lat, float lon) {
+        if (size == ids.length) {
+            grow();
+        }
+        if (size > 0 && id <= ids[size - 1]) {
+            sorted = false;
+        }
+        ids[size] = id;
+        coords[size << 1] = lat;
+        coords[(size << 1) + 1] = lon;
+        size++;
+    }
+
+    /**
+     * Finds the position of a node in the index.
+     *
+     * @param id The OSM ID of the node.
+     * @return The position of the node, or -1 if it is not in the index.
+     */
+    public int indexOf(long id) {
+        if (!sorted) {
+            sort(0, size - 1);
+            sorted = true;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = ids[mid];
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for a node by its ID and returns its coordinates.
+     *
+     * @param id The OSM ID of the node.
+     * @return A new array holding the latitude and longitude of the node, or null if it is not in the index.
+     */
+    public float[] get(long id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return null;
+        }
+        return new float[]{coords[index << 1], coords[(index << 1) + 1]};
+    }
+
+    /**
+     * Retrieves the latitude of the node at a position.
+     *
+     * @param index The position returned by {@link #indexOf(long)}.
+     * @return The latitude of the node.
+     */
+    public float getLat(int index) {
+        return coords[index << 1];
+    }
+
+    /**
+     * Retrieves the longitude of the node at a position.
+     *
+     * @param index The position returned by {@link #indexOf(long)}.
+     * @return The longitude of the node.
+     */
+    public float getLon(int index) {
+        return coords[(index << 1) + 1];
+    }
+
+    /**
+     * Gets the number of nodes in the index.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Shrinks the columns to the number of nodes actually stored.
+     */
+    public void trimToSize() {
+        ids = Arrays.copyOf(ids, Math.max(size, 16));
+        coords = Arrays.copyOf(coords, Math.max(size, 16) << 1);
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        coords = Arrays.copyOf(coords, capacity << 1);
+    }
+
+    /**
+     * Sorts both columns by ID with a quicksort that recurses into the smaller half only.
+     */
+    private void sort(int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            if (ids[mid] < ids[low]) swap(mid, low);
+            if (ids[high] < ids[low]) swap(high, low);
+            if (ids[high] < ids[mid]) swap(high, mid);
+            long pivot = ids[mid];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (ids[i] < pivot) i++;
+                while (ids[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && ids[j] < ids[j - 1]; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float lat = coords[a << 1];
+        float lon = coords[(a << 1) + 1];
+        coords[a << 1] = coords[b << 1];
+        coords[(a << 1) + 1] = coords[(b << 1) + 1];
+        coords[b << 1] = lat;
+        coords[(b << 1) + 1] = lon;
+    }
+}
@@ -0,0 +1,59 @@
+package dk.itu.MapOfDenmark.Model;
+
+/**
+ * Receives the elements of an OSM file in document order.
+ * Readers such as {@link OsmXmlReader} call these methods, so the code that builds the map
+ * does not depend on how the file is tokenized.
+ */
+public interface OsmHandler {
+
+    /**
+     * Called for the bounds element of the file.
+     *
+     * @param minlat The minimum latitude.
+     * @param minlon The minimum longitude.
+     * @param maxlat The maximum latitude.
+     * @param maxlon The maximum longitude.
+     */
+    void bounds(double minlat, double minlon, double maxlat, double maxlon);
+
+    /**
+     * Called at the start of a node element. Tags of the node follow through {@link #tag(String, String)}.
+     *
+     * @param id  The OSM ID of the node.
+     * @param lat The latitude of the node.
+     * @param lon The longitude of the node.
+     */
+    void node(long id, float lat, float lon);
+
+    /**
+     * Called at the start of a way element.
+     */
+    void way();
+
+    /**
+     * Called for every node reference of the current way.
+     *
+     * @param ref The OSM ID of the referenced node.
+     */
+    void nd(long ref);
+
+    /**
+     * Called for every tag of the current node or way.
+     *
+     * @param k The key of the tag.
+     * @param v The value of the tag.
+     */
+    void tag(String k, String v);
+
+    /**
+     * Called at the end of a way element.
+     */
+    void endWay();
+
+    /**
+     * Called once when the whole file has been read.
+     */
+    default void end() {
+    }
+}
@@ -0,0 +1,350 @@
+package dk.itu.MapOfDenmark.Model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A hand-rolled tokenizer for OSM XML that works directly on a memory-mapped file.
+ * <p>
+ * It only recognises the elements the map is built from (bounds, node, way, nd and tag) and skips everything else.
+ * IDs and coordinates are parsed straight from the bytes, so reading nodes and way references allocates nothing.
+ * Tag keys and short tag values repeat constantly in OSM data and are returned from a small cache of Strings,
+ * so only long or unique values such as names allocate.
+ * <p>
+ * Files larger than 2 GB are mapped in windows that are moved forward between elements.
+ */
+public class OsmTokenizer {
+    /** The size of a mapped window. */
+    private static final long WINDOW = 1L << 30;
+
+    /** How close to the end of a window an element may start before the window is moved. */
+    private static final int MARGIN = 1 << 20;
+
+    private static final byte[] BOUNDS = "bounds".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NODE = "node".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WAY = "way".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ND = "nd".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TAG = "tag".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_WAY = "/way".getBytes(StandardCharsets.US_ASCII);
+
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer buffer;
+    private long base;
+    private int limit;
+    private int pos;
+
+    /* Attributes of the current element, as positions in the buffer */
+    private int nameStart, nameEnd, valueStart, valueEnd;
+
+    private final StringCache strings = new StringCache();
+    private byte[] scratch = new byte[256];
+
+    private OsmTokenizer(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        map(0);
+    }
+
+    /**
+     * Reads an OSM XML file and passes its elements to a handler.
+     *
+     * @param file    The OSM file.
+     * @param handler The handler receiving the elements.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void read(Path file, OsmHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new OsmTokenizer(channel).run(handler);
+        }
+        handler.end();
+    }
+
+    private void map(long position) throws IOException {
+        base = position;
+        long size = Math.min(WINDOW, fileSize - position);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        limit = (int) size;
+        pos = 0;
+    }
+
+    private void run(OsmHandler handler) throws IOException {
+        while (true) {
+            if (limit - pos < MARGIN && base + limit < fileSize) {
+                map(base + pos);
+            }
+            while (pos < limit && buffer.get(pos) != '<') {
+                pos++;
+            }
+            if (pos >= limit) {
+                return;
+            }
+            pos++;
+
+            if (matchName(NODE)) {
+                long id = 0;
+                float lat = 0;
+                float lon = 0;
+                while (nextAttribute()) {
+                    if (attributeIs("id")) {
+                        id = parseLong(valueStart, valueEnd);
+                    } else if (attributeIs("lat")) {
+                        lat = (float) parseDouble(valueStart, valueEnd);
+                    } else if (attributeIs("lon")) {
+                        lon = (float) parseDouble(valueStart, valueEnd);
+                    }
+                }
+                handler.node(id, lat, lon);
+            } else if (matchName(ND)) {
+                while (nextAttribute()) {
+                    if (attributeIs("ref")) {
+                        handler.nd(parseLong(valueStart, valueEnd));
+                    }
+                }
+            } else if (matchName(TAG)) {
+                String k = null;
+                String v = null;
+                while (nextAttribute()) {
+                    if (attributeIs("k")) {
+                        k = string(valueStart, valueEnd);
+                    } else if (attributeIs("v")) {
+                        v = string(valueStart, valueEnd);
+                    }
+                }
+                if (k != null && v != null) {
+                    handler.tag(k, v);
+                }
+            } else if (matchName(WAY)) {
+                skipElement();
+                handler.way();
+                if (buffer.get(pos - 2) == '/') {
+                    handler.endWay();
+                }
+            } else if (matchName(END_WAY)) {
+                skipElement();
+                handler.endWay();
+            } else if (matchName(BOUNDS)) {
+                double minlat = 0, minlon = 0, maxlat = 0, maxlon = 0;
+                while (nextAttribute()) {
+                    double value = parseDouble(valueStart, valueEnd);
+                    if (attributeIs("minlat")) minlat = value;
+                    else if (attributeIs("minlon")) minlon = value;
+                    else if (attributeIs("maxlat")) maxlat = value;
+                    else if (attributeIs("maxlon")) maxlon = value;
+                }
+                handler.bounds(minlat, minlon, maxlat, maxlon);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the element at the current position has the given name, and moves past the name if it does.
+     */
+    private boolean matchName(byte[] name) {
+        int end = pos + name.length;
+        if (end >= limit) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buffer.get(pos + i) != name[i]) {
+                return false;
+            }
+        }
+        byte next = buffer.get(end);
+        if (next != ' ' && next != '/' && next != '>' && next != '\t' && next != '\n' && next != '\r') {
+            return false;
+        }
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Moves to the next attribute of the current element.
+     *
+     * @return True if an attribute was found, false at the end of the start tag.
+     */
+    private boolean nextAttribute() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '>') {
+                pos++;
+                return false;
+            }
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/') {
+                pos++;
+                continue;
+            }
+            nameStart = pos;
+            while (pos < limit && buffer.get(pos) != '=') {
+                pos++;
+            }
+            nameEnd = pos;
+            while (pos < limit && buffer.get(pos) != '"' && buffer.get(pos) != '\'') {
+                pos++;
+            }
+            byte quote = buffer.get(pos++);
+            valueStart = pos;
+            while (pos < limit && buffer.get(pos) != quote) {
+                pos++;
+            }
+            valueEnd = pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipElement() {
+        while (pos < limit && buffer.get(pos) != '>') {
+            pos++;
+        }
+        pos++;
+    }
+
+    private boolean attributeIs(String name) {
+        if (nameEnd - nameStart != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (buffer.get(nameStart + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseLong(int start, int end) {
+        boolean negative = buffer.get(start) == '-';
+        if (negative) {
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (buffer.get(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a plain decimal number such as {@code -12.3456789}. OSM never writes exponents.
+     */
+    private double parseDouble(int start, int end) {
+        boolean negative = buffer.get(start) == '-';
+        if (negative) {
+            start++;
+        }
+        long mantissa = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.') {
+                decimals = 0;
+            } else {
+                mantissa = mantissa * 10 + (b - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            }
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes an attribute value, resolving XML entities.
+     */
+    private String string(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+        }
+        boolean escaped = false;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(start + i);
+            scratch[i] = b;
+            escaped |= b == '&';
+        }
+        if (escaped) {
+            return unescape(new String(scratch, 0, length, StandardCharsets.UTF_8));
+        }
+        return strings.get(scratch, length);
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int semicolon = c == '&' ? value.indexOf(';', i) : -1;
+            if (semicolon < 0) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            String entity = value.substring(i + 1, semicolon);
+            switch (entity) {
+                case "amp" -> sb.append('&');
+                case "lt" -> sb.append('<');
+                case "gt" -> sb.append('>');
+                case "quot" -> sb.append('"');
+                case "apos" -> sb.append('\'');
+                default -> {
+                    if (entity.startsWith("#x")) {
+                        sb.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                    } else if (entity.startsWith("#")) {
+                        sb.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                    } else {
+                        sb.append(value, i, semicolon + 1);
+                    }
+                }
+            }
+            i = semicolon + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A fixed-size, direct-mapped cache from byte sequences to Strings.
+     * A slot is simply overwritten on a collision, which keeps lookups branch-light and the memory bounded.
+     */
+    private static class StringCache {
+        private static final int SLOTS = 1 << 12;
+        private static final int MAX_LENGTH = 32;
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+
+        String get(byte[] bytes, int length) {
+            if (length > MAX_LENGTH) {
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+            byte[] key = keys[slot];
+            if (key != null && Arrays.equals(key, 0, key.length, bytes, 0, length)) {
+                return values[slot];
+            }
+            String value = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOf(bytes, length);
+            values[slot] = value;
+            return value;
+        }
+    }
+}
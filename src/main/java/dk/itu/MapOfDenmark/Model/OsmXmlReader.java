@@ -0,0 +1,54 @@
+package dk.itu.MapOfDenmark.Model;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Reads an OSM XML document with StAX and passes its elements to an {@link OsmHandler}.
+ */
+public class OsmXmlReader {
+
+    /**
+     * Reads OSM data from an input stream.
+     *
+     * @param inputStream The input stream containing OSM data.
+     * @param handler     The handler receiving the elements.
+     * @throws XMLStreamException If an error occurs during XML parsing.
+     */
+    public static void read(InputStream inputStream, OsmHandler handler) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    switch (reader.getLocalName()) {
+                        case "bounds" -> handler.bounds(
+                                Double.parseDouble(reader.getAttributeValue(null, "minlat")),
+                                Double.parseDouble(reader.getAttributeValue(null, "minlon")),
+                                Double.parseDouble(reader.getAttributeValue(null, "maxlat")),
+                                Double.parseDouble(reader.getAttributeValue(null, "maxlon")));
+                        case "node" -> handler.node(
+                                Long.parseLong(reader.getAttributeValue(null, "id")),
+                                Float.parseFloat(reader.getAttributeValue(null, "lat")),
+                                Float.parseFloat(reader.getAttributeValue(null, "lon")));
+                        case "way" -> handler.way();
+                        case "nd" -> handler.nd(Long.parseLong(reader.getAttributeValue(null, "ref")));
+                        case "tag" -> handler.tag(reader.getAttributeValue(null, "k"), reader.getAttributeValue(null, "v"));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (reader.getLocalName().equals("way")) {
+                        handler.endWay();
+                    }
+                    break;
+            }
+        }
+        reader.close();
+        handler.end();
+    }
+}
@@ -0,0 +1,561 @@
+package dk.itu.MapOfDenmark.Model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads OSM PBF files and passes their elements to an {@link OsmHandler}.
+ * <p>
+ * The file is a sequence of blobs. They are read one by one on the calling thread, inflated and decoded in parallel
+ * by a pool of workers, and then replayed to the handler in file order, so the handler sees the same sequence of
+ * elements as it would from the XML version of the file. Nodes, dense nodes and ways are decoded;
+ * relations are skipped like they are in the XML readers.
+ */
+public class PbfReader {
+    /** The largest blob header the format allows. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    /** The largest blob the format allows. */
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Reads an OSM PBF file.
+     *
+     * @param file    The PBF file.
+     * @param handler The handler receiving the elements.
+     * @throws IOException If an I/O error occurs or the file is not valid PBF.
+     */
+    public static void read(Path file, OsmHandler handler) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pbf-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<Block>> decoded = new ArrayBlockingQueue<>(threads * 2);
+        Replayer replayer = new Replayer(handler);
+
+        try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(file.toFile()), 1 << 16))) {
+            while (true) {
+                int headerSize;
+                try {
+                    headerSize = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+                    throw new IOException("Invalid PBF blob header size: " + headerSize);
+                }
+                byte[] header = input.readNBytes(headerSize);
+                String type = null;
+                int dataSize = 0;
+                ProtoReader headerReader = new ProtoReader(header, 0, header.length);
+                while (headerReader.next()) {
+                    switch (headerReader.field()) {
+                        case 1 -> type = headerReader.string();
+                        case 3 -> dataSize = (int) headerReader.varint();
+                        default -> headerReader.skip();
+                    }
+                }
+                if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+                    throw new IOException("Invalid PBF blob size: " + dataSize);
+                }
+                byte[] blob = input.readNBytes(dataSize);
+
+                if ("OSMHeader".equals(type)) {
+                    replayer.header(decodeHeader(inflate(blob)));
+                } else if ("OSMData".equals(type)) {
+                    // Submitted once, so a full queue only makes the reader wait for the oldest block
+                    Future<Block> future = workers.submit(() -> decodeBlock(inflate(blob)));
+                    while (!decoded.offer(future)) {
+                        replayer.replay(decoded.take());
+                    }
+                }
+            }
+            while (!decoded.isEmpty()) {
+                replayer.replay(decoded.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + file);
+        } finally {
+            workers.shutdownNow();
+        }
+        replayer.finish();
+        handler.end();
+    }
+
+    /**
+     * Unpacks the data of a blob.
+     */
+    private static byte[] inflate(byte[] blob) throws IOException {
+        ProtoReader reader = new ProtoReader(blob, 0, blob.length);
+        byte[] raw = null;
+        byte[] zlib = null;
+        int rawSize = 0;
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1 -> raw = reader.bytes();
+                case 2 -> rawSize = (int) reader.varint();
+                case 3 -> zlib = reader.bytes();
+                case 4, 5, 6, 7 -> throw new IOException("Unsupported PBF compression, only zlib is supported");
+                default -> reader.skip();
+            }
+        }
+        if (raw != null) {
+            return raw;
+        }
+        if (zlib == null) {
+            throw new IOException("Empty PBF blob");
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlib);
+            byte[] data = new byte[rawSize];
+            int length = 0;
+            while (length < rawSize && !inflater.finished()) {
+                int n = inflater.inflate(data, length, rawSize - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawSize) {
+                throw new IOException("Truncated PBF blob");
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt PBF blob", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decodes a header block and returns its bounding box as {minlat, minlon, maxlat, maxlon}, or null if it has none.
+     */
+    private static double[] decodeHeader(byte[] data) throws IOException {
+        ProtoReader reader = new ProtoReader(data, 0, data.length);
+        double[] bounds = null;
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1 -> {
+                    ProtoReader bbox = reader.message();
+                    double left = 0, right = 0, top = 0, bottom = 0;
+                    while (bbox.next()) {
+                        switch (bbox.field()) {
+                            case 1 -> left = bbox.sint64() * 1e-9;
+                            case 2 -> right = bbox.sint64() * 1e-9;
+                            case 3 -> top = bbox.sint64() * 1e-9;
+                            case 4 -> bottom = bbox.sint64() * 1e-9;
+                            default -> bbox.skip();
+                        }
+                    }
+                    bounds = new double[]{bottom, left, top, right};
+                }
+                case 4 -> {
+                    String feature = reader.string();
+                    if (!feature.equals("OsmSchema-V0.6") && !feature.equals("DenseNodes")) {
+                        throw new IOException("Unsupported PBF feature: " + feature);
+                    }
+                }
+                default -> reader.skip();
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Decodes a primitive block into flat arrays. Runs on a worker thread.
+     */
+    private static Block decodeBlock(byte[] data) throws IOException {
+        ProtoReader reader = new ProtoReader(data, 0, data.length);
+        Block block = new Block();
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        ProtoReader stringTable = null;
+        LongList groups = new LongList();
+
+        // The string table and offsets may come after the groups, so the groups are decoded afterwards
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1 -> stringTable = reader.message();
+                case 2 -> {
+                    ProtoReader group = reader.message();
+                    groups.add(((long) group.pos << 32) | group.limit);
+                }
+                case 17 -> granularity = reader.varint();
+                case 19 -> latOffset = reader.varint();
+                case 20 -> lonOffset = reader.varint();
+                default -> reader.skip();
+            }
+        }
+
+        String[] strings = new String[0];
+        if (stringTable != null) {
+            int count = 0;
+            while (stringTable.next()) {
+                if (count == strings.length) {
+                    strings = Arrays.copyOf(strings, Math.max(16, count * 2));
+                }
+                strings[count++] = stringTable.field() == 1 ? stringTable.string() : null;
+            }
+        }
+        block.strings = strings;
+
+        for (int g = 0; g < groups.size; g++) {
+            long span = groups.values[g];
+            ProtoReader group = new ProtoReader(data, (int) (span >>> 32), (int) span);
+            while (group.next()) {
+                switch (group.field()) {
+                    case 1 -> decodeNode(group.message(), block, granularity, latOffset, lonOffset);
+                    case 2 -> decodeDenseNodes(group.message(), block, granularity, latOffset, lonOffset);
+                    case 3 -> decodeWay(group.message(), block);
+                    default -> group.skip();
+                }
+            }
+        }
+        return block;
+    }
+
+    private static void decodeNode(ProtoReader node, Block block, long granularity, long latOffset, long lonOffset) throws IOException {
+        long id = 0, lat = 0, lon = 0;
+        IntList keys = new IntList();
+        IntList values = new IntList();
+        while (node.next()) {
+            switch (node.field()) {
+                case 1 -> id = node.sint64();
+                case 2 -> node.packedUInt32(keys);
+                case 3 -> node.packedUInt32(values);
+                case 8 -> lat = node.sint64();
+                case 9 -> lon = node.sint64();
+                default -> node.skip();
+            }
+        }
+        block.addNode(id, (float) (1e-9 * (latOffset + granularity * lat)), (float) (1e-9 * (lonOffset + granularity * lon)));
+        for (int i = 0; i < keys.size; i++) {
+            block.nodeTags.add(keys.values[i]);
+            block.nodeTags.add(values.values[i]);
+        }
+        block.nodeTagEnd.add(block.nodeTags.size);
+    }
+
+    private static void decodeDenseNodes(ProtoReader dense, Block block, long granularity, long latOffset, long lonOffset) throws IOException {
+        LongList ids = new LongList();
+        LongList lats = new LongList();
+        LongList lons = new LongList();
+        IntList keysVals = new IntList();
+        while (dense.next()) {
+            switch (dense.field()) {
+                case 1 -> dense.packedSInt64(ids);
+                case 8 -> dense.packedSInt64(lats);
+                case 9 -> dense.packedSInt64(lons);
+                case 10 -> dense.packedUInt32(keysVals);
+                default -> dense.skip();
+            }
+        }
+        long id = 0, lat = 0, lon = 0;
+        int kv = 0;
+        for (int i = 0; i < ids.size; i++) {
+            id += ids.values[i];
+            lat += lats.values[i];
+            lon += lons.values[i];
+            block.addNode(id, (float) (1e-9 * (latOffset + granularity * lat)), (float) (1e-9 * (lonOffset + granularity * lon)));
+            while (kv < keysVals.size && keysVals.values[kv] != 0) {
+                block.nodeTags.add(keysVals.values[kv]);
+                block.nodeTags.add(keysVals.values[kv + 1]);
+                kv += 2;
+            }
+            kv++;
+            block.nodeTagEnd.add(block.nodeTags.size);
+        }
+    }
+
+    private static void decodeWay(ProtoReader way, Block block) throws IOException {
+        IntList keys = new IntList();
+        IntList values = new IntList();
+        LongList refs = new LongList();
+        while (way.next()) {
+            switch (way.field()) {
+                case 2 -> way.packedUInt32(keys);
+                case 3 -> way.packedUInt32(values);
+                case 8 -> way.packedSInt64(refs);
+                default -> way.skip();
+            }
+        }
+        long ref = 0;
+        for (int i = 0; i < refs.size; i++) {
+            ref += refs.values[i];
+            block.wayRefs.add(ref);
+        }
+        block.wayRefEnd.add(block.wayRefs.size);
+        for (int i = 0; i < keys.size; i++) {
+            block.wayTags.add(keys.values[i]);
+            block.wayTags.add(values.values[i]);
+        }
+        block.wayTagEnd.add(block.wayTags.size);
+    }
+
+    /**
+     * Passes decoded blocks to the handler in order. Files without a bounding box in their header get bounds
+     * computed from their nodes, which PBF always stores before the ways.
+     */
+    private static class Replayer {
+        private final OsmHandler handler;
+        private boolean boundsSent;
+        private double minlat = Double.MAX_VALUE, minlon = Double.MAX_VALUE;
+        private double maxlat = -Double.MAX_VALUE, maxlon = -Double.MAX_VALUE;
+
+        Replayer(OsmHandler handler) {
+            this.handler = handler;
+        }
+
+        void header(double[] bounds) {
+            if (bounds != null && !boundsSent) {
+                handler.bounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+                boundsSent = true;
+            }
+        }
+
+        void replay(Future<Block> future) throws IOException, InterruptedException {
+            Block block;
+            try {
+                block = future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Failed to decode PBF block", e.getCause());
+            }
+            String[] strings = block.strings;
+
+            int tag = 0;
+            for (int i = 0; i < block.nodeIds.size; i++) {
+                float lat = block.nodeCoords.values[i << 1];
+                float lon = block.nodeCoords.values[(i << 1) + 1];
+                if (!boundsSent) {
+                    minlat = Math.min(minlat, lat);
+                    maxlat = Math.max(maxlat, lat);
+                    minlon = Math.min(minlon, lon);
+                    maxlon = Math.max(maxlon, lon);
+                }
+                handler.node(block.nodeIds.values[i], lat, lon);
+                for (int end = block.nodeTagEnd.values[i]; tag < end; tag += 2) {
+                    handler.tag(strings[block.nodeTags.values[tag]], strings[block.nodeTags.values[tag + 1]]);
+                }
+            }
+
+            if (block.wayRefEnd.size > 0) {
+                finish();
+            }
+            int ref = 0;
+            tag = 0;
+            for (int i = 0; i < block.wayRefEnd.size; i++) {
+                handler.way();
+                for (int end = block.wayRefEnd.values[i]; ref < end; ref++) {
+                    handler.nd(block.wayRefs.values[ref]);
+                }
+                for (int end = block.wayTagEnd.values[i]; tag < end; tag += 2) {
+                    handler.tag(strings[block.wayTags.values[tag]], strings[block.wayTags.values[tag + 1]]);
+                }
+                handler.endWay();
+            }
+        }
+
+        /**
+         * Sends the bounds computed from the nodes, if the header had none.
+         */
+        void finish() {
+            if (!boundsSent && minlat <= maxlat) {
+                handler.bounds(minlat, minlon, maxlat, maxlon);
+            }
+            boundsSent = true;
+        }
+    }
+
+    /**
+     * The elements of one primitive block, in flat primitive arrays.
+     */
+    private static class Block {
+        String[] strings;
+        final LongList nodeIds = new LongList();
+        final FloatList nodeCoords = new FloatList();
+        final IntList nodeTags = new IntList();
+        final IntList nodeTagEnd = new IntList();
+        final LongList wayRefs = new LongList();
+        final IntList wayRefEnd = new IntList();
+        final IntList wayTags = new IntList();
+        final IntList wayTagEnd = new IntList();
+
+        void addNode(long id, float lat, float lon) {
+            nodeIds.add(id);
+            nodeCoords.add(lat);
+            nodeCoords.add(lon);
+        }
+    }
+
+    /**
+     * A minimal reader for the protobuf wire format.
+     */
+    private static class ProtoReader {
+        private final byte[] data;
+        private int pos;
+        private final int limit;
+        private int field;
+        private int wireType;
+
+        ProtoReader(byte[] data, int pos, int limit) {
+            this.data = data;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        /**
+         * Moves to the next field.
+         *
+         * @return False at the end of the message.
+         */
+        boolean next() throws IOException {
+            if (pos >= limit) {
+                return false;
+            }
+            long key = varint();
+            field = (int) (key >>> 3);
+            wireType = (int) (key & 7);
+            return true;
+        }
+
+        int field() {
+            return field;
+        }
+
+        long varint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit) {
+                    throw new IOException("Truncated PBF varint");
+                }
+                byte b = data[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed PBF varint");
+        }
+
+        long sint64() throws IOException {
+            long value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int length() throws IOException {
+            int length = (int) varint();
+            if (length < 0 || pos + length > limit) {
+                throw new IOException("Truncated PBF field");
+            }
+            return length;
+        }
+
+        byte[] bytes() throws IOException {
+            int length = length();
+            byte[] bytes = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        String string() throws IOException {
+            int length = length();
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        ProtoReader message() throws IOException {
+            int length = length();
+            ProtoReader message = new ProtoReader(data, pos, pos + length);
+            pos += length;
+            return message;
+        }
+
+        void packedUInt32(IntList out) throws IOException {
+            if (wireType != 2) {
+                out.add((int) varint());
+                return;
+            }
+            int length = length();
+            int end = pos + length;
+            while (pos < end) {
+                out.add((int) varint());
+            }
+        }
+
+        void packedSInt64(LongList out) throws IOException {
+            if (wireType != 2) {
+                out.add(sint64());
+                return;
+            }
+            int length = length();
+            int end = pos + length;
+            while (pos < end) {
+                out.add(sint64());
+            }
+        }
+
+        void skip() throws IOException {
+            switch (wireType) {
+                case 0 -> varint();
+                case 1 -> pos += 8;
+                case 2 -> {
+                    int length = length();
+                    pos += length;
+                }
+                case 5 -> pos += 4;
+                default -> throw new IOException("Unsupported PBF wire type: " + wireType);
+            }
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class LongList {
+        long[] values = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class FloatList {
+        float[] values = new float[16];
+        int size;
+
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package dk.itu.MapOfDenmark.Model;
+
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.RoadTags;
+import dk.itu.MapOfDenmark.Model.Trees.QuadTree.QuadTree;
+import dk.itu.MapOfDenmark.Model.objects.Island;
+import dk.itu.MapOfDenmark.Model.objects.OtherWay;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Element;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Road;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Builds the same map as {@link MapBuilder}, but spreads the work over a pipeline of threads. Like it, each address
+ * is inserted once and the tags of relations, which follow the end of the last way, are ignored.
+ * <p>
+ * The thread running the reader only resolves node references and cuts the file into batches of raw elements.
+ * A pool of workers classifies the tags of each batch and creates the {@link Road} and {@link Way} objects.
+ * The classified batches are handed on in file order to one consumer thread for the graph, one for the trie
+ * and one for each QuadTree, so every structure is built in the same order as a sequential parse
+ * and the result is deterministic.
+ */
+public class PipelinedMapBuilder implements OsmHandler {
+    /** The number of elements handed to a worker at a time. */
+    private static final int BATCH_SIZE = 2048;
+
+    /** Marks the end of the stream in the consumer queues. */
+    private static final Batch END = new Batch(List.of());
+
+    private final Model model;
+    private final IdSet referencedNodes;
+    private NodeIndex id2node = new NodeIndex();
+
+    /* The element being read */
+    private final ArrayList<String> tags = new ArrayList<>();
+    private float[] coords = new float[256];
+    private int coordCount;
+    private boolean inNode;
+    private boolean inWay;
+    private float lat;
+    private float lon;
+
+    private List<RawElement> batch = new ArrayList<>(BATCH_SIZE);
+
+    private final ExecutorService workers;
+    private final BlockingQueue<Future<Batch>> classified;
+    private final List<Stage> stages = new ArrayList<>();
+    private final Thread dispatcher;
+    private volatile Throwable failure;
+
+    /**
+     * Constructs a pipelined builder.
+     *
+     * @param model           The model to build.
+     * @param referencedNodes The IDs of the nodes used by the ways that are kept, or null to keep every node.
+     */
+    public PipelinedMapBuilder(Model model, IdSet referencedNodes) {
+        this.model = model;
+        this.referencedNodes = referencedNodes;
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "osm-classifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        classified = new ArrayBlockingQueue<>(threads * 2);
+
+        stages.add(new Stage("osm-graph", this::buildGraph));
+        stages.add(new Stage("osm-trie", this::buildTrie));
+        dispatcher = new Thread(this::dispatch, "osm-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    @Override
+    public void bounds(double minlat, double minlon, double maxlat, double maxlon) {
+        model.minlat = minlat;
+        model.maxlat = maxlat;
+        model.minlon = minlon;
+        model.maxlon = maxlon;
+        model.buildTrees(new SerializableRectangle(minlat, minlon, maxlat, maxlon));
+        if (dispatcher.getState() == Thread.State.NEW) {
+            startConsumers();
+        }
+    }
+
+    @Override
+    public void node(long id, float lat, float lon) {
+        finishNode();
+        inNode = true;
+        this.lat = lat;
+        this.lon = lon;
+        if (referencedNodes == null || referencedNodes.contains(id)) {
+            id2node.add(id, lat, lon);
+        }
+    }
+
+    @Override
+    public void way() {
+        finishNode();
+        inNode = false;
+        inWay = true;
+        coordCount = 0;
+    }
+
+    @Override
+    public void nd(long ref) {
+        int index = id2node.indexOf(ref);
+        if (index < 0) {
+            return;
+        }
+        if (coordCount == coords.length) {
+            coords = Arrays.copyOf(coords, coords.length << 1);
+        }
+        coords[coordCount++] = id2node.getLat(index);
+        coords[coordCount++] = id2node.getLon(index);
+    }
+
+    @Override
+    public void tag(String k, String v) {
+        if (inNode || inWay) {
+            tags.add(k);
+            tags.add(v);
+        }
+    }
+
+    @Override
+    public void endWay() {
+        inWay = false;
+        emit(new RawElement(tags.toArray(new String[0]), Arrays.copyOf(coords, coordCount), lat, lon));
+        tags.clear();
+    }
+
+    @Override
+    public void end() {
+        finishNode();
+        if (dispatcher.getState() == Thread.State.NEW) {
+            startConsumers();
+        }
+        if (!batch.isEmpty()) {
+            submit();
+        }
+        try {
+            put(classified, CompletableFuture.completedFuture(END));
+            dispatcher.join();
+            for (Stage stage : stages) {
+                stage.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdownNow();
+            id2node = null;
+        }
+        if (failure != null) {
+            throw new RuntimeException("Failed to build the map", failure);
+        }
+    }
+
+    /**
+     * Hands the tags of the node read so far to the workers, if it has any.
+     */
+    private void finishNode() {
+        if (inNode && !tags.isEmpty()) {
+            emit(new RawElement(tags.toArray(new String[0]), null, lat, lon));
+        }
+        tags.clear();
+    }
+
+    /**
+     * Adds an element to the current batch. Elements are held back until the bounds are known,
+     * which PBF files without a bounding box only give after their nodes.
+     */
+    private void emit(RawElement element) {
+        batch.add(element);
+        if (batch.size() >= BATCH_SIZE && dispatcher.getState() != Thread.State.NEW) {
+            submit();
+        }
+    }
+
+    /**
+     * Starts a consumer for every QuadTree, once the trees have been built from the bounds of the file.
+     */
+    private void startConsumers() {
+        for (Class<? extends Element> type : Model.quadTreeMap.keySet()) {
+            QuadTree tree = Model.quadTreeMap.get(type);
+            stages.add(new Stage("osm-quadtree-" + type.getSimpleName(), b -> {
+                for (Way way : b.ways) {
+                    if (way.getClassType() == type) {
+                        tree.insert(way);
+                    }
+                }
+            }));
+        }
+        for (Stage stage : stages) {
+            stage.thread.start();
+        }
+        dispatcher.start();
+    }
+
+    private void submit() {
+        List<RawElement> elements = batch;
+        batch = new ArrayList<>(BATCH_SIZE);
+        put(classified, workers.submit(() -> classify(elements)));
+    }
+
+    /**
+     * Passes the classified batches on to every consumer, in the order they were read.
+     */
+    private void dispatch() {
+        while (true) {
+            Batch next;
+            try {
+                next = classified.take().get();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                // Keep draining so the reader never blocks, the failure is rethrown by end()
+                failure = e.getCause();
+                continue;
+            }
+            for (Stage stage : stages) {
+                put(stage.queue, next);
+            }
+            if (next == END) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Classifies the tags of a batch of elements and creates their map objects. Runs on a worker thread.
+     *
+     * @param elements The raw elements.
+     * @return The classified batch.
+     */
+    private static Batch classify(List<RawElement> elements) {
+        Batch result = new Batch(new ArrayList<>());
+        Map<String, String> keyValue_map = new HashMap<>();
+
+        for (RawElement element : elements) {
+            keyValue_map.clear();
+            String wayType = null;
+            String[] t = element.tags;
+            for (int i = 0; i < t.length; i += 2) {
+                String k = t[i];
+                String v = t[i + 1];
+                keyValue_map.put(k, v);
+                wayType = MapBuilder.getWayType(k, v);
+            }
+
+            if (keyValue_map.containsKey("addr:street") && keyValue_map.containsKey("addr:housenumber")
+                    && keyValue_map.containsKey("addr:postcode") && keyValue_map.containsKey("addr:city")) {
+                result.addresses.add(MapBuilder.address(keyValue_map));
+                result.addressCoords.add(new float[]{element.lat, element.lon});
+            }
+
+            if (element.coords == null) {
+                continue;
+            }
+
+            String highway = keyValue_map.get("highway");
+            if (highway != null) {
+                Road road = MapBuilder.createRoad(highway, element.coords);
+                ArrayList<float[]> nodes = new ArrayList<>(element.coords.length / 2);
+                for (int i = 0; i < element.coords.length; i += 2) {
+                    nodes.add(new float[]{element.coords[i], element.coords[i + 1]});
+                }
+                result.roads.add(new RoadEntry(road, nodes, RoadTags.of(keyValue_map)));
+                addWay(result, road);
+            }
+
+            Way area = MapBuilder.createArea(MapBuilder.resolveWayType(keyValue_map, wayType), element.coords);
+            if (area != null) {
+                addWay(result, area);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a way to a batch if {@link Model#add(Element)} would put it in a QuadTree.
+     */
+    private static void addWay(Batch batch, Way way) {
+        if (!(way instanceof OtherWay || way instanceof Island)) {
+            batch.ways.add(way);
+        }
+    }
+
+    private void buildGraph(Batch batch) {
+        Graph graph = Model.getGraph();
+        for (RoadEntry entry : batch.roads) {
+            for (float[] p : entry.nodes) {
+                graph.addVertex(p);
+            }
+            entry.road.addEdges(entry.nodes, entry.tags);
+            graph.addEdge(entry.road);
+        }
+    }
+
+    private void buildTrie(Batch batch) {
+        for (int i = 0; i < batch.addresses.size(); i++) {
+            Model.trie.insert(batch.addresses.get(i), batch.addressCoords.get(i));
+        }
+    }
+
+    private <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A node or way as read from the file, with its tags as alternating keys and values.
+     * Nodes have no coordinates of their own, only the position used for their address.
+     */
+    private record RawElement(String[] tags, float[] coords, float lat, float lon) {
+    }
+
+    /**
+     * A road together with what the graph needs to add its edges.
+     */
+    private record RoadEntry(Road road, ArrayList<float[]> nodes, RoadTags tags) {
+    }
+
+    /**
+     * The map objects created from one batch of raw elements.
+     */
+    private static class Batch {
+        final List<RoadEntry> roads;
+        final List<Way> ways = new ArrayList<>();
+        final List<String> addresses = new ArrayList<>();
+        final List<float[]> addressCoords = new ArrayList<>();
+
+        Batch(List<RoadEntry> roads) {
+            this.roads = roads;
+        }
+    }
+
+    /**
+     * A consumer thread that applies every batch to one structure, in order.
+     */
+    private class Stage {
+        final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(64);
+        final Thread thread;
+
+        Stage(String name, java.util.function.Consumer<Batch> consumer) {
+            thread = new Thread(() -> {
+                while (true) {
+                    Batch next;
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (next == END) {
+                        return;
+                    }
+                    if (failure != null) {
+                        continue;
+                    }
+                    try {
+                        consumer.accept(next);
+                    } catch (Throwable t) {
+                        failure = t;
+                    }
+                }
+            }, name);
+            thread.setDaemon(true);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dk.itu.MapOfDenmark.Model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * First pass of a two-pass parse. Collects the IDs of the nodes referenced by the ways
+ * that {@link MapBuilder} keeps, so the second pass can skip every other node.
+ */
+public class ReferencedNodeCollector implements OsmHandler {
+    /** The IDs of the referenced nodes. */
+    private final IdSet referencedNodes = new IdSet();
+
+    /** The node references of the current way. */
+    private long[] refs = new long[256];
+    private int refCount;
+
+    /** A map of key-value pairs of the current way. */
+    private final Map<String, String> keyValue_map = new HashMap<>();
+
+    /** The type of the current way, as given by its latest tag. */
+    private String wayType;
+
+    private boolean inWay = false;
+
+    @Override
+    public void bounds(double minlat, double minlon, double maxlat, double maxlon) {
+    }
+
+    @Override
+    public void node(long id, float lat, float lon) {
+        inWay = false;
+    }
+
+    @Override
+    public void way() {
+        inWay = true;
+        refCount = 0;
+        keyValue_map.clear();
+        wayType = null;
+    }
+
+    @Override
+    public void nd(long ref) {
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, refs.length << 1);
+        }
+        refs[refCount++] = ref;
+    }
+
+    @Override
+    public void tag(String k, String v) {
+        if (inWay) {
+            keyValue_map.put(k, v);
+            wayType = MapBuilder.getWayType(k, v);
+        }
+    }
+
+    @Override
+    public void endWay() {
+        inWay = false;
+        if (MapBuilder.isKept(keyValue_map, wayType)) {
+            for (int i = 0; i < refCount; i++) {
+                referencedNodes.add(refs[i]);
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        referencedNodes.trimToSize();
+    }
+
+    /**
+     * Retrieves the collected node IDs.
+     *
+     * @return The IDs of the nodes referenced by kept ways.
+     */
+    public IdSet getReferencedNodes() {
+        return referencedNodes;
+    }
+}
@@ -8,6 +8,8 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Represents a quadtree data structure for spatial indexing of geographical elements.
@@ -162,6 +164,23 @@ public class QuadTree implements Serializable {
         }
 
 
+        /**
+         * Visits the elements of this node before the elements of its children.
+         *
+         * @param action The action to perform on each element.
+         */
+        private void forEach(Consumer<Way> action) {
+            for (int i = 0; i < size; i++) {
+                action.accept((Way) elements[i]);
+            }
+            if (divided) {
+                NW.forEach(action);
+                NE.forEach(action);
+                SW.forEach(action);
+                SE.forEach(action);
+            }
+        }
+
         /**
          * Returns a string representation of the quadtree node.
          *
@@ -228,11 +247,24 @@ public class QuadTree implements Serializable {
      * @return       The nearest point found in the quadtree.
      */
     public float[] nearestPoint(double[] point) {
-        double[] d = nearestPoint(root, point, Double.MAX_VALUE, null);
+        double[] d = nearestPoint(root, point, Double.MAX_VALUE, null, p -> true);
         return new float[]{(float) d[0], (float) d[1]};
     }
 
-    private double[] nearestPoint(QTNode node, double[] targetPoint, double currentMinDistance, double[] closestPoint) {
+    /**
+     * Finds the nearest point in the quadtree to a specified target point among the points accepted by a filter.
+     *
+     * @param point   The target point.
+     * @param accepts The filter, given the coordinates of each candidate point.
+     * @return        The nearest accepted point, or null if no point is accepted.
+     */
+    public float[] nearestPoint(double[] point, Predicate<float[]> accepts) {
+        double[] d = nearestPoint(root, point, Double.MAX_VALUE, null, accepts);
+        return d == null ? null : new float[]{(float) d[0], (float) d[1]};
+    }
+
+    private double[] nearestPoint(QTNode node, double[] targetPoint, double currentMinDistance, double[] closestPoint,
+                                  Predicate<float[]> accepts) {
         if (node == null) {
             return closestPoint;
         }
@@ -255,7 +287,7 @@ public class QuadTree implements Serializable {
                             double[] p = new double[]{w.getCoords()[i], w.getCoords()[i + 1]};
 
                             double dist = calculateDistance(p, targetPoint);
-                            if (dist < minDistance) {
+                            if (dist < minDistance && accepts.test(new float[]{w.getCoords()[i], w.getCoords()[i + 1]})) {
                                 minDistance = dist;
                                 closestPoint = p;
                             }
@@ -268,7 +300,7 @@ public class QuadTree implements Serializable {
                 // Order the search by starting with the child closest to the target point
                 QTNode[] childNodes = orderChildNodes(node, targetPoint);
                 for (QTNode child : childNodes) {
-                    closestPoint = nearestPoint(child, targetPoint, currentMinDistance, closestPoint);
+                    closestPoint = nearestPoint(child, targetPoint, currentMinDistance, closestPoint, accepts);
                     if (closestPoint != null) {
                         currentMinDistance = calculateDistance(closestPoint, targetPoint);
                     }
@@ -328,6 +360,34 @@ public class QuadTree implements Serializable {
 
 
 
+    /**
+     * Visits every element in the quadtree. Parents are visited before their children,
+     * so inserting the elements in this order into an empty quadtree rebuilds the same tree.
+     *
+     * @param action The action to perform on each element.
+     */
+    public void forEach(Consumer<Way> action) {
+        root.forEach(action);
+    }
+
+    /**
+     * Gets the boundary of the quadtree.
+     *
+     * @return The boundary rectangle.
+     */
+    public SerializableRectangle getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Gets the maximum number of elements in each quadtree node.
+     *
+     * @return The node capacity.
+     */
+    public int getCapacity() {
+        return QT_NODE_CAPACITY;
+    }
+
     /**
      * Clears the quadtree, removing all elements.
      */
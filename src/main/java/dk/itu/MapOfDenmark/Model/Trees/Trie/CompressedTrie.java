@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * A compressed trie data structure for storing and searching strings.
@@ -113,6 +114,26 @@ public class CompressedTrie implements Serializable {
         }
     }
 
+    /**
+     * Visits every word in the trie together with its coordinates.
+     *
+     * @param action The action to perform on each word and its coordinates.
+     */
+    public void forEach(BiConsumer<String, float[]> action) {
+        forEach(root, new StringBuilder(), action);
+    }
+
+    private void forEach(Node current, StringBuilder key, BiConsumer<String, float[]> action) {
+        if (current.isEndOfWord) {
+            action.accept(key.toString(), current.coords);
+        }
+        for (var child : current.children.entrySet()) {
+            key.append(child.getKey());
+            forEach(child.getValue(), key, action);
+            key.setLength(key.length() - 1);
+        }
+    }
+
     /**
      * Clears the trie, removing all words.
      */
@@ -0,0 +1,35 @@
+package dk.itu.MapOfDenmark.Model.objects;
+
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Represents the area that can be reached from a point within a travel time.
+ */
+public class Isochrone extends Way {
+
+    /**
+     * Constructs an isochrone with the specified outline.
+     *
+     * @param coords The coordinates of the outline of the area.
+     */
+    public Isochrone(float[] coords) {
+        super(coords);
+    }
+
+    /**
+     * Draws the area see-through, so the roads inside it stay visible, and then its outline.
+     *
+     * @param gc The graphics context on which to draw the isochrone.
+     */
+    @Override
+    public void draw(GraphicsContext gc) {
+        if (coords.length < 2) {
+            return;
+        }
+        gc.setGlobalAlpha(0.3);
+        super.draw(gc);
+        gc.setGlobalAlpha(1);
+        drawLines(gc, 0.0001);
+    }
+}
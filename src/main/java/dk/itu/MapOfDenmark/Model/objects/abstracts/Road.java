@@ -1,7 +1,7 @@
 package dk.itu.MapOfDenmark.Model.objects.abstracts;
 
 import dk.itu.MapOfDenmark.Model.ColorManager;
-import dk.itu.MapOfDenmark.Model.Graph.Vertex;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
 import dk.itu.MapOfDenmark.Model.Model;
 import dk.itu.MapOfDenmark.View.MapUI;
 import dk.itu.MapOfDenmark.utils.HelperMethods;
@@ -9,9 +9,9 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import dk.itu.MapOfDenmark.Model.Graph.Edge;
+import dk.itu.MapOfDenmark.Model.Graph.RoadTags;
 
 /**
  * An abstract class representing a road, inherited from the Way class.
@@ -78,19 +78,37 @@ public abstract class Road extends Way {
      * @param walkable  Indicates if the road is walkable.
      */
     public void addEdges(ArrayList<float[]> nodes, boolean oneway, boolean driveable, boolean walkable){
-        Map<Vertex, Integer> node2Pos = Model.getGraph().getNode2Pos();
+        addEdges(nodes, (u, v, distance) -> new Edge(u, v, distance, this.maxSpeed, this, oneway, driveable, walkable));
+    }
+
+    /**
+     * Adds edges to the road based on the given nodes, with the access, direction and speeds its tags give.
+     *
+     * @param nodes The list of nodes defining the road.
+     * @param tags  What the tags of the road mean for routing.
+     */
+    public void addEdges(ArrayList<float[]> nodes, RoadTags tags){
+        addEdges(nodes, (u, v, distance) -> new Edge(u, v, distance, this, tags));
+    }
+
+    /**
+     * Makes an edge between two consecutive nodes of a road.
+     */
+    private interface EdgeFactory {
+        Edge create(int u, int v, float distance);
+    }
+
+    private void addEdges(ArrayList<float[]> nodes, EdgeFactory factory){
+        Graph graph = Model.getGraph();
         for(int i = 0; i < nodes.size() - 1; i++){
-            Vertex v1 = new Vertex(nodes.get(i));
-            Vertex v2 = new Vertex(nodes.get(i+1));
-            int u = node2Pos.get(v1);
-            int v = node2Pos.get(v2);
+            int u = graph.getPosition(nodes.get(i));
+            int v = graph.getPosition(nodes.get(i+1));
 
             float distance = (float) HelperMethods.distance(
                     nodes.get(i)[0], nodes.get(i)[1],
                     nodes.get(i+1)[0], nodes.get(i+1)[1]
             );
-            int speed = this.maxSpeed;
-            edges.add(new Edge(u , v, distance, speed,this, oneway, driveable, walkable));
+            edges.add(factory.create(u, v, distance));
         }
     }
 
@@ -0,0 +1,208 @@
+package dk.itu.MapOfDenmark.Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends requests with random points inside the map to a running {@link MapServer} from a number of clients at once,
+ * and reports the throughput and the median and 99th percentile latency:
+ * {@code java ... dk.itu.MapOfDenmark.Server.LoadGenerator http://localhost:8080 10000 64 route}
+ * <p>
+ * The endpoint is one of route, matrix, nearest, autocomplete and ways, or mix to take turns between them.
+ * A tenth of the requests are sent first and not measured, so the server has warmed up.
+ */
+public class LoadGenerator {
+    private static final String[] ENDPOINTS = {"route", "matrix", "nearest", "autocomplete", "ways"};
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzæøå";
+
+    private final String baseUrl;
+    private final String endpoint;
+    private final double minLat, minLon, maxLat, maxLon;
+
+    /**
+     * Constructs a load generator, reading the bounds of the map from the server.
+     *
+     * @param baseUrl  The address of the server, e.g. {@code http://localhost:8080}.
+     * @param endpoint The endpoint to send requests to, or mix.
+     * @throws IOException If the server does not answer.
+     */
+    public LoadGenerator(String baseUrl, String endpoint) throws IOException {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.endpoint = endpoint;
+        if (!endpoint.equals("mix") && !Arrays.asList(ENDPOINTS).contains(endpoint)) {
+            throw new IllegalArgumentException("endpoint must be mix or one of " + Arrays.toString(ENDPOINTS));
+        }
+        String bounds = get(this.baseUrl + "/bounds");
+        minLat = field(bounds, "minLat");
+        minLon = field(bounds, "minLon");
+        maxLat = field(bounds, "maxLat");
+        maxLon = field(bounds, "maxLon");
+    }
+
+    /**
+     * Sends requests from a number of clients, each on its own virtual thread when the JDK has them.
+     *
+     * @param requests The number of requests to measure.
+     * @param clients  The number of requests in flight at once.
+     * @return The latency of every measured request in nanoseconds, sorted, and how long they took in total.
+     * @throws Exception If a client is interrupted.
+     */
+    public Report run(int requests, int clients) throws Exception {
+        send(Math.max(1, requests / 10), clients, new long[requests / 10 + 1], 1);
+        long[] latencies = new long[requests];
+        long start = System.nanoTime();
+        int errors = send(requests, clients, latencies, 2);
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Report(latencies, elapsed, errors);
+    }
+
+    /**
+     * Sends requests from clients that each take the next request until there are none left.
+     *
+     * @return The number of requests that failed.
+     */
+    private int send(int requests, int clients, long[] latencies, long seed) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = MapServer.newExecutor();
+        Future<?>[] futures = new Future<?>[clients];
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(seed * 1_000_003 + c);
+            futures[c] = executor.submit(() -> {
+                for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                    String url = url(endpoint.equals("mix") ? ENDPOINTS[i % ENDPOINTS.length] : endpoint, random);
+                    long start = System.nanoTime();
+                    try {
+                        get(url);
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return errors.get();
+    }
+
+    private String url(String endpoint, Random random) {
+        return switch (endpoint) {
+            case "route" -> baseUrl + "/route?from=" + point(random) + "&to=" + point(random);
+            case "matrix" -> baseUrl + "/matrix?sources=" + point(random) + ";" + point(random) + ";" + point(random)
+                    + "&targets=" + point(random) + ";" + point(random) + ";" + point(random);
+            case "nearest" -> baseUrl + "/nearest?point=" + point(random);
+            case "autocomplete" -> baseUrl + "/autocomplete?q=" + URLEncoder.encode(
+                    "" + LETTERS.charAt(random.nextInt(LETTERS.length())) + LETTERS.charAt(random.nextInt(LETTERS.length())),
+                    StandardCharsets.UTF_8);
+            default -> {
+                // A viewport of a hundredth of the map in each direction
+                double lat = minLat + random.nextDouble() * (maxLat - minLat) * 0.99;
+                double lon = minLon + random.nextDouble() * (maxLon - minLon) * 0.99;
+                yield baseUrl + String.format(Locale.ROOT, "/ways?bbox=%.6f,%.6f,%.6f,%.6f",
+                        lat, lon, lat + (maxLat - minLat) / 100, lon + (maxLon - minLon) / 100);
+            }
+        };
+    }
+
+    private String point(Random random) {
+        return String.format(Locale.ROOT, "%.6f,%.6f",
+                minLat + random.nextDouble() * (maxLat - minLat), minLon + random.nextDouble() * (maxLon - minLon));
+    }
+
+    /**
+     * Sends a request and reads the whole answer, so the connection can be kept alive for the next request.
+     *
+     * @throws IOException If the request fails or is not answered with status 200.
+     */
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int status = connection.getResponseCode();
+        InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+        String body = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        if (in != null) {
+            in.close();
+        }
+        if (status != 200) {
+            throw new IOException(status + " " + body);
+        }
+        return body;
+    }
+
+    private static double field(String json, String name) throws IOException {
+        Matcher matcher = Pattern.compile("\"" + name + "\":(-?[0-9.Ee+-]+)").matcher(json);
+        if (!matcher.find()) {
+            throw new IOException("No " + name + " in " + json);
+        }
+        return Double.parseDouble(matcher.group(1));
+    }
+
+    /**
+     * The latencies of a run.
+     *
+     * @param latencies The latency of every request in nanoseconds, sorted.
+     * @param elapsed   The time from the first request to the last answer in nanoseconds.
+     * @param errors    The number of requests that failed.
+     */
+    public record Report(long[] latencies, long elapsed, int errors) {
+        /**
+         * Gets a percentile of the latencies.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return The latency in milliseconds.
+         */
+        public double percentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6;
+        }
+
+        /**
+         * Gets the number of requests answered per second.
+         *
+         * @return The throughput.
+         */
+        public double throughput() {
+            return latencies.length / (elapsed / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d requests in %.1f s: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d errors",
+                    latencies.length, elapsed / 1e9, throughput(), percentile(50), percentile(99), percentile(100), errors);
+        }
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args The address of the server, and optionally the number of requests (10000), the number of
+     *             clients (64) and the endpoint (route).
+     * @throws Exception If the server does not answer.
+     */
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        String endpoint = args.length > 3 ? args[3] : "route";
+        LoadGenerator generator = new LoadGenerator(baseUrl, endpoint);
+        System.out.println(endpoint + " with " + clients + " clients: " + generator.run(requests, clients));
+    }
+}
@@ -0,0 +1,487 @@
+package dk.itu.MapOfDenmark.Server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dk.itu.MapOfDenmark.App;
+import dk.itu.MapOfDenmark.Model.BinaryFileData;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.Profile;
+import dk.itu.MapOfDenmark.Model.Graph.RouteCache;
+import dk.itu.MapOfDenmark.Model.Graph.RouteRequest;
+import dk.itu.MapOfDenmark.Model.Graph.RouteResult;
+import dk.itu.MapOfDenmark.Model.Graph.SnappedPoint;
+import dk.itu.MapOfDenmark.Model.Graph.TravelTimeMatrix;
+import dk.itu.MapOfDenmark.Model.Model;
+import dk.itu.MapOfDenmark.Model.ParsingElement;
+import dk.itu.MapOfDenmark.Model.SerializableRectangle;
+import dk.itu.MapOfDenmark.Model.Trees.QuadTree.QuadTree;
+import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
+import dk.itu.MapOfDenmark.Model.objects.Isochrone;
+import dk.itu.MapOfDenmark.Model.objects.Path;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Element;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves routes, travel time tables, snapped points, address suggestions and the ways in a viewport as JSON over
+ * HTTP, so other tools can use a parsed map without the user interface:
+ * {@code gradlew run --args="--serve data/denmark.osm.pbf.bin 8080"}
+ * <p>
+ * Every request is answered on its own virtual thread when the JDK has them, and on a pooled thread otherwise.
+ * The graph, the trie and the quadtrees are only read after the map is loaded, so requests need no locking.
+ * Coordinates are latitude and longitude in both parameters and responses, and points are written {@code lat,lon}:
+ * <ul>
+ *     <li>{@code /route?from=<point>&to=<point>[&mode=drive|walk|bike][&metric=fastest|shortest]}</li>
+ *     <li>{@code /matrix?sources=<point>;<point>...&targets=<point>;<point>...[&mode=drive|walk|bike]}</li>
+ *     <li>{@code /nearest?point=<point>[&mode=drive|walk|bike]}</li>
+ *     <li>{@code /autocomplete?q=<prefix>}</li>
+ *     <li>{@code /ways?bbox=<minlat>,<minlon>,<maxlat>,<maxlon>[&layers=Road,Building...][&limit=<ways>]}</li>
+ *     <li>{@code /bounds}</li>
+ * </ul>
+ * Bad parameters are answered with status 400 and an {@code error} message.
+ */
+public class MapServer {
+    /** The most cells a travel time table may have. */
+    public static final int MAX_MATRIX_CELLS = 10_000;
+
+    /** The most ways returned by a viewport query unless a lower limit is given. */
+    public static final int MAX_WAYS = 20_000;
+
+    private final Graph graph;
+    private final CompressedTrie trie;
+    private final Map<String, QuadTree> layers = new HashMap<>();
+    private final float minLat, minLon, maxLat, maxLon;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructs a server for a loaded map.
+     *
+     * @param graph       The routing graph.
+     * @param trie        The addresses.
+     * @param quadTreeMap The quadtrees of the drawn layers, by the class of their elements.
+     */
+    public MapServer(Graph graph, CompressedTrie trie, Map<Class<? extends Element>, QuadTree> quadTreeMap) {
+        this.graph = graph;
+        this.trie = trie;
+        quadTreeMap.forEach((type, tree) -> {
+            // Routes and isochrones are drawn by the user interface and are not part of the map
+            if (type != Path.class && type != Isochrone.class && tree != null) {
+                layers.put(type.getSimpleName(), tree);
+            }
+        });
+
+        // The indexes are built now rather than by the first requests
+        graph.getSegmentIndex();
+        float[] coords = graph.getVertexCoords();
+        float south = Float.POSITIVE_INFINITY, west = Float.POSITIVE_INFINITY;
+        float north = Float.NEGATIVE_INFINITY, east = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < coords.length; i += 2) {
+            south = Math.min(south, coords[i]);
+            north = Math.max(north, coords[i]);
+            west = Math.min(west, coords[i + 1]);
+            east = Math.max(east, coords[i + 1]);
+        }
+        if (coords.length == 0) {
+            south = west = north = east = 0;
+        }
+        minLat = south;
+        minLon = west;
+        maxLat = north;
+        maxLon = east;
+    }
+
+    /**
+     * Loads a map the way the user interface does and constructs a server for it.
+     *
+     * @param filename The map file, or an OSM file that is parsed and saved as a map file first.
+     * @return The server, not yet started.
+     * @throws Exception If the file can not be loaded.
+     */
+    public static MapServer load(String filename) throws Exception {
+        App.path = filename;
+        ParsingElement loaded = Model.load(filename);
+        Model model;
+        if (loaded instanceof BinaryFileData b) {
+            model = b.getModel();
+            model.setGraph(b.getGraph());
+            model.setQuadTreeMap(b.getQuadTreeMap());
+            model.setTrie(b.getTrie());
+            model.setBounds(b.getBounds());
+        } else {
+            model = (Model) loaded;
+        }
+        return new MapServer(Model.getGraph(), model.getTrie(), Model.quadTreeMap);
+    }
+
+    /**
+     * Starts answering requests.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The port the server listens on.
+     * @throws IOException If the port can not be bound.
+     */
+    public int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/route", exchange -> respond(exchange, this::route));
+        server.createContext("/matrix", exchange -> respond(exchange, this::matrix));
+        server.createContext("/nearest", exchange -> respond(exchange, this::nearest));
+        server.createContext("/autocomplete", exchange -> respond(exchange, this::autocomplete));
+        server.createContext("/ways", exchange -> respond(exchange, this::ways));
+        server.createContext("/bounds", exchange -> respond(exchange, this::bounds));
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, waiting up to a second for the requests being answered.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * Makes an executor that runs every task on a new virtual thread. Virtual threads are only final from Java 21,
+     * so on older runtimes, which this project still builds for, a cached pool of platform threads is used instead.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Routes between two points snapped onto the roads. The fastest routes are shared with the route cache of the
+     * user interface, as they are found the same way.
+     */
+    private String route(Map<String, String> params) {
+        Profile profile = profile(params);
+        RouteRequest.Metric metric = switch (params.getOrDefault("metric", "fastest")) {
+            case "fastest" -> RouteRequest.Metric.FASTEST;
+            case "shortest" -> RouteRequest.Metric.SHORTEST;
+            default -> throw new IllegalArgumentException("metric must be fastest or shortest");
+        };
+        SnappedPoint from = snap(point(params, "from"), profile);
+        SnappedPoint to = snap(point(params, "to"), profile);
+
+        RouteCache.Route route = metric == RouteRequest.Metric.FASTEST
+                ? graph.getRouteCache().get(from.getKey(), to.getKey(), profile) : null;
+        if (route == null) {
+            RouteResult result = graph.route(new RouteRequest(from, to, profile, metric));
+            if (!result.isFound()) {
+                return "{\"found\":false}";
+            }
+            route = new RouteCache.Route(result.getPath(), result.getTime(), result.getDistance(), graph.getPathCoords(result));
+            if (metric == RouteRequest.Metric.FASTEST) {
+                graph.getRouteCache().put(from.getKey(), to.getKey(), profile, route);
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"found\":true");
+        json.append(",\"time\":").append(number(route.getTime()));
+        json.append(",\"distance\":").append(number(route.getDistance()));
+        json.append(",\"coords\":");
+        appendPoints(json, route.getCoords());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Computes the travel times and lengths of the fastest routes between every source and target.
+     * Pairs that can not be reached are null.
+     */
+    private String matrix(Map<String, String> params) {
+        Profile profile = profile(params);
+        List<float[]> sources = points(params, "sources");
+        List<float[]> targets = points(params, "targets");
+        if ((long) sources.size() * targets.size() > MAX_MATRIX_CELLS) {
+            throw new IllegalArgumentException("at most " + MAX_MATRIX_CELLS + " sources times targets");
+        }
+        TravelTimeMatrix matrix = graph.travelTimes(sources, targets, profile);
+        StringBuilder json = new StringBuilder("{\"times\":");
+        appendTable(json, matrix, true);
+        json.append(",\"distances\":");
+        appendTable(json, matrix, false);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Snaps a point onto the nearest road, and gives the vertex of that road that is nearer along it.
+     */
+    private String nearest(Map<String, String> params) {
+        Profile profile = profile(params);
+        SnappedPoint snapped = snap(point(params, "point"), profile);
+        int vertex = snapped.getFraction() <= 0.5 ? snapped.getU() : snapped.getV();
+        float[] coords = snapped.getCoords();
+        float[] vertexCoords = graph.getNodeFromPos(vertex).getCoords();
+        return "{\"lat\":" + coords[0] + ",\"lon\":" + coords[1]
+                + ",\"distance\":" + number(snapped.getDistance())
+                + ",\"edge\":" + snapped.getEdge() + ",\"fraction\":" + snapped.getFraction()
+                + ",\"vertex\":" + vertex + ",\"vertexLat\":" + vertexCoords[0] + ",\"vertexLon\":" + vertexCoords[1] + "}";
+    }
+
+    /**
+     * Suggests the addresses that start with a prefix, like the search field of the user interface.
+     */
+    private String autocomplete(Map<String, String> params) {
+        String prefix = required(params, "q");
+        StringBuilder json = new StringBuilder("{\"suggestions\":[");
+        List<String> addresses = trie.searchPrefix(prefix);
+        for (int i = 0; i < addresses.size(); i++) {
+            float[] coords = trie.search(addresses.get(i));
+            json.append(i == 0 ? "" : ",").append("{\"address\":");
+            appendString(json, addresses.get(i));
+            if (coords != null) {
+                json.append(",\"lat\":").append(coords[0]).append(",\"lon\":").append(coords[1]);
+            }
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Finds the ways with a point inside a bounding box, from every drawn layer or from the layers asked for.
+     */
+    private String ways(Map<String, String> params) {
+        double[] box = numbers(required(params, "bbox"), ",", 4, "bbox");
+        if (box[2] < box[0] || box[3] < box[1]) {
+            throw new IllegalArgumentException("bbox must be minlat,minlon,maxlat,maxlon");
+        }
+        int limit = Math.min(MAX_WAYS, params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : MAX_WAYS);
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        List<QuadTree> trees = new ArrayList<>();
+        if (params.containsKey("layers")) {
+            for (String layer : params.get("layers").split(",")) {
+                QuadTree tree = layers.get(layer);
+                if (tree == null) {
+                    throw new IllegalArgumentException("unknown layer " + layer + ", the layers are " + layers.keySet());
+                }
+                trees.add(tree);
+            }
+        } else {
+            trees.addAll(layers.values());
+        }
+
+        // The quadtrees hold latitudes as x and longitudes as y
+        SerializableRectangle rect = new SerializableRectangle(box[0], box[1], box[2] - box[0], box[3] - box[1]);
+        List<Way> ways = new ArrayList<>();
+        for (QuadTree tree : trees) {
+            tree.query(rect, ways);
+        }
+        StringBuilder json = new StringBuilder("{\"truncated\":").append(ways.size() > limit).append(",\"ways\":[");
+        for (int i = 0; i < Math.min(limit, ways.size()); i++) {
+            json.append(i == 0 ? "" : ",").append("{\"type\":\"").append(ways.get(i).getClass().getSimpleName());
+            json.append("\",\"coords\":");
+            appendPoints(json, ways.get(i).getCoords());
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Gives the bounding box of the roads and the names of the layers, for clients that pick points on the map.
+     */
+    private String bounds(Map<String, String> params) {
+        StringBuilder json = new StringBuilder("{\"minLat\":").append(minLat).append(",\"minLon\":").append(minLon)
+                .append(",\"maxLat\":").append(maxLat).append(",\"maxLon\":").append(maxLon).append(",\"layers\":[");
+        int i = 0;
+        for (String layer : layers.keySet()) {
+            json.append(i++ == 0 ? "" : ",");
+            appendString(json, layer);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Answers a request with the JSON of an endpoint, or with an error.
+     */
+    private void respond(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                status = 405;
+                body = error("only GET is supported");
+            } else {
+                body = endpoint.answer(parameters(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error(String.valueOf(e.getMessage()));
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * The answer of an endpoint to the parameters of a request.
+     */
+    private interface Endpoint {
+        String answer(Map<String, String> params);
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return value;
+    }
+
+    private static Profile profile(Map<String, String> params) {
+        return switch (params.getOrDefault("mode", "drive")) {
+            case "drive" -> Profile.CAR;
+            case "walk" -> Profile.WALK;
+            case "bike" -> Profile.BIKE;
+            default -> throw new IllegalArgumentException("mode must be drive, walk or bike");
+        };
+    }
+
+    private static float[] point(Map<String, String> params, String name) {
+        double[] point = numbers(required(params, name), ",", 2, name);
+        return new float[]{(float) point[0], (float) point[1]};
+    }
+
+    private static List<float[]> points(Map<String, String> params, String name) {
+        List<float[]> points = new ArrayList<>();
+        for (String point : required(params, name).split(";")) {
+            double[] coords = numbers(point, ",", 2, name);
+            points.add(new float[]{(float) coords[0], (float) coords[1]});
+        }
+        return points;
+    }
+
+    private static double[] numbers(String value, String separator, int count, String name) {
+        String[] parts = value.split(separator);
+        if (parts.length != count) {
+            throw new IllegalArgumentException(name + " must be " + count + " numbers separated by '" + separator + "'");
+        }
+        double[] numbers = new double[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = Double.parseDouble(parts[i].trim());
+            if (!Double.isFinite(numbers[i])) {
+                throw new IllegalArgumentException(name + " must be finite");
+            }
+        }
+        return numbers;
+    }
+
+    private SnappedPoint snap(float[] point, Profile profile) {
+        SnappedPoint snapped = graph.snap(new double[]{point[0], point[1]}, profile);
+        if (snapped == null) {
+            throw new IllegalArgumentException("the map has no roads for " + profile.name().toLowerCase());
+        }
+        return snapped;
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.valueOf(value) : "null";
+    }
+
+    private static void appendTable(StringBuilder json, TravelTimeMatrix matrix, boolean times) {
+        json.append('[');
+        for (int i = 0; i < matrix.getSourceCount(); i++) {
+            json.append(i == 0 ? "[" : ",[");
+            for (int j = 0; j < matrix.getTargetCount(); j++) {
+                json.append(j == 0 ? "" : ",").append(number(times ? matrix.getTime(i, j) : matrix.getDistance(i, j)));
+            }
+            json.append(']');
+        }
+        json.append(']');
+    }
+
+    private static void appendPoints(StringBuilder json, float[] coords) {
+        json.append('[');
+        for (int i = 0; i + 1 < coords.length; i += 2) {
+            json.append(i == 0 ? "[" : ",[").append(coords[i]).append(',').append(coords[i + 1]).append(']');
+        }
+        json.append(']');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Loads a map and serves it until the process is stopped.
+     *
+     * @param args The map file and optionally the port, 8080 by default.
+     * @throws Exception If the map can not be loaded or the port can not be bound.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: --serve <map file> [port]");
+            return;
+        }
+        // Without this the headers and the body of an answer are sent in two packets, and the second one waits
+        // about 40 ms for the client to acknowledge the first. The JDK reads it once for every server in the process,
+        // so it is set here rather than in start, and only if it was not given on the command line
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        long startTime = System.currentTimeMillis();
+        MapServer mapServer = load(args[0]);
+        int port = mapServer.start(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        System.out.println("Loaded " + args[0] + " in " + (System.currentTimeMillis() - startTime) + "ms, serving on http://localhost:" + port);
+        Runtime.getRuntime().addShutdownHook(new Thread(mapServer::stop));
+    }
+}
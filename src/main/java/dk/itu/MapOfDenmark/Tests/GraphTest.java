@@ -1,6 +1,15 @@
 package dk.itu.MapOfDenmark.Tests;
 
+import dk.itu.MapOfDenmark.Model.Graph.Components;
+import dk.itu.MapOfDenmark.Model.Graph.Edge;
 import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.Profile;
+import dk.itu.MapOfDenmark.Model.Graph.RoadTags;
+import dk.itu.MapOfDenmark.Model.Graph.RouteRequest;
+import dk.itu.MapOfDenmark.Model.Graph.RouteResult;
+import dk.itu.MapOfDenmark.Model.Graph.SnappedPoint;
+import dk.itu.MapOfDenmark.Model.Graph.Tour;
+import dk.itu.MapOfDenmark.Model.Graph.TravelTimeMatrix;
 import dk.itu.MapOfDenmark.Model.Model;
 import dk.itu.MapOfDenmark.Model.objects.MotorWay;
 import org.junit.jupiter.api.AfterEach;
@@ -10,8 +19,21 @@ import org.junit.jupiter.api.Test;
 import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GraphTest {
@@ -24,6 +46,30 @@ public class GraphTest {
     @AfterEach
     public void tearDown(){
         graph = null;
+        Graph.wantToDrive = true;
+    }
+
+    /**
+     * Adds a grid of size by size vertices 0.01 degrees apart, joined by roads of random length and speed that are
+     * one-way one time in five and closed to cars one time in six. The roads are no shorter than the straight lines
+     * between their ends, as A* expects.
+     *
+     * @return The random numbers the grid was made with, for the test to go on with.
+     */
+    private Random randomGrid(int size, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < size * size; i++) {
+            graph.addVertex(new float[]{55 + i / size * 0.01f, 12 + i % size * 0.01f});
+        }
+        for (int i = 0; i < size * size; i++) {
+            if (i % size < size - 1) {
+                graph.addEdge(new Edge(i, i + 1, 1200 + random.nextInt(1000), 30 + random.nextInt(100), null, random.nextInt(5) == 0, random.nextInt(6) > 0, true));
+            }
+            if (i / size < size - 1) {
+                graph.addEdge(new Edge(i, i + size, 1200 + random.nextInt(1000), 30 + random.nextInt(100), null, random.nextInt(5) == 0, random.nextInt(6) > 0, true));
+            }
+        }
+        return random;
     }
 
     @Test
@@ -60,4 +106,544 @@ public class GraphTest {
         graph.addEdge(motorway);
         //assertEquals(1, graph.getEdgeCount());
     }
+
+    @Test
+    public void testFrozenGraph() {
+        graph.addVertex(new float[]{0.0f, 0.0f});
+        graph.addVertex(new float[]{0.0f, 1.0f});
+        graph.addVertex(new float[]{1.0f, 1.0f});
+        graph.addEdge(new Edge(0, 1, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 100, 50, null, true, true, true));
+        graph.freeze();
+
+        assertEquals(3, graph.getVertexCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(List.of(0, 1, 2), graph.dijkstra(0, 2));
+        assertNull(graph.dijkstra(2, 0));
+        assertThrows(IllegalStateException.class, () -> graph.addEdge(new Edge(0, 2, 1, 50, null, false, true, true)));
+    }
+
+    @Test
+    public void testRepeatedSearches() {
+        for (int i = 0; i < 4; i++) {
+            graph.addVertex(new float[]{i, i});
+        }
+        graph.addEdge(new Edge(0, 1, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 3, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(0, 2, 50, 50, null, false, true, true));
+        graph.addEdge(new Edge(2, 3, 100, 50, null, false, true, true));
+        graph.freeze();
+
+        assertEquals(List.of(0, 2, 3), graph.dijkstra(0, 3));
+        assertEquals(List.of(1, 0, 2), graph.dijkstra(1, 2));
+        assertEquals(List.of(3, 2, 0), graph.dijkstra(3, 0));
+    }
+
+    @Test
+    public void testAStarMatchesDijkstra() {
+        for (int i = 0; i < 5; i++) {
+            graph.addVertex(new float[]{55 + i * 0.01f, 12});
+            graph.addVertex(new float[]{55 + i * 0.01f, 12.01f});
+        }
+        for (int i = 0; i < 4; i++) {
+            graph.addEdge(new Edge(2 * i, 2 * i + 2, 1112, 50, null, false, true, true));
+            graph.addEdge(new Edge(2 * i + 1, 2 * i + 3, 1112, 130, null, false, true, true));
+        }
+        for (int i = 0; i < 5; i++) {
+            graph.addEdge(new Edge(2 * i, 2 * i + 1, 1112 + i * 10, 50, null, false, true, true));
+        }
+        graph.freeze();
+
+        for (boolean drive : new boolean[]{true, false}) {
+            Graph.wantToDrive = drive;
+            assertEquals(graph.dijkstra(0, 8), graph.aStar(0, 8));
+            assertEquals(graph.dijkstra(9, 0), graph.aStar(9, 0));
+        }
+        Graph.wantToDrive = true;
+        assertEquals(List.of(0, 1, 3, 5, 7, 9, 8), graph.aStar(0, 8));
+    }
+
+    @Test
+    public void testBidirectionalMatchesDijkstra() {
+        for (int i = 0; i < 5; i++) {
+            graph.addVertex(new float[]{55 + i * 0.01f, 12});
+            graph.addVertex(new float[]{55 + i * 0.01f, 12.01f});
+        }
+        for (int i = 0; i < 4; i++) {
+            graph.addEdge(new Edge(2 * i, 2 * i + 2, 1112, 50, null, false, true, true));
+            graph.addEdge(new Edge(2 * i + 3, 2 * i + 1, 1112, 130, null, true, true, true));
+        }
+        for (int i = 0; i < 5; i++) {
+            graph.addEdge(new Edge(2 * i, 2 * i + 1, 1112 + i * 10, 50, null, false, true, true));
+        }
+        graph.freeze();
+
+        for (boolean drive : new boolean[]{true, false}) {
+            Graph.wantToDrive = drive;
+            for (int start = 0; start < 10; start++) {
+                for (int end = 0; end < 10; end++) {
+                    assertEquals(graph.dijkstra(start, end), graph.bidirectionalDijkstra(start, end));
+                    assertEquals(graph.dijkstra(start, end), graph.bidirectionalAStar(start, end));
+                }
+            }
+        }
+        Graph.wantToDrive = true;
+    }
+
+    @Test
+    public void testHierarchyMatchesDijkstra() {
+        int size = 12;
+        Random random = randomGrid(size, 17);
+        graph.contract();
+
+        for (boolean drive : new boolean[]{true, false}) {
+            Graph.wantToDrive = drive;
+            for (int i = 0; i < 200; i++) {
+                int start = random.nextInt(size * size);
+                int end = random.nextInt(size * size);
+                assertEquals(graph.dijkstra(start, end), graph.hierarchySearch(start, end));
+            }
+        }
+        Graph.wantToDrive = true;
+    }
+
+    @Test
+    public void testCustomizableHierarchyMatchesDijkstra() {
+        int size = 12;
+        Random random = randomGrid(size, 23);
+        boolean customizable = Graph.customizable;
+        Graph.customizable = true;
+        try {
+            graph.contract();
+        } finally {
+            Graph.customizable = customizable;
+        }
+
+        // Customized for the weights of the tags, and then with some roads closed and others slower for cars
+        for (int round = 0; round < 2; round++) {
+            if (round == 1) {
+                Map<Integer, Double> factors = new HashMap<>();
+                for (int i = 0; i < 30; i++) {
+                    factors.put(random.nextInt(graph.getEdgeCount()), random.nextInt(4) == 0 ? Double.POSITIVE_INFINITY : 1 + random.nextDouble() * 3);
+                }
+                graph.overrideWeights(Profile.CAR, factors);
+            }
+            for (int i = 0; i < 200; i++) {
+                int start = random.nextInt(size * size);
+                int end = random.nextInt(size * size);
+                assertEquals(graph.dijkstra(start, end), graph.hierarchySearch(start, end));
+            }
+        }
+    }
+
+    @Test
+    public void testOverriddenWeightsRefreshRoutes() {
+        graph.addVertex(new float[]{55, 12});
+        graph.addVertex(new float[]{55, 12.01f});
+        graph.addVertex(new float[]{55.005f, 12.005f});
+        graph.addEdge(new Edge(0, 1, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.addEdge(new Edge(1, 2, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.addEdge(new Edge(2, 0, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.contract();
+        assertEquals(40, graph.route(new RouteRequest(0, 1, Profile.CAR)).getTime(), 0.01);
+
+        // Closed for cars, which go around, but not for pedestrians
+        graph.overrideWeights(Profile.CAR, Map.of(0, Double.POSITIVE_INFINITY));
+        RouteResult around = graph.route(new RouteRequest(1, 0, Profile.CAR));
+        assertEquals(List.of(1, 2, 0), around.getPath());
+        assertEquals(80, around.getTime(), 0.01);
+        assertEquals(List.of(0, 2, 1), graph.dijkstra(0, 1));
+        assertEquals(List.of(0, 1), graph.route(new RouteRequest(0, 1, Profile.WALK)).getPath());
+
+        // Each set of overrides replaces the one before it
+        graph.overrideWeights(Profile.CAR, Map.of(0, 1.5));
+        assertEquals(60, graph.route(new RouteRequest(0, 1, Profile.CAR)).getTime(), 0.01);
+        graph.overrideWeights(Profile.CAR, Map.of());
+        assertEquals(40, graph.route(new RouteRequest(0, 1, Profile.CAR)).getTime(), 0.01);
+        assertThrows(IllegalArgumentException.class, () -> graph.overrideWeights(Profile.CAR, Map.of(1, 0.5)));
+        assertThrows(IllegalArgumentException.class, () -> graph.overrideWeights(Profile.CAR, Map.of(3, 2.0)));
+    }
+
+    @Test
+    public void testClosedEdgesAreNotSnappedOnto() {
+        graph.addVertex(new float[]{55, 12});
+        graph.addVertex(new float[]{55, 12.01f});
+        graph.addVertex(new float[]{55.005f, 12.005f});
+        graph.addEdge(new Edge(0, 1, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.addEdge(new Edge(1, 2, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.addEdge(new Edge(2, 0, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.freeze();
+
+        // The corner is at an end of the edge it was snapped onto, and routes from there take no NaN seconds once it is closed
+        SnappedPoint corner = graph.snap(new double[]{55, 12}, Profile.CAR);
+        graph.overrideWeights(Profile.CAR, Map.of(corner.getEdge(), Double.POSITIVE_INFINITY));
+        SnappedPoint end = graph.snap(new double[]{55.005, 12.005}, Profile.CAR);
+        assertFalse(Double.isNaN(graph.route(new RouteRequest(corner, end, Profile.CAR)).getTime()));
+        assertFalse(Double.isNaN(graph.route(new RouteRequest(corner, corner, Profile.CAR)).getTime()));
+        assertFalse(Double.isNaN(graph.route(new RouteRequest(corner, end, Profile.CAR, RouteRequest.Metric.SHORTEST)).getTime()));
+
+        // Snapped again, the corner is on the other edge that meets there, which is open
+        SnappedPoint open = graph.snap(new double[]{55, 12}, Profile.CAR);
+        assertNotEquals(corner.getEdge(), open.getEdge());
+        RouteResult result = graph.route(new RouteRequest(open, end, Profile.CAR));
+        assertTrue(result.getTime() < Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testLandmarksMatchDijkstra() {
+        int size = 12;
+        Random random = randomGrid(size, 23);
+        graph.selectLandmarks(8);
+        assertEquals(8, graph.getLandmarks(true).getCount());
+
+        for (boolean drive : new boolean[]{true, false}) {
+            Graph.wantToDrive = drive;
+            for (int i = 0; i < 200; i++) {
+                int start = random.nextInt(size * size);
+                int end = random.nextInt(size * size);
+                assertEquals(graph.dijkstra(start, end), graph.aStar(start, end));
+            }
+        }
+        Graph.wantToDrive = true;
+    }
+
+    @Test
+    public void testTravelTimesMatchDijkstra() {
+        int size = 12;
+        Random random = randomGrid(size, 29);
+        int[] sources = random.ints(20, 0, size * size).toArray();
+        int[] targets = random.ints(30, 0, size * size).toArray();
+        targets[1] = targets[0];
+        targets[2] = sources[0];
+
+        // The routes are found by searching the graph, and then in the hierarchies
+        for (int round = 0; round < 2; round++) {
+            if (round == 1) {
+                graph.contract();
+            }
+            for (Profile profile : new Profile[]{Profile.CAR, Profile.WALK}) {
+                TravelTimeMatrix matrix = graph.travelTimes(sources, targets, profile);
+                assertEquals(0.0, matrix.getTime(0, 2));
+                for (int i = 0; i < sources.length; i++) {
+                    for (int j = 0; j < targets.length; j++) {
+                        RouteResult route = graph.route(new RouteRequest(sources[i], targets[j], profile));
+                        assertEquals(route.getTime(), matrix.getTime(i, j), 0.01);
+                        assertEquals(route.getDistance(), matrix.getDistance(i, j), 0.01);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIsochroneStopsAtTime() {
+        for (int i = 0; i < 3; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        graph.addEdge(new Edge(0, 1, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 1000, 50, null, false, true, true));
+
+        // Each edge takes 72 seconds, so the time runs out halfway along the second edge
+        float[] outline = graph.isochrone(0, 108);
+        float east = 0;
+        for (int i = 1; i < outline.length; i += 2) {
+            east = Math.max(east, outline[i]);
+        }
+        assertEquals(12.015f, east, 0.0001f);
+    }
+
+    @Test
+    public void testSimplifyMergesChains() {
+        for (int i = 0; i < 8; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        graph.addVertex(new float[]{56, 12});
+        graph.addVertex(new float[]{56, 12.01f});
+        graph.addVertex(new float[]{56.01f, 12});
+        graph.addEdge(new Edge(0, 1, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(2, 3, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(3, 4, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(3, 5, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(5, 6, 100, 50, null, true, true, true));
+        graph.addEdge(new Edge(6, 7, 100, 50, null, true, true, true));
+        // A closed loop without junctions keeps one of its vertices
+        graph.addEdge(new Edge(8, 9, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(9, 10, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(10, 8, 100, 50, null, false, true, true));
+        graph.simplify();
+        graph.freeze();
+
+        assertEquals(6, graph.getVertexCount());
+        assertEquals(5, graph.getEdgeCount());
+        List<Integer> path = graph.dijkstra(0, 4);
+        assertEquals(List.of(0, 1, 3, 4), path);
+        assertNull(graph.dijkstra(4, 0));
+
+        float[] pathCoords = graph.getPathCoords(path);
+        assertEquals(14, pathCoords.length);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(12 + (i < 4 ? i : i + 1) * 0.01f, pathCoords[(i << 1) + 1]);
+        }
+        assertThrows(IllegalStateException.class, () -> graph.simplify());
+    }
+
+    @Test
+    public void testComponentsRejectUnreachableRoutes() {
+        for (int i = 0; i < 6; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        graph.addEdge(new Edge(0, 1, 100, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 100, 50, null, false, true, true));
+        // A one-way road into a dead end, and an island
+        graph.addEdge(new Edge(2, 3, 100, 50, null, true, true, true));
+        graph.addEdge(new Edge(4, 5, 100, 50, null, false, true, true));
+        graph.freeze();
+
+        Components components = graph.getComponents(true);
+        assertTrue(components.isInLargest(0) && components.isInLargest(2));
+        assertFalse(components.isInLargest(3) || components.isInLargest(4));
+        assertEquals(List.of(0, 1, 2, 3), graph.dijkstra(0, 3));
+        assertNull(graph.dijkstra(3, 0));
+        assertEquals(0, graph.route(new RouteRequest(3, 0, true)).getSettled());
+        assertNull(graph.aStar(0, 5));
+        assertEquals(0, graph.route(new RouteRequest(0, 5, false)).getSettled());
+        assertNull(graph.bidirectionalDijkstra(5, 1));
+        assertTrue(Double.isInfinite(graph.travelTimes(new int[]{3, 0}, new int[]{0, 4}).getTime(0, 0)));
+    }
+
+    @Test
+    public void testSnapProjectsOntoRoads() {
+        for (int i = 0; i < 4; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        graph.addEdge(new Edge(0, 1, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(2, 3, 1000, 50, null, false, true, true));
+        graph.simplify();
+        graph.freeze();
+
+        // The middle vertices are merged into the shape of a single edge, which is still snapped to between them
+        SnappedPoint snapped = graph.snap(new double[]{55.001, 12.015}, true);
+        assertEquals(0, snapped.getEdge());
+        assertEquals(0.5f, snapped.getFraction(), 0.001f);
+        assertEquals(55f, snapped.getCoords()[0], 0.0001f);
+        assertEquals(12.015f, snapped.getCoords()[1], 0.0001f);
+        assertEquals(111, snapped.getDistance(), 1);
+
+        // Points beyond the ends of the road snap to its vertices
+        assertEquals(0f, graph.snap(new double[]{54.9, 11.9}, true).getFraction());
+        assertEquals(1f, graph.snap(new double[]{55.1, 12.5}, false).getFraction());
+    }
+
+    @Test
+    public void testTravelTimesNeedRoadsToSnapTo() {
+        graph.addVertex(new float[]{55, 12});
+        graph.addVertex(new float[]{55, 12.01f});
+        graph.addEdge(new Edge(0, 1, 1000, 50, null, false, true, false));
+        graph.freeze();
+
+        // A road only cars may use, so there is nothing for pedestrians to snap to
+        List<float[]> points = List.of(new float[]{55, 12}, new float[]{55, 12.01f});
+        assertEquals(72, graph.travelTimes(points, points, true).getTime(0, 1), 0.01);
+        assertNull(graph.snap(new double[]{55, 12}, false));
+        assertThrows(IllegalArgumentException.class, () -> graph.travelTimes(points, points, false));
+    }
+
+    @Test
+    public void testRoutesBetweenSnappedPoints() {
+        graph.addVertex(new float[]{55, 12});
+        graph.addVertex(new float[]{55, 12.01f});
+        graph.addVertex(new float[]{55, 12.02f});
+        graph.addVertex(new float[]{55.01f, 12.01f});
+        graph.addEdge(new Edge(0, 1, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 1000, 50, null, true, true, true));
+        graph.addEdge(new Edge(1, 3, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(2, 3, 1500, 50, null, false, true, true));
+        graph.freeze();
+
+        // Halfway along the first road, through the junction and halfway along the road north
+        SnappedPoint west = graph.snap(new double[]{55.0001, 12.005}, true);
+        SnappedPoint north = graph.snap(new double[]{55.005, 12.0101}, true);
+        RouteResult result = graph.route(new RouteRequest(west, north, true));
+        assertEquals(List.of(1), result.getPath());
+        assertEquals(72, result.getTime(), 0.1);
+        assertEquals(1000, result.getDistance(), 0.5);
+        float[] coords = graph.getPathCoords(result);
+        assertEquals(6, coords.length);
+        assertEquals(12.005f, coords[1], 0.0001f);
+        assertEquals(55.005f, coords[4], 0.0001f);
+
+        // Along a single road, in both directions unless it is one-way, which leads around the block
+        SnappedPoint a = graph.snap(new double[]{55, 12.0025}, true);
+        RouteResult along = graph.route(new RouteRequest(west, a, true));
+        assertEquals(List.of(), along.getPath());
+        assertEquals(250, along.getDistance(), 0.5);
+        assertEquals(4, graph.getPathCoords(along).length);
+        SnappedPoint east = graph.snap(new double[]{55, 12.015}, true);
+        SnappedPoint farEast = graph.snap(new double[]{55, 12.0175}, true);
+        assertEquals(250, graph.route(new RouteRequest(east, farEast, true)).getDistance(), 0.5);
+        assertEquals(3250, graph.route(new RouteRequest(farEast, east, true)).getDistance(), 0.5);
+
+        // The same routes through the contraction hierarchy
+        graph.contract();
+        assertEquals(72, graph.route(new RouteRequest(west, north, true)).getTime(), 0.1);
+        assertEquals(250, graph.route(new RouteRequest(west, a, true)).getDistance(), 0.5);
+        assertEquals(3250, graph.route(new RouteRequest(farEast, east, true)).getDistance(), 0.5);
+        assertTrue(west.getKey() < 0 && west.getKey() != a.getKey());
+    }
+
+    @Test
+    public void testRoadTagsGiveEachProfileItsRoads() {
+        RoadTags street = RoadTags.of(Map.of("highway", "residential", "maxspeed", "30", "oneway", "yes"));
+        assertEquals(30, street.speed(Profile.CAR));
+        assertEquals(18, street.speed(Profile.BIKE));
+        assertTrue(street.allows(Profile.CAR, true) && street.allows(Profile.BIKE, true));
+        assertFalse(street.allows(Profile.CAR, false) || street.allows(Profile.BIKE, false));
+        assertTrue(street.allows(Profile.WALK, false));
+        assertTrue(RoadTags.of(Map.of("highway", "residential", "oneway", "yes", "oneway:bicycle", "no")).allows(Profile.BIKE, false));
+        assertFalse(RoadTags.of(Map.of("highway", "tertiary", "oneway", "-1")).allows(Profile.CAR, true));
+
+        RoadTags motorway = RoadTags.of(Map.of("highway", "motorway", "maxspeed", "DK:motorway"));
+        assertEquals(130, motorway.speed(Profile.CAR));
+        assertFalse(motorway.allows(Profile.CAR, false) || motorway.allows(Profile.WALK, true) || motorway.allows(Profile.BIKE, true));
+        assertEquals(80, RoadTags.of(Map.of("highway", "secondary", "maxspeed", "DK:rural")).speed(Profile.CAR));
+        assertEquals(15, RoadTags.of(Map.of("highway", "living_street")).speed(Profile.BIKE));
+
+        RoadTags footway = RoadTags.of(Map.of("highway", "footway", "bicycle", "yes"));
+        assertFalse(footway.allows(Profile.CAR, true));
+        assertTrue(footway.allows(Profile.BIKE, false) && footway.allows(Profile.WALK, false));
+        assertEquals(8, footway.speed(Profile.BIKE));
+        RoadTags gate = RoadTags.of(Map.of("highway", "service", "access", "private", "foot", "yes"));
+        assertFalse(gate.allows(Profile.CAR, true) || gate.allows(Profile.BIKE, true));
+        assertTrue(gate.allows(Profile.WALK, true));
+    }
+
+    @Test
+    public void testProfilesRouteWithTheirOwnWeights() {
+        graph.addVertex(new float[]{55, 12});
+        graph.addVertex(new float[]{55, 12.01f});
+        graph.addVertex(new float[]{55.005f, 12.005f});
+        // A slow one-way street, and a faster way around it
+        graph.addEdge(new Edge(0, 1, 1000, null, RoadTags.of(Map.of("highway", "residential", "maxspeed", "30", "oneway", "yes"))));
+        graph.addEdge(new Edge(1, 2, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.addEdge(new Edge(2, 0, 1000, null, RoadTags.of(Map.of("highway", "primary"))));
+        graph.freeze();
+
+        for (int contracted = 0; contracted < 2; contracted++) {
+            RouteResult car = graph.route(new RouteRequest(0, 1, Profile.CAR));
+            assertEquals(List.of(0, 2, 1), car.getPath());
+            assertEquals(80, car.getTime(), 0.01);
+            assertEquals(List.of(0, 1), graph.route(new RouteRequest(0, 1, Profile.CAR, RouteRequest.Metric.SHORTEST)).getPath());
+            assertEquals(List.of(1, 2, 0), graph.route(new RouteRequest(1, 0, Profile.CAR)).getPath());
+
+            // Bikes take the street one way, and pedestrians both ways
+            assertEquals(200, graph.route(new RouteRequest(0, 1, Profile.BIKE)).getTime(), 0.01);
+            assertEquals(400, graph.route(new RouteRequest(1, 0, Profile.BIKE)).getTime(), 0.01);
+            RouteResult walk = graph.route(new RouteRequest(1, 0, Profile.WALK));
+            assertEquals(List.of(1, 0), walk.getPath());
+            assertEquals(720, walk.getTime(), 0.01);
+            assertEquals(400, graph.travelTimes(new int[]{1}, new int[]{0}, Profile.BIKE).getTime(0, 0), 0.01);
+            graph.contract();
+        }
+    }
+
+    @Test
+    public void testConcurrentRoutesMatchSequential() throws Exception {
+        int size = 15;
+        Random random = randomGrid(size, 23);
+        graph.freeze();
+
+        List<RouteRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            requests.add(new RouteRequest(random.nextInt(size * size), random.nextInt(size * size), random.nextBoolean(),
+                    random.nextBoolean() ? RouteRequest.Metric.FASTEST : RouteRequest.Metric.SHORTEST));
+        }
+        for (int round = 0; round < 2; round++) {
+            if (round == 1) {
+                graph.contract();
+            }
+            List<RouteResult> expected = new ArrayList<>();
+            for (RouteRequest request : requests) {
+                expected.add(graph.route(request));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<RouteResult>> futures = new ArrayList<>();
+                for (int repeat = 0; repeat < 5; repeat++) {
+                    for (RouteRequest request : requests) {
+                        futures.add(pool.submit(() -> graph.route(request)));
+                    }
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    RouteResult result = futures.get(i).get();
+                    RouteResult sequential = expected.get(i % requests.size());
+                    assertEquals(sequential.getPath(), result.getPath());
+                    assertEquals(sequential.getTime(), result.getTime());
+                    assertEquals(sequential.getDistance(), result.getDistance());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        for (RouteRequest request : requests) {
+            RouteResult fastest = graph.route(new RouteRequest(request.getStart(), request.getEnd(), request.isDrive()));
+            RouteResult shortest = graph.route(new RouteRequest(request.getStart(), request.getEnd(), request.isDrive(), RouteRequest.Metric.SHORTEST));
+            assertEquals(fastest.isFound(), shortest.isFound());
+            assertTrue(!fastest.isFound() || shortest.getDistance() <= fastest.getDistance() + 1e-6);
+            assertTrue(!fastest.isFound() || fastest.getTime() <= shortest.getTime() + 1e-6);
+        }
+    }
+
+    @Test
+    public void testTourVisitsStopsAlongTheRoad() {
+        for (int i = 0; i < 6; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        for (int i = 0; i < 5; i++) {
+            graph.addEdge(new Edge(i, i + 1, 1000, 50, null, false, true, true));
+        }
+        graph.freeze();
+
+        // Placed out of order, but the fastest way from the west end is straight east
+        int[] placed = {0, 4, 1, 5, 2, 3};
+        List<SnappedPoint> stops = new ArrayList<>();
+        for (int vertex : placed) {
+            stops.add(graph.snap(new double[]{55.0001, 12 + vertex * 0.01}, true));
+        }
+        Tour tour = Tour.plan(graph, stops, true, false);
+        assertArrayEquals(new int[]{0, 2, 4, 5, 1, 3}, tour.getOrder());
+        assertEquals(5, tour.getLegs().size());
+        assertEquals(5000, tour.getDistance(), 0.5);
+
+        // A round trip comes back to the first stop
+        Tour roundTrip = Tour.plan(graph, stops, true, true);
+        assertEquals(6, roundTrip.getLegs().size());
+        assertEquals(10000, roundTrip.getDistance(), 1);
+    }
+
+    @Test
+    public void testTourIsNoSlowerThanPlacedOrder() {
+        int size = 12;
+        Random random = randomGrid(size, 31);
+        graph.contract();
+
+        // On foot, as some of the roads are closed to cars
+        List<SnappedPoint> stops = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            stops.add(graph.snap(new double[]{55 + random.nextDouble() * 0.11, 12 + random.nextDouble() * 0.11}, false));
+        }
+        double placedTime = 0;
+        for (int i = 0; i + 1 < stops.size(); i++) {
+            placedTime += graph.route(new RouteRequest(stops.get(i), stops.get(i + 1), false)).getTime();
+        }
+
+        Tour tour = Tour.plan(graph, stops, false, false);
+        int[] order = tour.getOrder();
+        assertEquals(0, order[0]);
+        assertEquals(60, Arrays.stream(order).distinct().count());
+        assertTrue(tour.getTime() < placedTime / 2, tour.getTime() + " vs " + placedTime);
+    }
 }
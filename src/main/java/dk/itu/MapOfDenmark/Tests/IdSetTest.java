@@ -0,0 +1,62 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.IdSet;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdSetTest {
+    /** The capacity a new set starts with. */
+    private static final int CAPACITY = 1 << 16;
+
+    @Test
+    public void testGrowsPastItsCapacity() {
+        IdSet set = new IdSet();
+        // Descending odd IDs, so the first compaction has to sort and the array has to grow
+        for (long id = 2L * (CAPACITY + 1000) - 1; id > 0; id -= 2) {
+            set.add(id);
+        }
+
+        assertEquals(CAPACITY + 1000, set.size());
+        for (long id = 0; id <= 2L * (CAPACITY + 1000); id++) {
+            assertEquals(id % 2 == 1, set.contains(id), "contains " + id);
+        }
+        assertFalse(set.contains(-1));
+        assertTrue(set.contains(CAPACITY + 1));
+        assertTrue(set.contains(1));
+    }
+
+    @Test
+    public void testDuplicatesAreDroppedWhenFull() {
+        IdSet set = new IdSet();
+        // Every ID twice, across the boundary where the full array is compacted instead of grown
+        for (int i = 0; i < CAPACITY; i++) {
+            set.add(i % (CAPACITY / 2));
+        }
+        set.add(CAPACITY);
+        set.add(3);
+
+        assertEquals(CAPACITY / 2 + 1, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(CAPACITY / 2 - 1));
+        assertFalse(set.contains(CAPACITY / 2));
+        assertTrue(set.contains(CAPACITY));
+    }
+
+    @Test
+    public void testAddAfterTrimToSize() {
+        IdSet set = new IdSet();
+        for (long id = 1; id <= 20; id++) {
+            set.add(id * 10);
+        }
+        set.trimToSize();
+        set.add(5);
+        set.add(1_000_000_000_000L);
+
+        assertEquals(22, set.size());
+        assertTrue(set.contains(5));
+        assertTrue(set.contains(200));
+        assertTrue(set.contains(1_000_000_000_000L));
+        assertFalse(set.contains(15));
+    }
+}
@@ -0,0 +1,141 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.App;
+import dk.itu.MapOfDenmark.Model.BinaryFileData;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.MapFile;
+import dk.itu.MapOfDenmark.Model.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MapFileTest {
+    private static final Path FIXTURE = Path.of("resources", "test", "small.osm");
+
+    private Path directory;
+    private Model model;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        App.path = FIXTURE.toString();
+        directory = Files.createTempDirectory("mapofdenmark");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (model != null) {
+            model.hardReset();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Parses a copy of the fixture, which saves it as a map file next to the copy.
+     *
+     * @return The name of the map file.
+     */
+    private String save() throws Exception {
+        Path copy = Files.copy(FIXTURE, directory.resolve("small.osm"), StandardCopyOption.REPLACE_EXISTING);
+        model = new Model(copy.toString());
+        return copy + MapFile.EXTENSION;
+    }
+
+    /**
+     * Loads a map file into the model the way the user interface does, leaving the graph and trie to load on first use.
+     */
+    private BinaryFileData load(String filename) throws IOException {
+        BinaryFileData loaded = MapFile.read(filename);
+        model = loaded.getModel();
+        model.setGraph(loaded.getGraph());
+        model.setQuadTreeMap(loaded.getQuadTreeMap());
+        model.setTrie(loaded.getTrie());
+        model.setBounds(loaded.getBounds());
+        return loaded;
+    }
+
+    @Test
+    public void testMapSurvivesWritingAndReading() throws Exception {
+        String filename = save();
+        String graph = OsmParserTest.describe(Model.getGraph());
+        String trie = OsmParserTest.describe(model.getTrie());
+        model.hardReset();
+
+        BinaryFileData loaded = load(filename);
+        assertEquals(55.67, loaded.getModel().minlat, 1e-9);
+        assertEquals(12.56, loaded.getModel().minlon, 1e-9);
+        assertEquals(55.68, loaded.getModel().maxlat, 1e-9);
+        assertEquals(12.58, loaded.getModel().maxlon, 1e-9);
+
+        // The graph and the trie are loaded in the background, and waited for on first use
+        Graph loadedGraph = Model.getGraph();
+        assertSame(loaded.getGraph().join(), loadedGraph);
+        assertSame(loaded.getTrie().join(), model.getTrie());
+        assertEquals(graph, OsmParserTest.describe(loadedGraph));
+        assertEquals(trie, OsmParserTest.describe(model.getTrie()));
+        assertTrue(trie.contains("nørregade 7"), trie);
+    }
+
+    @Test
+    public void testFailedSectionIsThrownOnFirstUse() throws Exception {
+        String filename = save();
+        model.hardReset();
+
+        // A graph section that starts with an edge count of -1
+        byte[] bytes = Files.readAllBytes(Path.of(filename));
+        ByteBuffer file = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int sectionCount = file.getInt(40);
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = 44 + i * 20;
+            if (file.getInt(entry) == MapFile.GRAPH) {
+                file.putInt((int) file.getLong(entry + 4), -1);
+            }
+        }
+        Path corrupt = Files.write(directory.resolve("corrupt" + MapFile.EXTENSION), bytes);
+
+        // The layers are read at once, the broken graph only fails when it is used, rather than being empty
+        load(corrupt.toString());
+        assertThrows(CompletionException.class, Model::getGraph);
+        assertThrows(CompletionException.class, Model::getGraph);
+        assertNotNull(model.getTrie().search("nørregade 7, 1165 københavn k"));
+    }
+
+    @Test
+    public void testStaleMapFileIsRejected() throws Exception {
+        String filename = save();
+        byte[] bytes = Files.readAllBytes(Path.of(filename));
+
+        // The version follows the magic number
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(4, header.getInt(4) - 1);
+        Path stale = Files.write(directory.resolve("stale" + MapFile.EXTENSION), bytes);
+        IOException exception = assertThrows(IOException.class, () -> MapFile.read(stale.toString()));
+        assertTrue(exception.getMessage().contains("version"), exception.getMessage());
+
+        // A file cut off in its table of sections
+        byte[] start = Arrays.copyOf(Files.readAllBytes(Path.of(filename)), 50);
+        Path truncated = Files.write(directory.resolve("truncated" + MapFile.EXTENSION), start);
+        assertThrows(EOFException.class, () -> MapFile.read(truncated.toString()));
+    }
+}
@@ -0,0 +1,110 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.Graph.Edge;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.SerializableRectangle;
+import dk.itu.MapOfDenmark.Model.Trees.QuadTree.QuadTree;
+import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
+import dk.itu.MapOfDenmark.Model.objects.MotorWay;
+import dk.itu.MapOfDenmark.Model.objects.abstracts.Element;
+import dk.itu.MapOfDenmark.Server.MapServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MapServerTest {
+    private MapServer server;
+    private int port;
+    private int status;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Three vertices along a road going east
+        Graph graph = new Graph();
+        for (int i = 0; i < 3; i++) {
+            graph.addVertex(new float[]{55, 12 + i * 0.01f});
+        }
+        graph.addEdge(new Edge(0, 1, 1000, 50, null, false, true, true));
+        graph.addEdge(new Edge(1, 2, 1000, 50, null, false, true, true));
+        graph.freeze();
+
+        CompressedTrie trie = new CompressedTrie();
+        trie.insert("Hovedgade 10, 2800 Kongens Lyngby", new float[]{55, 12.01f});
+
+        QuadTree roads = new QuadTree(new SerializableRectangle(54, 11, 2, 2), 10);
+        roads.insert(new MotorWay(new float[]{55, 12, 55, 12.01f, 55, 12.02f}));
+        Map<Class<? extends Element>, QuadTree> quadTreeMap = new HashMap<>();
+        quadTreeMap.put(MotorWay.class, roads);
+
+        server = new MapServer(graph, trie, quadTreeMap);
+        port = server.start(0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testRoute() throws IOException {
+        String json = get("/route?from=55.0001,12.005&to=55.0001,12.015");
+        assertEquals(200, status);
+        assertTrue(json.startsWith("{\"found\":true,\"time\":72.0"), json);
+        assertTrue(json.contains("\"distance\":1000."), json);
+        assertTrue(json.contains("\"coords\":[[55.0,12.005],[55.0,12.01],[55.0,12.015]]"), json);
+    }
+
+    @Test
+    public void testMatrixAndNearest() throws IOException {
+        String json = get("/matrix?sources=55,12&targets=55,12;55,12.02&mode=walk");
+        assertEquals(200, status);
+        assertTrue(json.startsWith("{\"times\":[[0.0,"), json);
+        assertTrue(json.endsWith("\"distances\":[[0.0,2000.0]]}"), json);
+
+        json = get("/nearest?point=55.001,12.012");
+        assertTrue(json.contains("\"vertex\":1,\"vertexLat\":55.0,\"vertexLon\":12.01"), json);
+    }
+
+    @Test
+    public void testAutocompleteAndWays() throws IOException {
+        String json = get("/autocomplete?q=hovedg");
+        assertTrue(json.contains("{\"address\":\"hovedgade 10, 2800 kongens lyngby\",\"lat\":55.0,\"lon\":12.01}"), json);
+
+        json = get("/ways?bbox=54.99,12.015,55.01,12.03&layers=MotorWay");
+        assertTrue(json.startsWith("{\"truncated\":false,\"ways\":[{\"type\":\"MotorWay\""), json);
+        assertEquals("{\"truncated\":false,\"ways\":[]}", get("/ways?bbox=56,12,56.1,12.1"));
+    }
+
+    @Test
+    public void testBadParameters() throws IOException {
+        get("/route?from=55,12");
+        assertEquals(400, status);
+        get("/route?from=55,12&to=55&mode=drive");
+        assertEquals(400, status);
+        assertTrue(get("/ways?bbox=54,11,55,12&layers=Building").startsWith("{\"error\":\"unknown layer Building"));
+        assertEquals(400, status);
+        assertEquals("{\"error\":\"limit must be positive\"}", get("/ways?bbox=54,11,55,12&limit=0"));
+        assertEquals(400, status);
+        get("/ways?bbox=54,11,55,12&limit=-5");
+        assertEquals(400, status);
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        status = connection.getResponseCode();
+        try (InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
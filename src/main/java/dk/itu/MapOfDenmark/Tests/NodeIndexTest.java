@@ -0,0 +1,40 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.NodeIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeIndexTest {
+
+    @Test
+    public void testAscendingIds() {
+        NodeIndex index = new NodeIndex(2);
+        for (int i = 0; i < 1000; i++) {
+            index.add(i * 3L, i, -i);
+        }
+
+        assertEquals(1000, index.size());
+        assertArrayEquals(new float[]{10.0f, -10.0f}, index.get(30L));
+        assertArrayEquals(new float[]{999.0f, -999.0f}, index.get(2997L));
+        assertNull(index.get(31L));
+        assertEquals(-1, index.indexOf(-1L));
+    }
+
+    @Test
+    public void testUnsortedIds() {
+        NodeIndex index = new NodeIndex();
+        long[] ids = {42L, 7L, 1_000_000_000_000L, 3L, 19L, 8L, 100L, 1L, 55L, 2L, 64L, 5L, 90L, 11L, 13L, 4L, 77L, 6L, 9L, 10L};
+        for (long id : ids) {
+            index.add(id, id, id * 2);
+        }
+
+        for (long id : ids) {
+            int pos = index.indexOf(id);
+            assertTrue(pos >= 0);
+            assertEquals((float) id, index.getLat(pos));
+            assertEquals((float) (id * 2), index.getLon(pos));
+        }
+        assertNull(index.get(12L));
+    }
+}
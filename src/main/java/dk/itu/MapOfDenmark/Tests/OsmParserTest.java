@@ -0,0 +1,129 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.App;
+import dk.itu.MapOfDenmark.Model.Graph.Graph;
+import dk.itu.MapOfDenmark.Model.Graph.Profile;
+import dk.itu.MapOfDenmark.Model.Graph.TravelTimeMatrix;
+import dk.itu.MapOfDenmark.Model.Model;
+import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OsmParserTest {
+    /** The directory of the small OSM files the parsers are tested on. */
+    private static final Path FIXTURES = Path.of("resources", "test");
+
+    private Path directory;
+    private boolean pipelined;
+    private boolean twoPass;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        App.path = FIXTURES.resolve("small.osm").toString();
+        directory = Files.createTempDirectory("mapofdenmark");
+        pipelined = Model.pipelined;
+        twoPass = Model.twoPass;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Model.pipelined = pipelined;
+        Model.twoPass = twoPass;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Parses a copy of a fixture, so the map file saved next to it is deleted afterwards, and resets the model.
+     *
+     * @return The vertices, edges and travel times of the graph and the addresses of the trie, as text.
+     */
+    private String parse(String fixture) throws Exception {
+        Path copy = Files.copy(FIXTURES.resolve(fixture), directory.resolve(fixture), StandardCopyOption.REPLACE_EXISTING);
+        Model model = new Model(copy.toString());
+        try {
+            return describe(Model.getGraph()) + describe(model.getTrie());
+        } finally {
+            model.hardReset();
+        }
+    }
+
+    /**
+     * Describes a graph by its edges, its vertices and the travel times between every two vertices.
+     */
+    static String describe(Graph graph) {
+        StringBuilder description = new StringBuilder();
+        description.append(graph.getEdgeCount()).append(" edges ").append(Arrays.toString(graph.getVertexCoords()));
+        int[] vertices = IntStream.range(0, graph.getVertexCount()).toArray();
+        for (Profile profile : new Profile[]{Profile.CAR, Profile.WALK}) {
+            TravelTimeMatrix matrix = graph.travelTimes(vertices, vertices, profile);
+            for (int i = 0; i < vertices.length; i++) {
+                description.append('\n').append(profile);
+                for (int j = 0; j < vertices.length; j++) {
+                    description.append(' ').append(Math.round(matrix.getTime(i, j)));
+                }
+            }
+        }
+        return description.append('\n').toString();
+    }
+
+    /**
+     * Describes a trie by its addresses and their coordinates, in alphabetical order.
+     */
+    static String describe(CompressedTrie trie) {
+        List<String> addresses = new ArrayList<>();
+        trie.forEach((address, coords) -> addresses.add(address + " at " + Arrays.toString(coords)));
+        addresses.sort(null);
+        return String.join("\n", addresses);
+    }
+
+    @Test
+    public void testPipelinedBuilderMatchesMapBuilder() throws Exception {
+        Model.pipelined = false;
+        String sequential = parse("small.osm");
+        Model.pipelined = true;
+        assertEquals(sequential, parse("small.osm"));
+
+        // The addresses of a node and a building, but not the one of the relation after the ways
+        assertTrue(sequential.contains("nørregade 7, 1165 københavn k at [55.673, 12.57]"), sequential);
+        assertTrue(sequential.contains("store kongensgade 40, 1264 københavn k"), sequential);
+        assertFalse(sequential.contains("bredgade"), sequential);
+    }
+
+    @Test
+    public void testTwoPassMatchesOnePass() throws Exception {
+        Model.twoPass = false;
+        String onePass = parse("small.osm");
+        Model.twoPass = true;
+        assertEquals(onePass, parse("small.osm"));
+    }
+
+    @Test
+    public void testPbfMatchesXml() throws Exception {
+        // The same map as dense nodes, with the tags of the addressed node, and delta-coded ways
+        String xml = parse("small.osm");
+        String pbf = parse("small.osm.pbf");
+        assertEquals(xml, pbf);
+        assertTrue(pbf.contains("nørregade 7, 1165 københavn k at [55.673, 12.57]"), pbf);
+        assertTrue(pbf.contains("store kongensgade 40, 1264 københavn k"), pbf);
+    }
+}
@@ -0,0 +1,88 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.OsmHandler;
+import dk.itu.MapOfDenmark.Model.OsmTokenizer;
+import dk.itu.MapOfDenmark.Model.OsmXmlReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OsmTokenizerTest {
+    private static final Path FIXTURE = Path.of("resources", "test", "small.osm");
+
+    @Test
+    public void testTokenizerMatchesXmlReader() throws Exception {
+        RecordingHandler stax = new RecordingHandler();
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(FIXTURE))) {
+            OsmXmlReader.read(input, stax);
+        }
+        RecordingHandler mapped = new RecordingHandler();
+        OsmTokenizer.read(FIXTURE, mapped);
+
+        assertEquals(stax.calls, mapped.calls);
+
+        List<String> calls = mapped.calls;
+        assertEquals("bounds 55.67 12.56 55.68 12.58", calls.get(0));
+        assertEquals("end", calls.get(calls.size() - 1));
+        // Self-closing nodes, and tag values with character and entity references
+        assertEquals("node 101 55.671 12.561", calls.get(1));
+        assertTrue(calls.contains("tag name=Købmand \"Hjørnet\" & Søn"), calls.toString());
+        assertTrue(calls.contains("tag note=<not referenced by any way>"), calls.toString());
+        assertTrue(calls.contains("tag name=H.C. 'Andersens' Boulevard"), calls.toString());
+        // The self-closing way 204 between the footway and the building
+        int footway = calls.indexOf("tag highway=footway");
+        assertEquals(List.of("endWay", "way", "endWay", "way", "nd 110"), calls.subList(footway + 1, footway + 6));
+        assertEquals(6, Collections.frequency(calls, "way"));
+        assertEquals(6, Collections.frequency(calls, "endWay"));
+    }
+
+    /**
+     * Records every callback of a reader as a line of text.
+     */
+    private static class RecordingHandler implements OsmHandler {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void bounds(double minlat, double minlon, double maxlat, double maxlon) {
+            calls.add("bounds " + minlat + " " + minlon + " " + maxlat + " " + maxlon);
+        }
+
+        @Override
+        public void node(long id, float lat, float lon) {
+            calls.add("node " + id + " " + lat + " " + lon);
+        }
+
+        @Override
+        public void way() {
+            calls.add("way");
+        }
+
+        @Override
+        public void nd(long ref) {
+            calls.add("nd " + ref);
+        }
+
+        @Override
+        public void tag(String k, String v) {
+            calls.add("tag " + k + "=" + v);
+        }
+
+        @Override
+        public void endWay() {
+            calls.add("endWay");
+        }
+
+        @Override
+        public void end() {
+            calls.add("end");
+        }
+    }
+}
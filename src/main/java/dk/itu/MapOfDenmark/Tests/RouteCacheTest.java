@@ -0,0 +1,55 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.Graph.RouteCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteCacheTest {
+    private static RouteCache.Route route(int start, int end) {
+        return new RouteCache.Route(List.of(start, end), 60, 1000, new float[]{start, start, end, end});
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        RouteCache cache = new RouteCache(2);
+        cache.put(0, 1, true, route(0, 1));
+        cache.put(1, 2, true, route(1, 2));
+        assertNotNull(cache.get(0, 1, true));
+        cache.put(2, 3, true, route(2, 3));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(1, 2, true));
+        assertEquals(List.of(0, 1), cache.get(0, 1, true).getPath());
+        assertNotNull(cache.get(2, 3, true));
+    }
+
+    @Test
+    public void testKeyedByMode() {
+        RouteCache cache = new RouteCache(4);
+        cache.put(0, 1, true, route(0, 1));
+        assertNull(cache.get(0, 1, false));
+        assertNull(cache.get(1, 0, true));
+        assertNotNull(cache.get(0, 1, true));
+    }
+
+    @Test
+    public void testHitRateAndClear() {
+        RouteCache cache = new RouteCache(4);
+        cache.put(0, 1, true, route(0, 1));
+        cache.get(0, 1, true);
+        cache.get(0, 1, true);
+        cache.get(0, 1, true);
+        cache.get(5, 6, true);
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.75, cache.getHitRate());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0.0, cache.getHitRate());
+        assertNull(cache.get(0, 1, true));
+    }
+}
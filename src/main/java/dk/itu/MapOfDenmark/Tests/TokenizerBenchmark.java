@@ -0,0 +1,88 @@
+package dk.itu.MapOfDenmark.Tests;
+
+import dk.itu.MapOfDenmark.Model.OsmHandler;
+import dk.itu.MapOfDenmark.Model.OsmTokenizer;
+import dk.itu.MapOfDenmark.Model.OsmXmlReader;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares the StAX reader with the memory-mapped tokenizer on an OSM file, e.g. a Denmark extract:
+ * {@code java ... dk.itu.MapOfDenmark.Tests.TokenizerBenchmark data/denmark-latest.osm 3}
+ */
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path file = Path.of(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        double megabytes = Files.size(file) / 1e6;
+
+        for (int round = 1; round <= rounds; round++) {
+            CountingHandler stax = new CountingHandler();
+            long start = System.nanoTime();
+            try (InputStream input = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+                OsmXmlReader.read(input, stax);
+            }
+            long staxTime = System.nanoTime() - start;
+
+            CountingHandler mapped = new CountingHandler();
+            start = System.nanoTime();
+            OsmTokenizer.read(file, mapped);
+            long mappedTime = System.nanoTime() - start;
+
+            System.out.printf("Round %d: StAX %d ms (%.0f MB/s), mmap %d ms (%.0f MB/s), speedup %.2fx%n",
+                    round, staxTime / 1_000_000, megabytes / (staxTime / 1e9),
+                    mappedTime / 1_000_000, megabytes / (mappedTime / 1e9), (double) staxTime / mappedTime);
+            if (!stax.toString().equals(mapped.toString())) {
+                System.out.println("Readers disagree: " + stax + " vs " + mapped);
+            }
+        }
+    }
+
+    /**
+     * Counts the elements of a file and sums their values, so the readers cannot skip any work.
+     */
+    private static class CountingHandler implements OsmHandler {
+        long nodes, ways, refs, tags, checksum;
+
+        @Override
+        public void bounds(double minlat, double minlon, double maxlat, double maxlon) {
+        }
+
+        @Override
+        public void node(long id, float lat, float lon) {
+            nodes++;
+            checksum += id + Float.floatToIntBits(lat) + Float.floatToIntBits(lon);
+        }
+
+        @Override
+        public void way() {
+            ways++;
+        }
+
+        @Override
+        public void nd(long ref) {
+            refs++;
+            checksum += ref;
+        }
+
+        @Override
+        public void tag(String k, String v) {
+            tags++;
+            checksum += k.length() + v.length();
+        }
+
+        @Override
+        public void endWay() {
+        }
+
+        @Override
+        public String toString() {
+            return nodes + " nodes, " + ways + " ways, " + refs + " refs, " + tags + " tags, checksum " + checksum;
+        }
+    }
+}
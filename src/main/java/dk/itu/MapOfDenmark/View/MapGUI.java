@@ -1,8 +1,7 @@
 package dk.itu.MapOfDenmark.View;
 
-import dk.itu.MapOfDenmark.Model.Graph.Vertex;
+import dk.itu.MapOfDenmark.Model.Graph.SnappedPoint;
 import dk.itu.MapOfDenmark.Model.Model;
-import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
 import dk.itu.MapOfDenmark.Model.objects.PointOfInterest;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -26,6 +25,12 @@ public class MapGUI extends UIElement {
     /** The button for initiating route search using Dijkstra's algorithm. */
     public final Button searchRoute = new Button();
 
+    /** The number of minutes of travel an isochrone shows the reach of. */
+    public final Spinner<Integer> isochroneMinutes = new Spinner<>(5, 120, 15, 5);
+
+    /** The button for showing the area reachable from the selected point within the chosen minutes. */
+    public final Button searchIsochrone = new Button("Reach");
+
     /** The text field for user input, typically used for address search. */
     public final TextField userInput = new TextField();
 
@@ -36,7 +41,7 @@ public class MapGUI extends UIElement {
     public final VBox search = new VBox(userInput, addressOutput);
 
     /** The first layer of UI elements, including vehicle priority, search route, and search bar. */
-    private final HBox layer1 = new HBox(vehiclePriority, searchRoute, search);
+    private final HBox layer1 = new HBox(vehiclePriority, searchRoute, isochroneMinutes, searchIsochrone, search);
 
     /** The label for displaying messages to the user, typically for route information. */
     public final Label messageToUser = new Label();
@@ -50,18 +55,18 @@ public class MapGUI extends UIElement {
     /** The parent MapUI instance. */
     private final MapUI mapUI;
 
-    /** The compressed trie data structure for efficient address searching. */
-    private CompressedTrie trie;
+    /** The model holding the address trie. */
+    private final Model model;
 
     /**
-     * Constructs a new MapGUI instance with the specified MapUI parent and CompressedTrie.
+     * Constructs a new MapGUI instance with the specified MapUI parent and model.
      *
      * @param mapUI The parent MapUI instance.
-     * @param trie The compressed trie data structure for efficient address searching.
+     * @param model The model holding the address trie.
      */
-    public MapGUI(MapUI mapUI, CompressedTrie trie){
+    public MapGUI(MapUI mapUI, Model model){
         this.mapUI = mapUI;
-        this.trie = trie;
+        this.model = model;
     }
 
     /**
@@ -103,6 +108,14 @@ public class MapGUI extends UIElement {
                         "-fx-font-size: 14px;" /* Font size */
         );
 
+        isochroneMinutes.setPrefWidth(70);
+        searchIsochrone.setStyle(
+                "-fx-background-color: #4CAF50;" + /* Green background */
+                        "-fx-background-radius: 5;" + /* Rounded corners */
+                        "-fx-text-fill: white;" + /* White text color */
+                        "-fx-font-size: 14px;" /* Font size */
+        );
+
         vehiclePriority.setSize(25);
         vehiclePriority.setBackground(
                 new Background(new BackgroundFill(Color.GRAY, new CornerRadii(10), new Insets(-0.11))));
@@ -176,13 +189,13 @@ public class MapGUI extends UIElement {
      * Searches for the specified address using the compressed trie.
      *
      * @param address The address to search for.
-     * @return The coordinates of the found address.
+     * @return The coordinates of the point on the nearest road to the found address.
      */
     public float[] findAddress(String address){
 
-        float[] coords = trie.search(address);
+        float[] coords = model.getTrie().search(address);
         Model.add(new PointOfInterest(coords));
-        float[] nearest = Model.quadTreeMap.get(Vertex.class).nearestPoint(new double[]{coords[0], coords[1]});
-        return nearest;
+        SnappedPoint nearest = Model.getGraph().snap(new double[]{coords[0], coords[1]});
+        return nearest != null ? nearest.getCoords() : coords;
     }
 }
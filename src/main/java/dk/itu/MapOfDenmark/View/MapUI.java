@@ -3,7 +3,6 @@ package dk.itu.MapOfDenmark.View;
 import dk.itu.MapOfDenmark.Controller;
 import dk.itu.MapOfDenmark.Model.Model;
 import dk.itu.MapOfDenmark.Model.SerializableRectangle;
-import dk.itu.MapOfDenmark.Model.Trees.Trie.CompressedTrie;
 import dk.itu.MapOfDenmark.Model.objects.abstracts.Way;
 import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
@@ -44,15 +43,13 @@ public class MapUI extends GUI {
      *
      * @param model       The model containing map data.
      * @param primaryStage The primary stage of the JavaFX application.
-     * @param trie         The compressed trie data structure for efficient searching.
      */
-    public MapUI(Model model, Stage primaryStage, CompressedTrie trie) {
+    public MapUI(Model model, Stage primaryStage) {
         super(primaryStage, new Canvas(1000, 600), "Map of " + TitleUI.selectedFile);
         this.model = model;
-        userInput = new MapGUI(this, trie);
+        userInput = new MapGUI(this, model);
         oldArrea = (canvas.getHeight()*canvas.getWidth());
         this.primaryStage.setAlwaysOnTop(true);
-        Model.getGraph().addGraphToMap();
         zoomFactor = 1.0;
         zoomLevel = new Label();
         stackpane.getChildren().addAll(canvas, burgerMenu.gethBox(), zoomLevel, userInput.getUserInterface());
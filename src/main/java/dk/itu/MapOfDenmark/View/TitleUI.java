@@ -3,6 +3,7 @@ package dk.itu.MapOfDenmark.View;
 import dk.itu.MapOfDenmark.App;
 import dk.itu.MapOfDenmark.Controller;
 import dk.itu.MapOfDenmark.Model.BinaryFileData;
+import dk.itu.MapOfDenmark.Model.MapFile;
 import dk.itu.MapOfDenmark.Model.Model;
 import dk.itu.MapOfDenmark.Model.ParsingElement;
 import javafx.geometry.Insets;
@@ -124,7 +125,7 @@ public class TitleUI extends GUI {
         filterToggle = !filterToggle;
         fileSelection.getChildren().clear(); // clear the nodes
 
-        getFolder(filterToggle ? ".obj" : ".osm");
+        getFolder(filterToggle ? MapFile.EXTENSION : ".osm");
     }
 
     /**
@@ -155,8 +156,8 @@ public class TitleUI extends GUI {
             ((Model) model).setTrie(b.getTrie());
             ((Model) model).setBounds(b.getBounds());
         }
-        var view = new MapUI((Model) model, primaryStage,((Model) model).getTrie());
-        new Controller(view, ((Model) model).getTrie());
+        var view = new MapUI((Model) model, primaryStage);
+        new Controller(view, (Model) model);
         primaryStage.show();
     }
 
@@ -207,8 +208,9 @@ public class TitleUI extends GUI {
             throw new UnsupportedOperationException("One file only!");
         if(dragBoard.getFiles().get(0).isDirectory())
             throw new IOException("Please drop a File and not a Folder");
-        if(!(dragBoard.getFiles().get(0).toString().endsWith("osm") || dragBoard.getFiles().get(0).toString().endsWith(".zip")))
-            throw new IOException("Please drop an .osm- or a .zip-file");
+        if(!(dragBoard.getFiles().get(0).toString().endsWith("osm") || dragBoard.getFiles().get(0).toString().endsWith(".zip")
+                || dragBoard.getFiles().get(0).toString().endsWith(".osm.pbf")))
+            throw new IOException("Please drop an .osm-, .osm.pbf- or a .zip-file");
         if(dragBoard.getFiles().isEmpty())
             throw new NullPointerException("Selected an empty file?");
 
@@ -273,7 +275,7 @@ public class TitleUI extends GUI {
                 )
         );
 
-        getFolder(".obj");
+        getFolder(MapFile.EXTENSION);
         selectFromList.setRotate(-90);
         selectFromList.setMaxSize(dimensions[0],dimensions[1]);
         LEFT_BOX.setAlignment(Pos.CENTER_RIGHT);
@@ -20,4 +20,25 @@ public class HelperMethods {
         int degreeFactor = 111139;
         return Math.sqrt(Math.pow((x2-x1),2)+ Math.pow((y2-y1),2)) * degreeFactor;
     }
+
+    /**
+     * Calculates the great-circle distance between two coordinates.
+     * The sphere is scaled so a degree of arc is as long as a degree in {@link #distance(float, float, float, float)},
+     * which makes the result a lower bound on the length of any path between the coordinates measured with that method.
+     *
+     * @param lat1 The latitude of the first point.
+     * @param lon1 The longitude of the first point.
+     * @param lat2 The latitude of the second point.
+     * @param lon2 The longitude of the second point.
+     * @return The great-circle distance between the two points.
+     */
+    public static double greatCircleDistance(float lat1, float lon1, float lat2, float lon2){
+        double radius = 111139 * 180 / Math.PI;
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinLat = Math.sin((phi2 - phi1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinLat * sinLat + Math.cos(phi1) * Math.cos(phi2) * sinLon * sinLon;
+        return 2 * radius * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
 }
@@ -4,6 +4,7 @@ module dk.itu.MapOfDenmark {
     requires java.xml;
     requires javafx.graphics;
     requires java.desktop;
+    requires jdk.httpserver;
     requires org.junit.jupiter.api;
 
 
@@ -19,6 +20,7 @@ module dk.itu.MapOfDenmark {
     opens dk.itu.MapOfDenmark.Tests to javafx.fxml;
     exports dk.itu.MapOfDenmark.Model.objects.abstracts;
     opens dk.itu.MapOfDenmark.Model.objects.abstracts to javafx.fxml;
+    exports dk.itu.MapOfDenmark.Server;
     exports dk.itu.MapOfDenmark.Model.Trees.QuadTree;
     opens dk.itu.MapOfDenmark.Model.Trees.QuadTree to javafx.fxml;
 }
\ No newline at end of file